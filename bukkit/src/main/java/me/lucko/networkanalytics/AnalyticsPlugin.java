@@ -0,0 +1,412 @@
+/*
+ * This file is part of NetworkAnalytics, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.networkanalytics;
+
+import lombok.Getter;
+
+import me.lucko.helper.Commands;
+import me.lucko.helper.Schedulers;
+import me.lucko.helper.messaging.Channel;
+import me.lucko.helper.messaging.ChannelAgent;
+import me.lucko.helper.messaging.InstanceData;
+import me.lucko.helper.metadata.Metadata;
+import me.lucko.helper.plugin.ExtendedJavaPlugin;
+import me.lucko.helper.plugin.ap.Plugin;
+import me.lucko.helper.redis.HelperRedis;
+import me.lucko.helper.sql.HelperDataSource;
+import me.lucko.helper.terminable.Terminable;
+import me.lucko.helper.utils.Players;
+import me.lucko.networkanalytics.aggregator.NetworkAggregator;
+import me.lucko.networkanalytics.channel.AnalyticsData;
+import me.lucko.networkanalytics.channel.OnlinePlayerRecord;
+import me.lucko.networkanalytics.data.DataManager;
+import me.lucko.networkanalytics.data.archive.ArchiveJob;
+import me.lucko.networkanalytics.data.slowlog.SlowOperationLog;
+import me.lucko.networkanalytics.data.storage.MemoryStorage;
+import me.lucko.networkanalytics.data.storage.MySqlStorage;
+import me.lucko.networkanalytics.data.storage.SQLiteStorage;
+import me.lucko.networkanalytics.data.storage.SqlStorage;
+import me.lucko.networkanalytics.data.storage.Storage;
+import me.lucko.networkanalytics.eventlog.EventLog;
+import me.lucko.networkanalytics.handler.AnalyticsCommand;
+import me.lucko.networkanalytics.handler.AnalyticsListener;
+import me.lucko.networkanalytics.handler.TabCompletionListener;
+import me.lucko.networkanalytics.roster.RosterStore;
+import me.lucko.networkanalytics.roster.ServerRoster;
+import me.lucko.networkanalytics.session.LocalPresenceStore;
+import me.lucko.networkanalytics.session.RedisPresenceStore;
+import me.lucko.networkanalytics.session.SessionTracker;
+import me.lucko.networkanalytics.snapshot.NetworkSnapshot;
+import me.lucko.networkanalytics.snapshot.SnapshotPublisher;
+
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
+
+import protocolsupport.api.ProtocolVersion;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import javax.annotation.Nonnull;
+
+@Plugin(
+        name = "NetworkAnalytics",
+        hardDepends = {
+                "helper",
+                "helper-redis",
+                "ProtocolSupport"
+        },
+        softDepends = {
+                "helper-sql"
+        }
+)
+public class AnalyticsPlugin extends ExtendedJavaPlugin implements NetworkAnalytics {
+
+    private InstanceData instanceData;
+
+    @Getter
+    private DataManager dataManager;
+
+    @Getter
+    private final RosterStore rosterStore = new RosterStore();
+
+    @Getter
+    private final SnapshotPublisher snapshotPublisher = new SnapshotPublisher();
+
+    private Channel<AnalyticsData> analyticsChannel;
+
+    @Getter
+    private NetworkAggregator aggregator;
+
+    // if this server receives the rosters from every server
+    @Getter
+    private boolean fullView;
+
+    // if a random sample of players is sent with each roster, and used to estimate the version & locale breakdowns
+    @Getter
+    private boolean sampling;
+    private int sampleSize;
+
+    // the local event log, or null if disabled
+    @Getter
+    private EventLog eventLog;
+
+    private AnalyticsListener analyticsListener;
+
+    @Override
+    public void enable() {
+        YamlConfiguration config = loadConfig("config.yml");
+
+        // get instance data
+        instanceData = getService(InstanceData.class);
+        if (instanceData == null) {
+            String name = config.getString("server-id", "null");
+            instanceData = new InstanceData() {
+                @Nonnull
+                @Override
+                public String getId() {
+                    return name;
+                }
+
+                @Nonnull
+                @Override
+                public Set<String> getGroups() {
+                    return Collections.emptySet();
+                }
+            };
+        }
+
+        // init data manager
+        Storage storage = createStorage(config.getString("storage-method", "mysql"));
+        getLogger().info("Using " + storage.getName() + " storage.");
+
+        // record statements which take longer than the threshold
+        SlowOperationLog slowLog = new SlowOperationLog(config.getLong("slow-operations.threshold-millis", 250), config.getInt("slow-operations.buffer-size", 50));
+        if (storage instanceof SqlStorage) {
+            ((SqlStorage) storage).setSlowLog(slowLog);
+        }
+
+        dataManager = new DataManager(storage, instanceData.getId(), Schedulers.async(), config.getLong("lookup-cache.size", 10000), config.getLong("lookup-cache.preload-hours", 72) * 3600L, slowLog);
+
+        // initialise the storage in the background, requests are queued until it's ready
+        dataManager.init(getLogger());
+
+        // periodically merge local distribution changes into the shared sketches
+        Schedulers.async().runRepeating(dataManager::flushDistributions, 1200L, 1200L).bindWith(this);
+
+        // periodically add this servers activity to the daily rollups
+        Schedulers.async().runRepeating(dataManager::flushRollups, 1200L, 1200L).bindWith(this);
+
+        // periodically move inactive players into the archive
+        if (config.getBoolean("archive.enabled", false)) {
+            ArchiveJob archiveJob = new ArchiveJob(storage, getLogger(),
+                    config.getLong("archive.inactive-days", 365),
+                    config.getInt("archive.batch-size", 500),
+                    config.getLong("archive.batch-pause-millis", 250)
+            );
+            long interval = config.getLong("archive.interval-hours", 6) * 72000L;
+            Schedulers.async().runRepeating(archiveJob, 6000L, interval).bindWith(this);
+            bind((AutoCloseable) archiveJob::stop);
+        }
+
+        // record the raw events seen by the listener, so new metrics can be backfilled
+        if (config.getBoolean("event-log.enabled", false)) {
+            eventLog = new EventLog(new File(getDataFolder(), "events"), getLogger(), instanceData.getId(),
+                    config.getLong("event-log.segment-size-mb", 16) * 1024L * 1024L,
+                    TimeUnit.HOURS.toMillis(config.getLong("event-log.segment-hours", 24)),
+                    TimeUnit.DAYS.toMillis(config.getLong("event-log.retention-days", 90))
+            );
+            eventLog.init();
+            Schedulers.async().runRepeating(eventLog::flush, 20L, 20L).bindWith(this);
+            // expire old segments even if nothing is being written
+            Schedulers.async().runRepeating(eventLog::applyRetention, 72000L, 72000L).bindWith(this);
+        }
+
+        HelperRedis redis = getService(HelperRedis.class);
+
+        // continue a players session when they switch servers, rather than recording a new login
+        SessionTracker sessionTracker = null;
+        long graceSeconds = config.getLong("sessions.grace-seconds", 10);
+        switch (config.getString("sessions.mode", "redis").toLowerCase()) {
+            case "redis":
+                sessionTracker = new SessionTracker(new RedisPresenceStore(redis), instanceData.getId(), graceSeconds, Schedulers.async());
+                break;
+            case "local":
+                sessionTracker = new SessionTracker(new LocalPresenceStore(), instanceData.getId(), graceSeconds, Schedulers.async());
+                break;
+            case "none":
+                break;
+            default:
+                getLogger().warning("Unknown session mode '" + config.getString("sessions.mode") + "', session tracking is disabled.");
+                break;
+        }
+
+        analyticsListener = bindModule(new AnalyticsListener(dataManager, eventLog, sessionTracker));
+        bindModule(new TabCompletionListener(dataManager));
+
+        // get messaging channels
+        analyticsChannel = redis.getChannel("na-data", AnalyticsData.class);
+
+        // send monitoring data periodically, unless the proxy is sending it for us
+        if (config.getBoolean("send-roster", true)) {
+            Schedulers.sync().runRepeating(() -> {
+                AnalyticsData data = formData();
+                analyticsChannel.sendMessage(data);
+            }, 70L, 90L).bindWith(this);
+        }
+
+        sampling = config.getBoolean("sampling.enabled", false);
+        sampleSize = Math.max(1, config.getInt("sampling.sample-size", 200));
+
+        fullView = !config.getString("mode", "full").equalsIgnoreCase("subscriber");
+        if (fullView) {
+            // listen for analytics data
+            ChannelAgent<AnalyticsData> analyticsChannelAgent = analyticsChannel.newAgent();
+            analyticsChannelAgent.bindWith(this);
+            analyticsChannelAgent.addListener((agent, message) -> {
+                rosterStore.accept(message);
+                snapshotPublisher.publish(rosterStore);
+            });
+        }
+
+        aggregator = bindModule(new NetworkAggregator(this, redis, fullView,
+                config.getBoolean("aggregator.enabled", true),
+                Math.max(1L, config.getLong("aggregator.interval-seconds", 10)),
+                Math.max(0L, config.getLong("aggregator.stats-interval-seconds", 60)),
+                Math.max(3L, config.getLong("aggregator.lease-seconds", 15))
+        ));
+
+        // cleanup old analytics data
+        Schedulers.async().runRepeating(() -> {
+            long expiry = (System.currentTimeMillis() / 1000L) - 20;
+            if (rosterStore.expire(expiry)) {
+                snapshotPublisher.publish(rosterStore);
+            }
+        }, 35L, 40L);
+
+        registerCommand(new AnalyticsCommand(this), "analytics");
+
+        Commands.create()
+                .assertPermission("networkanalytics.playerversion")
+                .assertUsage("<player>")
+                .handler(c -> {
+                    String player = c.rawArg(0);
+                    if (!fullView) {
+                        Players.msg(c.sender(), "&3[ANALYTICS] &fPlayer lookups are not available on this server.");
+                        return;
+                    }
+
+                    Schedulers.async().run(() -> {
+                        RosterStore.Match match = rosterStore.find(player).orElse(null);
+                        if (match == null) {
+                            Players.msg(c.sender(), "&3[ANALYTICS] &fNo player found with the username/uuid '" + player + "'");
+                            if (rosterStore.isPartial()) {
+                                Players.msg(c.sender(), "&3[ANALYTICS] &7Some servers only send a sample of their players, so not every player can be found.");
+                            }
+                            return;
+                        }
+
+                        ServerRoster roster = match.getRoster();
+                        int index = match.getIndex();
+                        Players.msg(c.sender(), "&3[ANALYTICS] &fPlayer &b" + roster.getUsername(index) + " &fis playing on version &b" + getProtocolName(roster.getVersion(index)) + "&f.");
+                    });
+                })
+                .register("playerversion");
+
+        provideService(NetworkAnalytics.class, this);
+    }
+
+    @Override
+    public void disable() {
+        if (eventLog != null) {
+            eventLog.close();
+        }
+        if (analyticsListener != null) {
+            // the writes must complete before the storage is shut down
+            try {
+                analyticsListener.finishSessions().get(10, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+        if (dataManager != null) {
+            dataManager.shutdown();
+        }
+    }
+
+    private Storage createStorage(String method) {
+        switch (method.toLowerCase()) {
+            case "sqlite":
+                return new SQLiteStorage(new File(getDataFolder(), "analytics.db"));
+            case "memory":
+                return new MemoryStorage();
+            case "mysql":
+                return createMySqlStorage();
+            default:
+                getLogger().warning("Unknown storage method '" + method + "', defaulting to mysql.");
+                return createMySqlStorage();
+        }
+    }
+
+    // helper-sql is only a soft dependency, so it mustn't be touched unless it's installed
+    private Storage createMySqlStorage() {
+        if (!getServer().getPluginManager().isPluginEnabled("helper-sql")) {
+            getLogger().severe("The mysql storage method requires helper-sql to be installed, falling back to sqlite.");
+            return new SQLiteStorage(new File(getDataFolder(), "analytics.db"));
+        }
+        return new MySqlStorage(getService(HelperDataSource.class));
+    }
+
+    private AnalyticsData formData() {
+        String serverId = instanceData.getId();
+        long time = System.currentTimeMillis() / 1000L;
+
+        if (!sampling) {
+            List<OnlinePlayerRecord> records = new ArrayList<>();
+            Players.forEach(p -> records.add(createRecord(p)));
+            return new AnalyticsData(serverId, time, records);
+        }
+
+        // reservoir sample, so every player has an equal chance of being included.
+        // only the sample & the player count are sent, with the sample in place of the full player list
+        Collection<? extends Player> players = getServer().getOnlinePlayers();
+        List<Player> sample = new ArrayList<>(Math.min(sampleSize, players.size()));
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int i = 0;
+        for (Player player : players) {
+            if (i < sampleSize) {
+                sample.add(player);
+            } else {
+                int j = random.nextInt(i + 1);
+                if (j < sampleSize) {
+                    sample.set(j, player);
+                }
+            }
+            i++;
+        }
+
+        List<OnlinePlayerRecord> records = new ArrayList<>(sample.size());
+        for (Player player : sample) {
+            records.add(createRecord(player));
+        }
+        return new AnalyticsData(serverId, time, records, i, null);
+    }
+
+    private static OnlinePlayerRecord createRecord(Player p) {
+        ProtocolVersion version = Metadata.provideForPlayer(p).getOrNull(NetworkAnalytics.PROTOCOL_VERSION);
+        String locale = p.getLocale();
+        if (locale == null || locale.equals("null")) {
+            locale = "undisclosed";
+        }
+        return new OnlinePlayerRecord(p.getUniqueId(), p.getName(), version, locale.toLowerCase());
+    }
+
+    @Override
+    public NetworkSnapshot getSnapshot() {
+        return snapshotPublisher.getSnapshot();
+    }
+
+    @Override
+    public long getSnapshotVersion() {
+        return snapshotPublisher.getVersion();
+    }
+
+    @Override
+    public Terminable addSnapshotListener(Consumer<NetworkSnapshot> listener) {
+        return snapshotPublisher.addListener(listener);
+    }
+
+    @Override
+    @Deprecated
+    public Map<String, AnalyticsData> getAnalyticsDataMap() {
+        return rosterStore.toAnalyticsData();
+    }
+
+    public String getInstanceId() {
+        return instanceData.getId();
+    }
+
+    public static String getProtocolName(ProtocolVersion version) {
+        if (version != null) {
+            String name = version.getName();
+            if (name != null) {
+                return name;
+            } else {
+                return version.name();
+            }
+        }
+        return "Unknown";
+    }
+
+}
@@ -0,0 +1,101 @@
+/*
+ * This file is part of NetworkAnalytics, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.networkanalytics;
+
+import me.lucko.helper.metadata.MetadataKey;
+import me.lucko.helper.terminable.Terminable;
+import me.lucko.networkanalytics.channel.AnalyticsData;
+import me.lucko.networkanalytics.data.DataManager;
+import me.lucko.networkanalytics.roster.RosterStore;
+import me.lucko.networkanalytics.snapshot.NetworkSnapshot;
+
+import protocolsupport.api.ProtocolVersion;
+
+import java.util.Map;
+import java.util.function.Consumer;
+
+public interface NetworkAnalytics {
+
+    MetadataKey<Long> CONNECTION_TIME_SECONDS = MetadataKey.createLongKey("na-login-time");
+
+    MetadataKey<ProtocolVersion> PROTOCOL_VERSION = MetadataKey.create("p-ver", ProtocolVersion.class);
+
+    /**
+     * Gets the analytics data manager.
+     *
+     * @return the data manager
+     */
+    DataManager getDataManager();
+
+    /**
+     * Gets the store holding the latest rosters received from each server.
+     *
+     * @return the roster store
+     */
+    RosterStore getRosterStore();
+
+    /**
+     * Gets the latest snapshot of the players online across the network.
+     *
+     * <p>The snapshot is immutable and replaced atomically, so this is cheap
+     * enough to call every tick.</p>
+     *
+     * @return the snapshot
+     */
+    NetworkSnapshot getSnapshot();
+
+    /**
+     * Gets the version of the latest snapshot, which only changes when the
+     * contents of the snapshot do.
+     *
+     * @return the snapshot version
+     */
+    long getSnapshotVersion();
+
+    /**
+     * Registers a listener to be called, usually async, each time a new snapshot is published.
+     *
+     * @param listener the listener
+     * @return a terminable which unregisters the listener
+     */
+    Terminable addSnapshotListener(Consumer<NetworkSnapshot> listener);
+
+    /**
+     * Gets the latest analytics data received from each server.
+     *
+     * <p>For servers which have sampling enabled, {@link AnalyticsData#getPlayers()}
+     * only holds a random sample of the players online, and
+     * {@link AnalyticsData#getOnlineCount()} is the real number of players.</p>
+     *
+     * @return a map of server id to analytics data
+     * @deprecated the data is no longer held in this form, and is materialized
+     *             on each call. Use {@link #getSnapshot()} for totals, or
+     *             {@link #getRosterStore()} for individual players.
+     */
+    @Deprecated
+    Map<String, AnalyticsData> getAnalyticsDataMap();
+
+}
@@ -0,0 +1,110 @@
+/*
+ * This file is part of NetworkAnalytics, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.networkanalytics.aggregator;
+
+import me.lucko.helper.redis.HelperRedis;
+
+import redis.clients.jedis.Jedis;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Elects a single aggregator for the network using a lease lock held in Redis.
+ *
+ * <p>The holder must {@link #tick() renew} the lease before it expires. If the
+ * holder goes away, the lease lapses and the next server to tick takes over.</p>
+ */
+public class AggregatorElection {
+    private static final String KEY = "na-aggregator";
+
+    // extend the lease only if we still own it
+    private static final String RENEW_SCRIPT = "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('pexpire', KEYS[1], ARGV[2]) else return 0 end";
+
+    // release the lease only if we still own it
+    private static final String RELEASE_SCRIPT = "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end";
+
+    private final HelperRedis redis;
+    private final String instanceId;
+    private final long leaseMillis;
+
+    private volatile boolean leader = false;
+
+    public AggregatorElection(HelperRedis redis, String instanceId, long leaseMillis) {
+        this.redis = redis;
+        this.instanceId = instanceId;
+        this.leaseMillis = leaseMillis;
+    }
+
+    /**
+     * Gets if this server currently holds the aggregator lease
+     *
+     * @return if this server is the aggregator
+     */
+    public boolean isLeader() {
+        return this.leader;
+    }
+
+    /**
+     * Renews the lease if held, or otherwise tries to acquire it.
+     *
+     * <p>Should be called more frequently than the lease length.</p>
+     *
+     * @return if this server holds the lease
+     */
+    public boolean tick() {
+        boolean leader;
+        try (Jedis jedis = this.redis.getJedis()) {
+            if (this.leader) {
+                Object result = jedis.eval(RENEW_SCRIPT, Collections.singletonList(KEY), Arrays.asList(this.instanceId, String.valueOf(this.leaseMillis)));
+                leader = result instanceof Long && (Long) result == 1L;
+            } else {
+                leader = "OK".equals(jedis.set(KEY, this.instanceId, "NX", "PX", this.leaseMillis));
+            }
+        } catch (Exception e) {
+            // if we can't reach redis, we can't be sure we still hold the lease
+            e.printStackTrace();
+            leader = false;
+        }
+        this.leader = leader;
+        return leader;
+    }
+
+    /**
+     * Releases the lease, if held.
+     */
+    public void release() {
+        if (!this.leader) {
+            return;
+        }
+        this.leader = false;
+        try (Jedis jedis = this.redis.getJedis()) {
+            jedis.eval(RELEASE_SCRIPT, Collections.singletonList(KEY), Collections.singletonList(this.instanceId));
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
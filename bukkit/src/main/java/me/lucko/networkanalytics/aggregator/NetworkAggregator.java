@@ -0,0 +1,186 @@
+/*
+ * This file is part of NetworkAnalytics, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.networkanalytics.aggregator;
+
+import lombok.Getter;
+
+import me.lucko.helper.Schedulers;
+import me.lucko.helper.messaging.Channel;
+import me.lucko.helper.messaging.ChannelAgent;
+import me.lucko.helper.redis.HelperRedis;
+import me.lucko.helper.terminable.TerminableConsumer;
+import me.lucko.helper.terminable.module.TerminableModule;
+import me.lucko.networkanalytics.AnalyticsPlugin;
+import me.lucko.networkanalytics.channel.NetworkSummary;
+import me.lucko.networkanalytics.data.StatsHolder;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Computes the network summary once on an elected server, and distributes it
+ * to every other server.
+ */
+public class NetworkAggregator implements TerminableModule {
+    private final AnalyticsPlugin plugin;
+    private final HelperRedis redis;
+
+    // if this server holds the full network view
+    private final boolean fullView;
+    // if this server should take part in the aggregator election
+    private final boolean electable;
+    private final long intervalSeconds;
+    private final long statsIntervalSeconds;
+    private final long leaseSeconds;
+
+    private AggregatorElection election;
+    private Channel<NetworkSummary> summaryChannel;
+
+    @Getter
+    private volatile NetworkSummary latestSummary = null;
+
+    // the latest stats computed by this server while acting as aggregator
+    private volatile StatsHolder latestStats = null;
+    private volatile long latestStatsTime = 0;
+    // if a refresh of the stats is in progress
+    private final AtomicBoolean refreshing = new AtomicBoolean(false);
+
+    public NetworkAggregator(AnalyticsPlugin plugin, HelperRedis redis, boolean fullView, boolean electable, long intervalSeconds, long statsIntervalSeconds, long leaseSeconds) {
+        this.plugin = plugin;
+        this.redis = redis;
+        this.fullView = fullView;
+        // only servers with the full view can compute the summary
+        this.electable = fullView && electable;
+        this.intervalSeconds = intervalSeconds;
+        this.statsIntervalSeconds = statsIntervalSeconds;
+        this.leaseSeconds = leaseSeconds;
+    }
+
+    @Override
+    public void setup(@Nonnull TerminableConsumer consumer) {
+        this.summaryChannel = this.redis.getChannel("na-summary", NetworkSummary.class);
+
+        ChannelAgent<NetworkSummary> agent = this.summaryChannel.newAgent();
+        agent.bindWith(consumer);
+        agent.addListener((a, message) -> {
+            NetworkSummary current = this.latestSummary;
+            if (current == null || message.getTimeSent() >= current.getTimeSent()) {
+                this.latestSummary = message;
+
+                // servers with the full view publish snapshots from their own rosters
+                if (!this.fullView) {
+                    this.plugin.getSnapshotPublisher().publish(message);
+                }
+            }
+        });
+
+        if (!this.electable) {
+            return;
+        }
+
+        this.election = new AggregatorElection(this.redis, this.plugin.getInstanceId(), TimeUnit.SECONDS.toMillis(this.leaseSeconds));
+        consumer.bind((AutoCloseable) this.election::release);
+
+        long electionTicks = Math.max(20L, (this.leaseSeconds * 20L) / 3L);
+        Schedulers.async().runRepeating(this.election::tick, 20L, electionTicks).bindWith(consumer);
+
+        long intervalTicks = this.intervalSeconds * 20L;
+        Schedulers.async().runRepeating(this::publish, intervalTicks, intervalTicks).bindWith(consumer);
+    }
+
+    public boolean isAggregator() {
+        return this.election != null && this.election.isLeader();
+    }
+
+    private void publish() {
+        if (!isAggregator()) {
+            // forget any stats we computed previously, they'll be stale if we're re-elected
+            this.latestStats = null;
+            return;
+        }
+
+        long now = System.currentTimeMillis() / 1000L;
+        boolean due = this.latestStats == null || now - this.latestStatsTime >= this.statsIntervalSeconds;
+        if (due && this.refreshing.compareAndSet(false, true)) {
+            // the sql stats are comparatively expensive, so refresh them on a longer interval.
+            // the summary is sent once they're ready, without holding up the scheduler thread
+            this.plugin.getDataManager().getStats().whenComplete((stats, t) -> this.refreshing.set(false)).thenAccept(stats -> {
+                stats.ifPresent(s -> {
+                    this.latestStats = s;
+                    this.latestStatsTime = now;
+                });
+                sendSummary();
+            });
+            return;
+        }
+
+        sendSummary();
+    }
+
+    private void sendSummary() {
+        StatsHolder stats = this.latestStats;
+        if (stats == null || !isAggregator()) {
+            return;
+        }
+
+        this.summaryChannel.sendMessage(NetworkSummary.compute(this.plugin.getInstanceId(), this.plugin.getRosterStore(), stats, this.plugin.isSampling()));
+    }
+
+    /**
+     * Gets the latest network summary, if one has been received recently.
+     *
+     * @return the summary
+     */
+    public Optional<NetworkSummary> getFreshSummary() {
+        NetworkSummary summary = this.latestSummary;
+        if (summary == null) {
+            return Optional.empty();
+        }
+
+        long age = (System.currentTimeMillis() / 1000L) - summary.getTimeSent();
+        return age <= this.intervalSeconds * 3 ? Optional.of(summary) : Optional.empty();
+    }
+
+    /**
+     * Gets a network summary, using the one published by the aggregator if
+     * available, or otherwise computing one locally if this server has a full
+     * view of the network.
+     *
+     * @return the summary
+     */
+    public CompletableFuture<Optional<NetworkSummary>> requestSummary() {
+        Optional<NetworkSummary> summary = getFreshSummary();
+        if (summary.isPresent() || !this.fullView) {
+            return CompletableFuture.completedFuture(summary);
+        }
+
+        return this.plugin.getDataManager().getStats().thenApply(stats -> stats.map(s -> NetworkSummary.compute(this.plugin.getInstanceId(), this.plugin.getRosterStore(), s, this.plugin.isSampling())));
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * This file is part of NetworkAnalytics, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.networkanalytics.channel;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The players online on a single server, as sent over the network.
+ *
+ * <p>Servers with sampling enabled only send a random sample of their players.
+ * In that case {@link #getPlayers()} holds the sample, and {@link #getOnlineCount()}
+ * is the real number of players online.</p>
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class AnalyticsData {
+
+    private String serverId;
+    private long timeSent;
+    private List<OnlinePlayerRecord> players;
+
+    // the number of players online, only present when the sending server has sampling enabled
+    private Integer onlineCount;
+
+    // a random sample of the players online. older senders put a sampled roster here instead of in 'players'
+    private List<OnlinePlayerRecord> sample;
+
+    public AnalyticsData() {
+
+    }
+
+    public AnalyticsData(String serverId, long timeSent, List<OnlinePlayerRecord> players) {
+        this(serverId, timeSent, players, null, null);
+    }
+
+    /**
+     * Gets the players online.
+     *
+     * <p>If the server is sampling, this is only a random sample of the players
+     * online. Use {@link #getOnlineCount()} for the real count.</p>
+     *
+     * @return the players, never null
+     */
+    public List<OnlinePlayerRecord> getPlayers() {
+        if (this.players == null) {
+            return this.sample == null ? Collections.emptyList() : this.sample;
+        }
+        return this.players;
+    }
+
+    /**
+     * Gets the number of players online.
+     *
+     * @return the number of players online
+     */
+    public int getOnlineCount() {
+        if (this.onlineCount == null) {
+            return getPlayers().size();
+        }
+        return Math.max(this.onlineCount, getPlayers().size());
+    }
+
+}
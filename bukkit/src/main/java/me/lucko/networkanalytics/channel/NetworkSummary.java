@@ -0,0 +1,163 @@
+/*
+ * This file is part of NetworkAnalytics, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.networkanalytics.channel;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import me.lucko.networkanalytics.data.StatsHolder;
+import me.lucko.networkanalytics.roster.RosterStore;
+import me.lucko.networkanalytics.roster.ServerRoster;
+import me.lucko.networkanalytics.roster.StratifiedEstimate;
+
+import protocolsupport.api.ProtocolVersion;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A precomputed summary of the whole network, published by the elected aggregator.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class NetworkSummary {
+
+    /**
+     * The key used in the histograms for players with an unknown version or locale
+     */
+    public static final String UNKNOWN = "unknown";
+
+    /**
+     * Computes a summary from the given rosters and stats
+     *
+     * @param aggregatorId the id of the server computing the summary
+     * @param rosterStore the rosters
+     * @param stats the latest stats
+     * @param sampled if the version & locale breakdowns should be estimated from the samples sent by each server.
+     *                they are always estimated if any server only sent a sample
+     * @return a summary
+     */
+    public static NetworkSummary compute(String aggregatorId, RosterStore rosterStore, StatsHolder stats, boolean sampled) {
+        Map<String, Integer> serverCounts = new HashMap<>();
+        int totalPlayers = 0;
+        for (ServerRoster roster : rosterStore.getRosters()) {
+            serverCounts.put(roster.getServerId(), roster.getOnlineCount());
+            totalPlayers += roster.getOnlineCount();
+        }
+
+        if (sampled || rosterStore.isPartial()) {
+            Map<String, Integer> versionCounts = new HashMap<>();
+            Map<String, Double> versionMargins = new HashMap<>();
+            StratifiedEstimate versions = rosterStore.estimateVersions();
+            for (int i = 0; i < versions.categories(); i++) {
+                if (versions.getProportion(i) > 0) {
+                    ProtocolVersion version = i == versions.categories() - 1 ? null : ServerRoster.versionByOrdinal(i);
+                    String key = version == null ? UNKNOWN : version.name();
+                    versionCounts.merge(key, versions.getEstimatedCount(i), Integer::sum);
+                    versionMargins.merge(key, versions.getMargin(i), Math::max);
+                }
+            }
+
+            Map<String, Integer> localeCounts = new HashMap<>();
+            Map<String, Double> localeMargins = new HashMap<>();
+            StratifiedEstimate locales = rosterStore.estimateLocales();
+            for (int i = 0; i < locales.categories(); i++) {
+                if (locales.getProportion(i) > 0) {
+                    String locale = i == locales.categories() - 1 ? null : rosterStore.getLocaleTable().get(i);
+                    String key = locale == null ? UNKNOWN : locale;
+                    localeCounts.merge(key, locales.getEstimatedCount(i), Integer::sum);
+                    localeMargins.merge(key, locales.getMargin(i), Math::max);
+                }
+            }
+
+            return new NetworkSummary(aggregatorId, System.currentTimeMillis() / 1000L, totalPlayers, serverCounts, versionCounts, localeCounts, stats, true, versionMargins, localeMargins);
+        }
+
+        Map<String, Integer> versionCounts = new HashMap<>();
+        int[] versions = rosterStore.countVersions();
+        for (int i = 0; i < versions.length; i++) {
+            if (versions[i] != 0) {
+                // the final element holds unknown versions
+                ProtocolVersion version = i == versions.length - 1 ? null : ServerRoster.versionByOrdinal(i);
+                versionCounts.merge(version == null ? UNKNOWN : version.name(), versions[i], Integer::sum);
+            }
+        }
+
+        Map<String, Integer> localeCounts = new HashMap<>();
+        int[] locales = rosterStore.countLocales();
+        for (int i = 0; i < locales.length; i++) {
+            if (locales[i] != 0) {
+                // the final element holds unknown locales
+                String locale = i == locales.length - 1 ? null : rosterStore.getLocaleTable().get(i);
+                localeCounts.merge(locale == null ? UNKNOWN : locale, locales[i], Integer::sum);
+            }
+        }
+
+        return new NetworkSummary(aggregatorId, System.currentTimeMillis() / 1000L, totalPlayers, serverCounts, versionCounts, localeCounts, stats, false, null, null);
+    }
+
+    private String aggregatorId;
+    private long timeSent;
+
+    private int totalPlayers;
+    private Map<String, Integer> serverCounts;
+    private Map<String, Integer> versionCounts;
+    private Map<String, Integer> localeCounts;
+
+    private StatsHolder stats;
+
+    // if the version & locale counts are estimates
+    private boolean sampled;
+
+    // the half width of the 95% confidence interval for the proportion of
+    // players in each version/locale, if sampled
+    private Map<String, Double> versionMargins;
+    private Map<String, Double> localeMargins;
+
+    public NetworkSummary() {
+
+    }
+
+    /**
+     * Parses a key from {@link #getVersionCounts()} back to a protocol version
+     *
+     * @param key the key
+     * @return the version, or null if unknown
+     */
+    public static ProtocolVersion parseVersion(String key) {
+        if (key == null || key.equals(UNKNOWN)) {
+            return null;
+        }
+        try {
+            return ProtocolVersion.valueOf(key);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+}
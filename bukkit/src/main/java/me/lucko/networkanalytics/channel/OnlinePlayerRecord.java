@@ -36,6 +36,25 @@ import java.util.UUID;
 @ToString
 public class OnlinePlayerRecord {
 
+    /**
+     * Creates a record from the raw name of a protocol version, for senders
+     * which don't have ProtocolSupport available.
+     *
+     * @param uuid the players uuid
+     * @param username the players username
+     * @param versionName the name of the {@link ProtocolVersion}, or null if unknown
+     * @param locale the players locale
+     * @return a new record
+     */
+    public static OnlinePlayerRecord ofVersionName(UUID uuid, String username, String versionName, String locale) {
+        OnlinePlayerRecord record = new OnlinePlayerRecord();
+        record.uuid = uuid;
+        record.username = username;
+        record.version = versionName;
+        record.locale = locale;
+        return record;
+    }
+
     @Getter
     private UUID uuid;
     @Getter
@@ -66,6 +85,15 @@ public class OnlinePlayerRecord {
         }
     }
 
+    /**
+     * Gets the raw name of the players protocol version, as sent over the wire.
+     *
+     * @return the version name, may be null
+     */
+    public String getVersionName() {
+        return version;
+    }
+
     public Optional<String> getLocale() {
         return Optional.ofNullable(locale);
     }
@@ -0,0 +1,407 @@
+/*
+ * This file is part of NetworkAnalytics, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.networkanalytics.data;
+
+import lombok.Getter;
+
+import me.lucko.networkanalytics.data.leaderboard.LeaderboardPage;
+import me.lucko.networkanalytics.data.leaderboard.LeaderboardType;
+import me.lucko.networkanalytics.data.leaderboard.Leaderboards;
+import me.lucko.networkanalytics.data.rollup.DailyRollup;
+import me.lucko.networkanalytics.data.rollup.RollupTracker;
+import me.lucko.networkanalytics.data.sketch.PlayerDistributions;
+import me.lucko.networkanalytics.data.slowlog.SlowOperation;
+import me.lucko.networkanalytics.data.slowlog.SlowOperationLog;
+import me.lucko.networkanalytics.data.storage.Storage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+public class DataManager {
+
+    // the number of recently active players pre-loaded into the lookup cache
+    private static final int PRELOAD_LIMIT = 5000;
+    // lookups are cached for at least this long, even if nothing is pre-loaded
+    private static final long MIN_LOOKUP_CACHE_SECONDS = 3600L;
+
+    @Getter
+    private final Storage storage;
+    private final String serverId;
+    private final Executor executor;
+    private final long preloadSeconds;
+
+    @Getter
+    private final PlayerDistributions distributions;
+    private final RollupTracker rollups;
+
+    @Getter
+    private final PlayerLookupCache lookupCache;
+    @Getter
+    private final SlowOperationLog slowLog;
+    private final Leaderboards leaderboards;
+    private final UsernameSearch usernameSearch;
+
+    // tasks submitted before the storage is ready, run in order once it is
+    private final List<Runnable> pending = new ArrayList<>();
+    private volatile boolean ready = false;
+    private final CompletableFuture<Void> readyFuture = new CompletableFuture<>();
+
+    /**
+     * Creates a new data manager.
+     *
+     * @param storage the storage
+     * @param serverId the id of this server
+     * @param executor the executor to run storage requests on
+     * @param lookupCacheSize the maximum number of players in the lookup cache
+     * @param preloadSeconds how far back to look for recently active players to pre-load,
+     *                       also how long lookups stay cached. Nothing is pre-loaded if 0.
+     * @param slowLog the slow operation log
+     */
+    public DataManager(Storage storage, String serverId, Executor executor, long lookupCacheSize, long preloadSeconds, SlowOperationLog slowLog) {
+        this.storage = storage;
+        this.slowLog = slowLog;
+        this.serverId = serverId;
+        this.executor = executor;
+        this.preloadSeconds = preloadSeconds;
+        this.distributions = new PlayerDistributions(storage);
+        this.rollups = new RollupTracker(storage, serverId);
+        this.lookupCache = new PlayerLookupCache(lookupCacheSize, Math.max(preloadSeconds, MIN_LOOKUP_CACHE_SECONDS));
+        this.leaderboards = new Leaderboards(storage, 30);
+        this.usernameSearch = new UsernameSearch(storage, executor, (int) lookupCacheSize);
+    }
+
+    /**
+     * Initialises the storage in the background.
+     *
+     * <p>Requests made before the storage is ready are queued, and run once
+     * initialisation has completed.</p>
+     *
+     * @param logger the logger to report progress to
+     * @return a future completed once the storage is ready
+     */
+    public CompletableFuture<Void> init(Logger logger) {
+        executor.execute(() -> {
+            long start = System.currentTimeMillis();
+            SlowOperationLog.withOperation("init", () -> {
+                try {
+                    storage.init();
+                    distributions.bootstrap();
+                    rollups.init();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            });
+
+            if (preloadSeconds > 0) {
+                try {
+                    long since = (System.currentTimeMillis() / 1000L) - preloadSeconds;
+                    Map<UUID, String> recent = storage.getRecentPlayers(since, PRELOAD_LIMIT);
+                    lookupCache.putAll(recent);
+                    recent.values().forEach(usernameSearch::add);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+
+            int queued = drainPending();
+            logger.info("Storage ready in " + (System.currentTimeMillis() - start) + "ms (pre-loaded " + lookupCache.size() + " players, ran " + queued + " queued requests).");
+            readyFuture.complete(null);
+        });
+        return readyFuture;
+    }
+
+    private int drainPending() {
+        int count = 0;
+        while (true) {
+            List<Runnable> tasks;
+            synchronized (pending) {
+                if (pending.isEmpty()) {
+                    ready = true;
+                    return count;
+                }
+                tasks = new ArrayList<>(pending);
+                pending.clear();
+            }
+
+            for (Runnable task : tasks) {
+                task.run();
+            }
+            count += tasks.size();
+        }
+    }
+
+    private <T> CompletableFuture<T> submit(String operation, Supplier<T> supplier) {
+        Supplier<T> task = () -> SlowOperationLog.withOperation(operation, supplier);
+        if (!ready) {
+            synchronized (pending) {
+                if (!ready) {
+                    CompletableFuture<T> future = new CompletableFuture<>();
+                    pending.add(() -> {
+                        try {
+                            future.complete(task.get());
+                        } catch (Throwable t) {
+                            future.completeExceptionally(t);
+                        }
+                    });
+                    return future;
+                }
+            }
+        }
+        return CompletableFuture.supplyAsync(task, executor);
+    }
+
+    private CompletableFuture<Void> submit(String operation, Runnable task) {
+        return submit(operation, () -> {
+            task.run();
+            return null;
+        });
+    }
+
+    public void shutdown() {
+        // give queued requests a chance to be written
+        try {
+            readyFuture.get(10, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+
+        flushDistributions();
+        flushRollups();
+        storage.shutdown();
+    }
+
+    public void flushDistributions() {
+        if (!ready) {
+            return;
+        }
+        SlowOperationLog.withOperation("flushDistributions", () -> {
+            try {
+                distributions.flush();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    public void flushRollups() {
+        if (!ready) {
+            return;
+        }
+        SlowOperationLog.withOperation("flushRollups", () -> {
+            try {
+                rollups.flush();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    public CompletableFuture<Void> logPlayer(UUID uuid, String username) {
+        lookupCache.put(uuid, username);
+        usernameSearch.add(username);
+        long time = System.currentTimeMillis() / 1000L;
+        return submit("logPlayer", () -> {
+            try {
+                int timesConnected = storage.logPlayer(uuid, username, time, serverId);
+                distributions.onLogin(timesConnected);
+                rollups.onLogin(uuid, timesConnected);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    /**
+     * Records the end of a players session on this server.
+     *
+     * @param seconds the length of the session, in seconds
+     */
+    public void recordSession(long seconds) {
+        distributions.onSession(seconds);
+    }
+
+    public CompletableFuture<Boolean> incrementPlayerMinutesPlayed(UUID uuid, int minutes) {
+        return submit("incrementPlayerMinutesPlayed", () -> {
+            try {
+                int minutesPlayed = storage.incrementMinutesPlayed(uuid, minutes);
+                distributions.onPlayTimeIncrement(minutesPlayed, minutes);
+                if (minutesPlayed != -1) {
+                    rollups.onPlayTime(minutes);
+                }
+                return minutesPlayed != -1;
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            return false;
+        });
+    }
+
+    public CompletableFuture<Optional<String>> getUsername(UUID uuid) {
+        Optional<String> cached = lookupCache.getUsername(uuid);
+        if (cached.isPresent()) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return submit("getUsername", () -> {
+            try {
+                Optional<String> username = storage.getUsername(uuid);
+                username.ifPresent(name -> lookupCache.put(uuid, name));
+                return username;
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            return Optional.empty();
+        });
+    }
+
+    public CompletableFuture<Optional<UUID>> getUuid(String username) {
+        Optional<UUID> cached = lookupCache.getUuid(username);
+        if (cached.isPresent()) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return submit("getUuid", () -> {
+            try {
+                Optional<UUID> uuid = storage.getUuid(username);
+                uuid.ifPresent(id -> lookupCache.putUuid(username, id));
+                return uuid;
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            return Optional.empty();
+        });
+    }
+
+    /**
+     * Gets usernames starting with the given prefix, without waiting for the storage.
+     *
+     * <p>Safe to call from the main thread.</p>
+     *
+     * @param prefix the prefix
+     * @param limit the maximum number of names to return
+     * @return the names
+     * @see UsernameSearch#complete(String, int, boolean)
+     */
+    public List<String> completeUsernames(String prefix, int limit) {
+        return usernameSearch.complete(prefix, limit, ready);
+    }
+
+    public CompletableFuture<Optional<PlayerRecord>> getPlayerData(UUID uuid) {
+        return submit("getPlayerData", () -> {
+            try {
+                return storage.getPlayerData(uuid);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            return Optional.empty();
+        });
+    }
+
+    public CompletableFuture<Optional<StatsHolder>> getStats() {
+        return submit("getStats", () -> {
+            long now = System.currentTimeMillis() / 1000L;
+            try {
+                StatsHolder stats = storage.getStats(now);
+                stats.setPlayTimeQuantiles(distributions.summarisePlayTime());
+                stats.setSessionLengthQuantiles(distributions.summariseSessionLength());
+                stats.setTimesConnectedQuantiles(distributions.summariseTimesConnected());
+                return Optional.of(stats);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            return Optional.empty();
+        });
+    }
+
+    /**
+     * Sums the daily rollups for each server over the given date range.
+     *
+     * @param from the first day, inclusive
+     * @param to the last day, inclusive
+     * @return the totals for each server
+     */
+    public CompletableFuture<Optional<Map<String, DailyRollup>>> getDailyRollups(LocalDate from, LocalDate to) {
+        return submit("getDailyRollups", () -> {
+            try {
+                return Optional.of(storage.getDailyRollups(from.toEpochDay(), to.toEpochDay()));
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            return Optional.empty();
+        });
+    }
+
+    /**
+     * Gets a page of a leaderboard. Pages are cached for a short time.
+     *
+     * @param type the leaderboard
+     * @param page the page number, starting from 1
+     * @return the page
+     */
+    public CompletableFuture<Optional<LeaderboardPage>> getLeaderboard(LeaderboardType type, int page) {
+        return submit("getLeaderboard", () -> {
+            try {
+                return Optional.of(leaderboards.getPage(type, page));
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            return Optional.empty();
+        });
+    }
+
+    /**
+     * Captures the query plan for a recorded slow statement.
+     *
+     * @param id the id of the recorded statement
+     * @return the statement, with its plan set, or empty if no statement with the id has been recorded
+     */
+    public CompletableFuture<Optional<SlowOperation>> explainSlowOperation(int id) {
+        Optional<SlowOperation> operation = slowLog.get(id);
+        if (!operation.isPresent()) {
+            return CompletableFuture.completedFuture(operation);
+        }
+
+        return submit("explain", () -> {
+            SlowOperation op = operation.get();
+            if (op.getPlan() == null) {
+                try {
+                    op.setPlan(storage.explain(op.getStatement(), op.getParameters()));
+                } catch (Exception e) {
+                    op.setPlan(Collections.singletonList("Unable to explain statement: " + e.getMessage()));
+                }
+            }
+            return operation;
+        });
+    }
+}
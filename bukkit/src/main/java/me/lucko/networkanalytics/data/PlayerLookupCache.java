@@ -0,0 +1,98 @@
+/*
+ * This file is part of NetworkAnalytics, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.networkanalytics.data;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A bounded cache of uuid <-> username mappings, used to answer lookups
+ * for recently active players without querying the storage.
+ *
+ * <p>Entries expire a fixed time after they were written, so players pre-loaded
+ * on startup stay cached for the whole pre-load window even if nobody looks
+ * them up in the meantime.</p>
+ */
+public class PlayerLookupCache {
+
+    private final Cache<UUID, String> usernames;
+    private final Cache<String, UUID> uuids;
+
+    public PlayerLookupCache(long maximumSize, long expireSeconds) {
+        this.usernames = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireSeconds, TimeUnit.SECONDS)
+                .build();
+        this.uuids = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireSeconds, TimeUnit.SECONDS)
+                .build();
+    }
+
+    public void put(UUID uuid, String username) {
+        String previous = this.usernames.getIfPresent(uuid);
+        if (previous != null && !previous.equalsIgnoreCase(username)) {
+            this.uuids.invalidate(previous.toLowerCase(Locale.ROOT));
+        }
+        this.usernames.put(uuid, username);
+        this.uuids.put(username.toLowerCase(Locale.ROOT), uuid);
+    }
+
+    /**
+     * Caches the uuid for a username, without caching the username for the uuid.
+     *
+     * <p>Used when the username may not be in the players' own capitalisation.</p>
+     *
+     * @param username the username
+     * @param uuid the uuid
+     */
+    public void putUuid(String username, UUID uuid) {
+        this.uuids.put(username.toLowerCase(Locale.ROOT), uuid);
+    }
+
+    public void putAll(Map<UUID, String> players) {
+        players.forEach(this::put);
+    }
+
+    public Optional<String> getUsername(UUID uuid) {
+        return Optional.ofNullable(this.usernames.getIfPresent(uuid));
+    }
+
+    public Optional<UUID> getUuid(String username) {
+        return Optional.ofNullable(this.uuids.getIfPresent(username.toLowerCase(Locale.ROOT)));
+    }
+
+    public long size() {
+        return this.usernames.size();
+    }
+
+}
@@ -0,0 +1,153 @@
+/*
+ * This file is part of NetworkAnalytics, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.networkanalytics.data;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import me.lucko.networkanalytics.data.storage.Storage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Searches for usernames by prefix.
+ *
+ * <p>Recently seen names are held in a {@link UsernameTrie}. Prefixes of at least
+ * {@link #MIN_STORAGE_PREFIX} characters are also searched in the storage, and
+ * the results cached for a short time. {@link #complete(String, int, boolean)} never waits
+ * for the storage - if the results aren't cached, a search is started in the
+ * background and the results are available on the next request.</p>
+ */
+public class UsernameSearch {
+
+    public static final int MIN_STORAGE_PREFIX = 3;
+
+    // the number of names read from the storage per prefix
+    private static final int STORAGE_LIMIT = 50;
+
+    private final Storage storage;
+    private final Executor executor;
+    private final UsernameTrie trie;
+
+    // lowercase prefix -> matching names from the storage
+    private final Cache<String, List<String>> results = CacheBuilder.newBuilder()
+            .maximumSize(1000)
+            .expireAfterWrite(60, TimeUnit.SECONDS)
+            .build();
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+    public UsernameSearch(Storage storage, Executor executor, int trieSize) {
+        this.storage = storage;
+        this.executor = executor;
+        this.trie = new UsernameTrie(trieSize);
+    }
+
+    public void add(String username) {
+        this.trie.add(username);
+    }
+
+    /**
+     * Gets the names matching the given prefix which are available without querying the storage.
+     *
+     * @param prefix the prefix
+     * @param limit the maximum number of names to return
+     * @param useStorage if a background storage search may be started
+     * @return the names, in alphabetical order
+     */
+    public List<String> complete(String prefix, int limit, boolean useStorage) {
+        Set<String> names = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        names.addAll(this.trie.search(prefix, limit));
+
+        if (useStorage && prefix.length() >= MIN_STORAGE_PREFIX) {
+            List<String> stored = getCached(prefix);
+            if (stored != null) {
+                names.addAll(stored);
+            } else {
+                String key = prefix.toLowerCase(Locale.ROOT);
+                if (this.inFlight.add(key)) {
+                    this.executor.execute(() -> {
+                        try {
+                            searchStorage(prefix);
+                        } catch (Exception e) {
+                            e.printStackTrace();
+                        } finally {
+                            this.inFlight.remove(key);
+                        }
+                    });
+                }
+            }
+        }
+
+        return truncate(names, limit);
+    }
+
+    private List<String> searchStorage(String prefix) throws Exception {
+        List<String> stored = this.storage.searchUsernames(prefix, STORAGE_LIMIT);
+        this.results.put(prefix.toLowerCase(Locale.ROOT), stored);
+        return stored;
+    }
+
+    private List<String> getCached(String prefix) {
+        String key = prefix.toLowerCase(Locale.ROOT);
+        List<String> cached = this.results.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        // if a shorter prefix returned every match, filter its results instead
+        for (int length = key.length() - 1; length >= MIN_STORAGE_PREFIX; length--) {
+            List<String> shorter = this.results.getIfPresent(key.substring(0, length));
+            if (shorter != null && shorter.size() < STORAGE_LIMIT) {
+                List<String> filtered = new ArrayList<>();
+                for (String name : shorter) {
+                    if (name.regionMatches(true, 0, key, 0, key.length())) {
+                        filtered.add(name);
+                    }
+                }
+                return filtered;
+            }
+        }
+        return null;
+    }
+
+    private static List<String> truncate(Set<String> names, int limit) {
+        List<String> list = new ArrayList<>(Math.min(names.size(), limit));
+        for (String name : names) {
+            if (list.size() >= limit) {
+                break;
+            }
+            list.add(name);
+        }
+        return list;
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * This file is part of NetworkAnalytics, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.networkanalytics.data;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A bounded, case-insensitive prefix tree of recently seen usernames.
+ *
+ * <p>Once full, the least recently seen name is removed.</p>
+ */
+public class UsernameTrie {
+
+    private final int maximumSize;
+    private final Node root = new Node();
+
+    // lowercase name -> name, in access order
+    private final LinkedHashMap<String, String> recent = new LinkedHashMap<>(16, 0.75f, true);
+
+    public UsernameTrie(int maximumSize) {
+        this.maximumSize = maximumSize;
+    }
+
+    public synchronized void add(String username) {
+        String key = username.toLowerCase(Locale.ROOT);
+        this.recent.put(key, username);
+
+        Node node = this.root;
+        for (int i = 0; i < key.length(); i++) {
+            node = node.children.computeIfAbsent(key.charAt(i), c -> new Node());
+        }
+        node.username = username;
+
+        if (this.recent.size() > this.maximumSize) {
+            Iterator<String> it = this.recent.keySet().iterator();
+            String eldest = it.next();
+            it.remove();
+            remove(this.root, eldest, 0);
+        }
+    }
+
+    // returns true if the node is now empty and can be removed from its parent
+    private static boolean remove(Node node, String key, int depth) {
+        if (depth == key.length()) {
+            node.username = null;
+        } else {
+            Node child = node.children.get(key.charAt(depth));
+            if (child != null && remove(child, key, depth + 1)) {
+                node.children.remove(key.charAt(depth));
+            }
+        }
+        return node.username == null && node.children.isEmpty();
+    }
+
+    /**
+     * Gets the names starting with the given prefix, ignoring case, in alphabetical order.
+     *
+     * @param prefix the prefix
+     * @param limit the maximum number of names to return
+     * @return the names
+     */
+    public synchronized List<String> search(String prefix, int limit) {
+        String key = prefix.toLowerCase(Locale.ROOT);
+        Node node = this.root;
+        for (int i = 0; i < key.length() && node != null; i++) {
+            node = node.children.get(key.charAt(i));
+        }
+
+        List<String> results = new ArrayList<>();
+        if (node != null) {
+            collect(node, results, limit);
+        }
+        return results;
+    }
+
+    private static void collect(Node node, List<String> results, int limit) {
+        if (node.username != null) {
+            results.add(node.username);
+        }
+        for (Node child : node.children.values()) {
+            if (results.size() >= limit) {
+                return;
+            }
+            collect(child, results, limit);
+        }
+    }
+
+    public synchronized int size() {
+        return this.recent.size();
+    }
+
+    private static final class Node {
+        private final Map<Character, Node> children = new TreeMap<>();
+        private String username;
+    }
+}
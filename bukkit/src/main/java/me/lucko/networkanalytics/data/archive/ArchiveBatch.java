@@ -0,0 +1,81 @@
+/*
+ * This file is part of NetworkAnalytics, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.networkanalytics.data.archive;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * The result of archiving a single batch of inactive players.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class ArchiveBatch {
+
+    /**
+     * Creates the key for a player. Players are archived in order of last login, then uuid.
+     *
+     * @param lastLogin the players last login time
+     * @param uuid the string form of the players uuid
+     * @return the key
+     */
+    public static String createKey(long lastLogin, String uuid) {
+        return lastLogin + "/" + uuid;
+    }
+
+    /**
+     * Gets the last login time from a key
+     *
+     * @param key the key, or an empty string
+     * @return the last login time, or -1 for the empty key
+     */
+    public static long getKeyLastLogin(String key) {
+        return key.isEmpty() ? -1 : Long.parseLong(key.substring(0, key.indexOf('/')));
+    }
+
+    /**
+     * Gets the uuid from a key
+     *
+     * @param key the key, or an empty string
+     * @return the string form of the uuid, or an empty string for the empty key
+     */
+    public static String getKeyUuid(String key) {
+        return key.isEmpty() ? "" : key.substring(key.indexOf('/') + 1);
+    }
+
+    /**
+     * The number of players archived
+     */
+    private final int archived;
+
+    /**
+     * The key to continue from in the next batch, or null if there are no more players to archive
+     */
+    private final String nextKey;
+
+}
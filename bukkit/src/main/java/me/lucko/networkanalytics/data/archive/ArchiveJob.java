@@ -0,0 +1,106 @@
+/*
+ * This file is part of NetworkAnalytics, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.networkanalytics.data.archive;
+
+import me.lucko.networkanalytics.data.storage.Storage;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+/**
+ * Moves players who haven't logged in for a while from the main table into the archive.
+ *
+ * <p>Players are moved in small batches, keyed by last login & uuid, with a pause
+ * between each batch so the job never holds locks for long.</p>
+ */
+public class ArchiveJob implements Runnable {
+
+    /**
+     * The minimum inactivity before a player can be archived.
+     *
+     * @see ArchiveTotals
+     */
+    public static final long MIN_INACTIVE_DAYS = 30;
+
+    private final Storage storage;
+    private final Logger logger;
+    private final long inactiveSeconds;
+    private final int batchSize;
+    private final long pauseMillis;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private volatile boolean stopped = false;
+
+    public ArchiveJob(Storage storage, Logger logger, long inactiveDays, int batchSize, long pauseMillis) {
+        this.storage = storage;
+        this.logger = logger;
+        this.inactiveSeconds = TimeUnit.DAYS.toSeconds(Math.max(MIN_INACTIVE_DAYS, inactiveDays));
+        this.batchSize = batchSize;
+        this.pauseMillis = pauseMillis;
+    }
+
+    @Override
+    public void run() {
+        if (!this.running.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            long cutoff = (System.currentTimeMillis() / 1000L) - this.inactiveSeconds;
+            String key = "";
+            int total = 0;
+
+            while (!this.stopped) {
+                ArchiveBatch batch = this.storage.archiveInactivePlayers(cutoff, key, this.batchSize);
+                total += batch.getArchived();
+                if (batch.getNextKey() == null) {
+                    break;
+                }
+                key = batch.getNextKey();
+
+                Thread.sleep(this.pauseMillis);
+            }
+
+            if (total != 0) {
+                this.logger.info("Archived " + total + " inactive players.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            this.running.set(false);
+        }
+    }
+
+    /**
+     * Stops the job after the current batch.
+     */
+    public void stop() {
+        this.stopped = true;
+    }
+}
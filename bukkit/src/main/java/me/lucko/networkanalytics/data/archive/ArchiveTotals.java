@@ -0,0 +1,98 @@
+/*
+ * This file is part of NetworkAnalytics, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.networkanalytics.data.archive;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * The totals for all archived players, kept so that the all-time figures in
+ * {@link me.lucko.networkanalytics.data.StatsHolder} include them.
+ *
+ * <p>Players are only archived once they've been inactive for at least 30 days,
+ * so they always count towards the "last login more than 1 month/week ago"
+ * figures, and never towards the recent activity figures.</p>
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class ArchiveTotals {
+
+    /**
+     * Gets the totals contributed by a single player
+     *
+     * @param minutesPlayed the players minutes played
+     * @param timesConnected the players connection count
+     * @return the totals
+     */
+    public static ArchiveTotals of(int minutesPlayed, int timesConnected) {
+        return new ArchiveTotals(
+                1, minutesPlayed, timesConnected,
+                minutesPlayed > 60 ? 1 : 0,
+                minutesPlayed > 360 ? 1 : 0,
+                timesConnected > 50 ? 1 : 0,
+                timesConnected < 10 ? 1 : 0,
+                minutesPlayed < 30 ? 1 : 0
+        );
+    }
+
+    private long players;
+    private long minutesPlayed;
+    private long timesConnected;
+
+    private long numWithPtGreaterThan1h;
+    private long numWithPtGreaterThan6h;
+    private long numWithConnGreaterThan50;
+    private long numWithConnLessThan10;
+    private long numWithPtLessThan30m;
+
+    public ArchiveTotals() {
+
+    }
+
+    public ArchiveTotals add(ArchiveTotals other) {
+        return new ArchiveTotals(
+                players + other.players,
+                minutesPlayed + other.minutesPlayed,
+                timesConnected + other.timesConnected,
+                numWithPtGreaterThan1h + other.numWithPtGreaterThan1h,
+                numWithPtGreaterThan6h + other.numWithPtGreaterThan6h,
+                numWithConnGreaterThan50 + other.numWithConnGreaterThan50,
+                numWithConnLessThan10 + other.numWithConnLessThan10,
+                numWithPtLessThan30m + other.numWithPtLessThan30m
+        );
+    }
+
+    public ArchiveTotals negate() {
+        return new ArchiveTotals(
+                -players, -minutesPlayed, -timesConnected,
+                -numWithPtGreaterThan1h, -numWithPtGreaterThan6h, -numWithConnGreaterThan50,
+                -numWithConnLessThan10, -numWithPtLessThan30m
+        );
+    }
+
+}
@@ -0,0 +1,103 @@
+/*
+ * This file is part of NetworkAnalytics, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.networkanalytics.data.leaderboard;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import me.lucko.networkanalytics.data.storage.Storage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads leaderboard pages from the storage, caching each leaderboard for a short time.
+ *
+ * <p>Each leaderboard is cached as a single snapshot, which every page is read
+ * from, so players don't appear twice or get skipped between pages. The snapshot
+ * is filled in on demand using keyset pagination - a request for a page beyond
+ * what has been read so far continues from the last entry already read, with a
+ * single query.</p>
+ */
+public class Leaderboards {
+
+    public static final int PAGE_SIZE = 10;
+    public static final int MAX_PAGES = 50;
+
+    private final Storage storage;
+    private final Cache<LeaderboardType, Snapshot> cache;
+
+    public Leaderboards(Storage storage, long cacheSeconds) {
+        this.storage = storage;
+        this.cache = CacheBuilder.newBuilder()
+                .expireAfterWrite(cacheSeconds, TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * Gets a page of the given leaderboard
+     *
+     * @param type the leaderboard
+     * @param page the page number, starting from 1
+     * @return the page
+     * @throws Exception if an error occurs
+     */
+    public LeaderboardPage getPage(LeaderboardType type, int page) throws Exception {
+        if (page < 1 || page > MAX_PAGES) {
+            throw new IllegalArgumentException("page " + page);
+        }
+
+        int from = (page - 1) * PAGE_SIZE;
+        int to = from + PAGE_SIZE;
+
+        Snapshot snapshot = this.cache.get(type, Snapshot::new);
+        synchronized (snapshot) {
+            // read up to one past the end of the page, to find out if there's a next page
+            if (!snapshot.complete && snapshot.entries.size() <= to) {
+                int limit = to + 1 - snapshot.entries.size();
+                LeaderboardEntry after = snapshot.entries.isEmpty() ? null : snapshot.entries.get(snapshot.entries.size() - 1);
+                List<LeaderboardEntry> read = this.storage.getLeaderboard(type, after, limit);
+                snapshot.entries.addAll(read);
+                if (read.size() < limit) {
+                    snapshot.complete = true;
+                }
+            }
+
+            int size = snapshot.entries.size();
+            List<LeaderboardEntry> entries = from >= size ? Collections.emptyList() : new ArrayList<>(snapshot.entries.subList(from, Math.min(to, size)));
+            return new LeaderboardPage(type, page, from + 1, entries, size > to);
+        }
+    }
+
+    private static final class Snapshot {
+        // the entries read so far, in rank order
+        private final List<LeaderboardEntry> entries = new ArrayList<>();
+        // if every entry has been read
+        private boolean complete = false;
+    }
+}
@@ -23,42 +23,41 @@
  *  SOFTWARE.
  */
 
-package me.lucko.networkanalytics.data;
+package me.lucko.networkanalytics.data.rollup;
 
 import lombok.AllArgsConstructor;
 import lombok.Getter;
+import lombok.ToString;
 
+/**
+ * Activity totals for a period, summed from the daily rollup table.
+ */
 @Getter
+@ToString
 @AllArgsConstructor
-public class StatsHolder {
-
-    private long numWithPtGreaterThan1h;
-    private long numWithPtGreaterThan6h;
-    private long numWithConnGreaterThan50;
-
-    private long numWithLastLoginMoreThan1moAgo;
-    private long numWithLastLoginMoreThan1wAgo;
-    private long numWithConnLessThan10;
-    private long numWithPtLessThan30m;
-
-    private int averageTimePlayed;
-    private int averageTimesConnected;
-
+public class DailyRollup {
 
+    private long newPlayers;
+    // players who joined, counted once per server per day - not distinct over the period
     private long uniqueJoins;
-    private long totalTimePlayed;
-    private long totalConnections;
+    private long connections;
+    private long minutesPlayed;
+
+    public DailyRollup() {
 
-    private long uniqueJoinsMonth;
-    private long newPlayersMonth;
-    private long returningPlayersMonth;
+    }
 
-    private long uniqueJoinsWeek;
-    private long newPlayersWeek;
-    private long returningPlayersWeek;
+    public boolean isEmpty() {
+        return newPlayers == 0 && uniqueJoins == 0 && connections == 0 && minutesPlayed == 0;
+    }
 
-    private long uniqueJoinsToday;
-    private long newPlayersToday;
-    private long returningPlayersToday;
+    public DailyRollup add(DailyRollup other) {
+        return new DailyRollup(
+                newPlayers + other.newPlayers,
+                uniqueJoins + other.uniqueJoins,
+                connections + other.connections,
+                minutesPlayed + other.minutesPlayed
+        );
+    }
 
 }
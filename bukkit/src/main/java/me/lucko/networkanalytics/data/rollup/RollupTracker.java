@@ -0,0 +1,214 @@
+/*
+ * This file is part of NetworkAnalytics, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.networkanalytics.data.rollup;
+
+import me.lucko.networkanalytics.data.storage.Storage;
+
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.function.LongSupplier;
+
+/**
+ * Accumulates this servers activity for the current day, and periodically adds
+ * it to the daily rollup table.
+ *
+ * <p>When the day changes, the remaining counts for the previous day are written
+ * and its row is sealed. Storage is never called while holding the lock.</p>
+ */
+public class RollupTracker {
+    private final Storage storage;
+    private final String serverId;
+    private final LongSupplier clock;
+
+    private long day;
+
+    // players known to have joined this server today, saves a trip to storage for repeat logins
+    private final Set<UUID> joinedToday = new HashSet<>();
+
+    // counts not yet written to storage
+    private long newPlayers = 0;
+    private long uniqueJoins = 0;
+    private long connections = 0;
+    private long minutesPlayed = 0;
+
+    // counts for days which have ended, waiting to be written & sealed
+    private final Map<Long, DailyRollup> unsealed = new TreeMap<>();
+
+    public RollupTracker(Storage storage, String serverId) {
+        this(storage, serverId, RollupTracker::today);
+    }
+
+    RollupTracker(Storage storage, String serverId, LongSupplier clock) {
+        this.storage = storage;
+        this.serverId = serverId;
+        this.clock = clock;
+        this.day = clock.getAsLong();
+    }
+
+    public static long today() {
+        return LocalDate.now().toEpochDay();
+    }
+
+    /**
+     * Seals any days left open by a previous run.
+     *
+     * @throws Exception if an error occurs
+     */
+    public void init() throws Exception {
+        long day;
+        synchronized (this) {
+            day = this.day;
+        }
+        this.storage.sealDailyRollups(this.serverId, day);
+    }
+
+    /**
+     * Records a login
+     *
+     * @param uuid the players uuid
+     * @param timesConnected the players connection count, including this login
+     * @throws Exception if the join could not be recorded
+     */
+    public void onLogin(UUID uuid, int timesConnected) throws Exception {
+        long day;
+        synchronized (this) {
+            rollover();
+            this.connections++;
+            if (timesConnected == 1) {
+                this.newPlayers++;
+            }
+            if (this.joinedToday.contains(uuid)) {
+                return;
+            }
+            day = this.day;
+        }
+
+        // joins are persisted, so a restart doesn't count the same player twice
+        boolean first = this.storage.addDailyJoin(day, this.serverId, uuid);
+
+        synchronized (this) {
+            if (day == this.day) {
+                this.joinedToday.add(uuid);
+                if (first) {
+                    this.uniqueJoins++;
+                }
+            } else if (first) {
+                this.unsealed.merge(day, new DailyRollup(0, 1, 0, 0), DailyRollup::add);
+            }
+        }
+    }
+
+    /**
+     * Records play time
+     *
+     * @param minutes the minutes played
+     */
+    public synchronized void onPlayTime(int minutes) {
+        rollover();
+        this.minutesPlayed += minutes;
+    }
+
+    /**
+     * Writes the accumulated counts to storage, sealing any days which have ended.
+     *
+     * <p>Counts which fail to be written are kept, and retried on the next flush.</p>
+     *
+     * @throws Exception if an error occurs
+     */
+    public void flush() throws Exception {
+        Map<Long, DailyRollup> ended;
+        DailyRollup delta;
+        long day;
+        synchronized (this) {
+            rollover();
+            ended = new TreeMap<>(this.unsealed);
+            this.unsealed.clear();
+            delta = drain();
+            day = this.day;
+        }
+
+        Exception failure = null;
+        for (Map.Entry<Long, DailyRollup> e : ended.entrySet()) {
+            try {
+                this.storage.addDailyRollup(e.getKey(), this.serverId, e.getValue(), true);
+            } catch (Exception ex) {
+                restore(e.getKey(), e.getValue());
+                failure = ex;
+            }
+        }
+
+        if (!delta.isEmpty()) {
+            try {
+                this.storage.addDailyRollup(day, this.serverId, delta, false);
+            } catch (Exception ex) {
+                restore(day, delta);
+                failure = ex;
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    // must be called while holding the lock
+    private void rollover() {
+        long today = this.clock.getAsLong();
+        if (today == this.day) {
+            return;
+        }
+
+        // queued even if empty, so the row still gets sealed
+        this.unsealed.merge(this.day, drain(), DailyRollup::add);
+        this.day = today;
+        this.joinedToday.clear();
+    }
+
+    private DailyRollup drain() {
+        DailyRollup delta = new DailyRollup(this.newPlayers, this.uniqueJoins, this.connections, this.minutesPlayed);
+        this.newPlayers = 0;
+        this.uniqueJoins = 0;
+        this.connections = 0;
+        this.minutesPlayed = 0;
+        return delta;
+    }
+
+    // puts counts which failed to be written back, so they're tried again next time
+    private synchronized void restore(long day, DailyRollup delta) {
+        if (day == this.day) {
+            this.newPlayers += delta.getNewPlayers();
+            this.uniqueJoins += delta.getUniqueJoins();
+            this.connections += delta.getConnections();
+            this.minutesPlayed += delta.getMinutesPlayed();
+        } else {
+            this.unsealed.merge(day, delta, DailyRollup::add);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * This file is part of NetworkAnalytics, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.networkanalytics.data.sketch;
+
+import me.lucko.networkanalytics.data.storage.Storage;
+
+import java.util.Optional;
+
+/**
+ * Tracks the network-wide distributions of play time, session length and
+ * connection counts using {@link QuantileSketch}es.
+ *
+ * <p>Changes are recorded locally as they happen, and periodically merged into
+ * the sketches held by the {@link Storage}, which are shared between all servers.</p>
+ */
+public class PlayerDistributions {
+
+    public static final String PLAY_TIME = "play_time";
+    public static final String SESSION_LENGTH = "session_length";
+    public static final String TIMES_CONNECTED = "times_connected";
+
+    private final Storage storage;
+
+    // local changes which haven't been flushed to storage yet
+    private final QuantileSketch playTime = new QuantileSketch();
+    private final QuantileSketch sessionLength = new QuantileSketch();
+    private final QuantileSketch timesConnected = new QuantileSketch();
+
+    public PlayerDistributions(Storage storage) {
+        this.storage = storage;
+    }
+
+    /**
+     * Builds the play time and connection sketches from the existing player
+     * data, if they haven't been persisted yet.
+     *
+     * @throws Exception if an error occurs
+     */
+    public void bootstrap() throws Exception {
+        if (this.storage.getSketch(PLAY_TIME).isPresent() && this.storage.getSketch(TIMES_CONNECTED).isPresent()) {
+            return;
+        }
+
+        QuantileSketch playTime = new QuantileSketch();
+        QuantileSketch timesConnected = new QuantileSketch();
+        this.storage.scanPlayerTotals((minutesPlayed, connections) -> {
+            playTime.add(minutesPlayed);
+            timesConnected.add(connections);
+        });
+
+        // another server may have beaten us to it, in which case keep their copy
+        this.storage.updateSketch(PLAY_TIME, current -> current != null ? current : playTime.serialize());
+        this.storage.updateSketch(TIMES_CONNECTED, current -> current != null ? current : timesConnected.serialize());
+    }
+
+    /**
+     * Records a login
+     *
+     * @param timesConnected the players connection count, including this login
+     */
+    public void onLogin(int timesConnected) {
+        if (timesConnected <= 0) {
+            return;
+        }
+
+        if (timesConnected == 1) {
+            // a new player
+            this.playTime.add(0);
+        } else {
+            this.timesConnected.remove(timesConnected - 1);
+        }
+        this.timesConnected.add(timesConnected);
+    }
+
+    /**
+     * Records an increase in a players play time
+     *
+     * @param minutesPlayed the players new total play time
+     * @param minutes the number of minutes added
+     */
+    public void onPlayTimeIncrement(int minutesPlayed, int minutes) {
+        if (minutesPlayed < 0) {
+            return;
+        }
+        this.playTime.remove(minutesPlayed - minutes);
+        this.playTime.add(minutesPlayed);
+    }
+
+    /**
+     * Records the end of a session
+     *
+     * @param seconds the length of the session in seconds
+     */
+    public void onSession(long seconds) {
+        this.sessionLength.add(seconds);
+    }
+
+    /**
+     * Merges any local changes into the persisted sketches.
+     *
+     * @throws Exception if an error occurs
+     */
+    public void flush() throws Exception {
+        flush(PLAY_TIME, this.playTime);
+        flush(SESSION_LENGTH, this.sessionLength);
+        flush(TIMES_CONNECTED, this.timesConnected);
+    }
+
+    private void flush(String name, QuantileSketch local) throws Exception {
+        QuantileSketch delta = local.drain();
+        if (delta.isEmpty()) {
+            return;
+        }
+
+        try {
+            this.storage.updateSketch(name, current -> {
+                QuantileSketch sketch = current == null ? new QuantileSketch() : QuantileSketch.deserialize(current);
+                sketch.merge(delta);
+                return sketch.serialize();
+            });
+        } catch (Exception e) {
+            // put the changes back, we'll try again next time
+            local.merge(delta);
+            throw e;
+        }
+    }
+
+    public QuantileSummary summarisePlayTime() throws Exception {
+        return summarise(PLAY_TIME, this.playTime);
+    }
+
+    public QuantileSummary summariseSessionLength() throws Exception {
+        return summarise(SESSION_LENGTH, this.sessionLength);
+    }
+
+    public QuantileSummary summariseTimesConnected() throws Exception {
+        return summarise(TIMES_CONNECTED, this.timesConnected);
+    }
+
+    private QuantileSummary summarise(String name, QuantileSketch local) throws Exception {
+        Optional<byte[]> persisted = this.storage.getSketch(name);
+        QuantileSketch sketch = persisted.isPresent() ? QuantileSketch.deserialize(persisted.get()) : new QuantileSketch();
+        sketch.merge(local);
+        return sketch.summarise();
+    }
+}
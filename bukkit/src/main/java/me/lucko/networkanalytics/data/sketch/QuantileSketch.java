@@ -0,0 +1,340 @@
+/*
+ * This file is part of NetworkAnalytics, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.networkanalytics.data.sketch;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A mergeable quantile sketch with relative-error guarantees, based on DDSketch.
+ *
+ * <p>Values are mapped to logarithmically sized buckets, so any quantile is
+ * accurate to within {@link #getRelativeAccuracy()} of the true value, using a
+ * few hundred buckets for values up to the millions.</p>
+ *
+ * <p>Bucket counts are signed, so a sketch can also hold a delta - values can be
+ * {@link #remove(double) removed} as well as added, and the result merged into
+ * another sketch later.</p>
+ */
+public final class QuantileSketch {
+
+    /**
+     * The default relative accuracy, 1%
+     */
+    public static final double DEFAULT_RELATIVE_ACCURACY = 0.01;
+
+    private static final byte SERIAL_VERSION = 1;
+    private static final long[] EMPTY = new long[0];
+
+    private final double relativeAccuracy;
+    private final double gamma;
+    private final double logGamma;
+
+    // the count of values <= 0
+    private long zeroCount = 0;
+
+    // counts[i] holds the count for bucket index (offset + i)
+    private long[] counts = EMPTY;
+    private int offset = 0;
+
+    public QuantileSketch() {
+        this(DEFAULT_RELATIVE_ACCURACY);
+    }
+
+    public QuantileSketch(double relativeAccuracy) {
+        if (relativeAccuracy <= 0 || relativeAccuracy >= 1) {
+            throw new IllegalArgumentException("relativeAccuracy must be between 0 and 1: " + relativeAccuracy);
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(this.gamma);
+    }
+
+    public double getRelativeAccuracy() {
+        return this.relativeAccuracy;
+    }
+
+    public void add(double value) {
+        add(value, 1);
+    }
+
+    public void remove(double value) {
+        add(value, -1);
+    }
+
+    /**
+     * Adjusts the count of the bucket holding the given value
+     *
+     * @param value the value
+     * @param count the amount to adjust the count by, may be negative
+     */
+    public synchronized void add(double value, long count) {
+        if (value <= 0) {
+            this.zeroCount += count;
+            return;
+        }
+
+        int index = (int) Math.ceil(Math.log(value) / this.logGamma);
+        ensureCapacity(index);
+        this.counts[index - this.offset] += count;
+    }
+
+    /**
+     * Merges the counts from another sketch into this one
+     *
+     * @param other the other sketch
+     */
+    public void merge(QuantileSketch other) {
+        if (other.relativeAccuracy != this.relativeAccuracy) {
+            throw new IllegalArgumentException("Cannot merge sketches with different accuracies");
+        }
+
+        // copy first, so we never hold both locks at once
+        QuantileSketch copy = other.copy();
+        synchronized (this) {
+            this.zeroCount += copy.zeroCount;
+            for (int i = 0; i < copy.counts.length; i++) {
+                if (copy.counts[i] != 0) {
+                    int index = copy.offset + i;
+                    ensureCapacity(index);
+                    this.counts[index - this.offset] += copy.counts[i];
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the total number of values held by the sketch
+     *
+     * @return the count
+     */
+    public synchronized long getCount() {
+        long count = Math.max(0, this.zeroCount);
+        for (long c : this.counts) {
+            count += Math.max(0, c);
+        }
+        return count;
+    }
+
+    /**
+     * Gets if the sketch holds no values, and no pending adjustments
+     *
+     * @return true if empty
+     */
+    public synchronized boolean isEmpty() {
+        if (this.zeroCount != 0) {
+            return false;
+        }
+        for (long c : this.counts) {
+            if (c != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Estimates the value at the given quantile
+     *
+     * @param quantile the quantile, between 0 and 1
+     * @return the estimated value, or 0 if the sketch is empty
+     */
+    public synchronized double getQuantile(double quantile) {
+        if (quantile < 0 || quantile > 1) {
+            throw new IllegalArgumentException("quantile must be between 0 and 1: " + quantile);
+        }
+
+        long total = getCount();
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = (long) (quantile * (total - 1));
+        long seen = Math.max(0, this.zeroCount);
+        if (seen > rank) {
+            return 0;
+        }
+
+        for (int i = 0; i < this.counts.length; i++) {
+            seen += Math.max(0, this.counts[i]);
+            if (seen > rank) {
+                return 2 * Math.pow(this.gamma, this.offset + i) / (this.gamma + 1);
+            }
+        }
+        return 2 * Math.pow(this.gamma, this.offset + this.counts.length - 1) / (this.gamma + 1);
+    }
+
+    /**
+     * Summarises the sketch as a set of common quantiles
+     *
+     * @return the summary
+     */
+    public QuantileSummary summarise() {
+        return new QuantileSummary(getCount(), getQuantile(0.5), getQuantile(0.9), getQuantile(0.99));
+    }
+
+    public synchronized QuantileSketch copy() {
+        QuantileSketch copy = new QuantileSketch(this.relativeAccuracy);
+        copy.zeroCount = this.zeroCount;
+        copy.counts = this.counts.length == 0 ? EMPTY : this.counts.clone();
+        copy.offset = this.offset;
+        return copy;
+    }
+
+    /**
+     * Removes all values from the sketch, returning a copy of its previous state
+     *
+     * @return the previous state
+     */
+    public synchronized QuantileSketch drain() {
+        QuantileSketch copy = copy();
+        this.zeroCount = 0;
+        this.counts = EMPTY;
+        this.offset = 0;
+        return copy;
+    }
+
+    /**
+     * Encodes the sketch in a compact binary form
+     *
+     * @return the encoded sketch
+     */
+    public synchronized byte[] serialize() {
+        // trim empty buckets from either end
+        int start = 0;
+        int end = this.counts.length;
+        while (start < end && this.counts[start] == 0) {
+            start++;
+        }
+        while (end > start && this.counts[end - 1] == 0) {
+            end--;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 + (end - start) * 2);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(SERIAL_VERSION);
+            out.writeDouble(this.relativeAccuracy);
+            writeVarLong(out, zigZag(this.zeroCount));
+            writeVarLong(out, zigZag(this.offset + start));
+            writeVarLong(out, end - start);
+            for (int i = start; i < end; i++) {
+                writeVarLong(out, zigZag(this.counts[i]));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes a sketch previously encoded using {@link #serialize()}
+     *
+     * @param data the encoded sketch
+     * @return the sketch
+     */
+    public static QuantileSketch deserialize(byte[] data) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            byte version = in.readByte();
+            if (version != SERIAL_VERSION) {
+                throw new IllegalArgumentException("Unknown sketch version: " + version);
+            }
+
+            QuantileSketch sketch = new QuantileSketch(in.readDouble());
+            sketch.zeroCount = unZigZag(readVarLong(in));
+            sketch.offset = (int) unZigZag(readVarLong(in));
+            int length = (int) readVarLong(in);
+            sketch.counts = length == 0 ? EMPTY : new long[length];
+            for (int i = 0; i < length; i++) {
+                sketch.counts[i] = unZigZag(readVarLong(in));
+            }
+            return sketch;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid sketch data", e);
+        }
+    }
+
+    private void ensureCapacity(int index) {
+        if (this.counts.length == 0) {
+            this.counts = new long[32];
+            this.offset = index - 16;
+            return;
+        }
+
+        int min = this.offset;
+        int max = this.offset + this.counts.length - 1;
+        if (index >= min && index <= max) {
+            return;
+        }
+
+        // grow with some headroom in the direction we're expanding
+        int newMin = index < min ? index - 16 : min;
+        int newMax = index > max ? index + 16 : max;
+        long[] counts = new long[newMax - newMin + 1];
+        System.arraycopy(this.counts, 0, counts, min - newMin, this.counts.length);
+        this.counts = counts;
+        this.offset = newMin;
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            if (shift >= 64) {
+                throw new IOException("VarLong too long");
+            }
+            b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "QuantileSketch(relativeAccuracy=" + this.relativeAccuracy + ", zeroCount=" + this.zeroCount + ", offset=" + this.offset + ", counts=" + Arrays.toString(this.counts) + ")";
+    }
+}
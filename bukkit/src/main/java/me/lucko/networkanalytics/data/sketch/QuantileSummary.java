@@ -23,24 +23,27 @@
  *  SOFTWARE.
  */
 
-package me.lucko.networkanalytics.channel;
+package me.lucko.networkanalytics.data.sketch;
 
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.ToString;
 
-import java.util.List;
-
+/**
+ * A set of common quantiles estimated from a {@link QuantileSketch}.
+ */
 @Getter
 @ToString
 @AllArgsConstructor
-public class AnalyticsData {
+public class QuantileSummary {
+
+    private long count;
 
-    private String serverId;
-    private long timeSent;
-    private List<OnlinePlayerRecord> players;
+    private double p50;
+    private double p90;
+    private double p99;
 
-    public AnalyticsData() {
+    public QuantileSummary() {
 
     }
 
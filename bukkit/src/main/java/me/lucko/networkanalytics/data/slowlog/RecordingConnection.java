@@ -0,0 +1,105 @@
+/*
+ * This file is part of NetworkAnalytics, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.networkanalytics.data.slowlog;
+
+import lombok.experimental.Delegate;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * A connection which times the statements prepared from it.
+ *
+ * <p>Every {@code prepareStatement} overload is recorded. Statements from
+ * {@link #createStatement()} and {@link #prepareCall(String)} aren't, as the
+ * storage doesn't use them.</p>
+ */
+public class RecordingConnection implements Connection {
+
+    @Delegate(excludes = Exclude.class)
+    private final Connection delegate;
+    private final SlowOperationLog log;
+    // the time taken to acquire this connection, charged to the first statement executed
+    private long acquireNanos;
+
+    public RecordingConnection(Connection delegate, SlowOperationLog log, long acquireNanos) {
+        this.delegate = delegate;
+        this.log = log;
+        this.acquireNanos = acquireNanos;
+    }
+
+    /**
+     * Gets the time taken to acquire this connection, if it hasn't already
+     * been recorded against a statement.
+     *
+     * @return the acquire time, or 0 after the first call
+     */
+    synchronized long takeAcquireNanos() {
+        long nanos = this.acquireNanos;
+        this.acquireNanos = 0;
+        return nanos;
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(String sql) throws SQLException {
+        return new RecordingStatement(this.delegate.prepareStatement(sql), sql, this.log, this);
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(String sql, int autoGeneratedKeys) throws SQLException {
+        return new RecordingStatement(this.delegate.prepareStatement(sql, autoGeneratedKeys), sql, this.log, this);
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(String sql, int[] columnIndexes) throws SQLException {
+        return new RecordingStatement(this.delegate.prepareStatement(sql, columnIndexes), sql, this.log, this);
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(String sql, String[] columnNames) throws SQLException {
+        return new RecordingStatement(this.delegate.prepareStatement(sql, columnNames), sql, this.log, this);
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency) throws SQLException {
+        return new RecordingStatement(this.delegate.prepareStatement(sql, resultSetType, resultSetConcurrency), sql, this.log, this);
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException {
+        return new RecordingStatement(this.delegate.prepareStatement(sql, resultSetType, resultSetConcurrency, resultSetHoldability), sql, this.log, this);
+    }
+
+    private interface Exclude {
+        PreparedStatement prepareStatement(String sql) throws SQLException;
+        PreparedStatement prepareStatement(String sql, int autoGeneratedKeys) throws SQLException;
+        PreparedStatement prepareStatement(String sql, int[] columnIndexes) throws SQLException;
+        PreparedStatement prepareStatement(String sql, String[] columnNames) throws SQLException;
+        PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency) throws SQLException;
+        PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException;
+    }
+}
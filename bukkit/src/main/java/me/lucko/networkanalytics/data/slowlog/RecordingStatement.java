@@ -0,0 +1,151 @@
+/*
+ * This file is part of NetworkAnalytics, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.networkanalytics.data.slowlog;
+
+import lombok.experimental.Delegate;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A statement which records its parameters and how long it takes to execute.
+ */
+public class RecordingStatement implements PreparedStatement {
+
+    @Delegate(excludes = Exclude.class)
+    private final PreparedStatement delegate;
+    private final String sql;
+    private final SlowOperationLog log;
+    private final RecordingConnection connection;
+
+    private final Map<Integer, Object> parameters = new TreeMap<>();
+    private int batchSize = 0;
+
+    public RecordingStatement(PreparedStatement delegate, String sql, SlowOperationLog log, RecordingConnection connection) {
+        this.delegate = delegate;
+        this.sql = sql;
+        this.log = log;
+        this.connection = connection;
+    }
+
+    @Override
+    public void setString(int parameterIndex, String x) throws SQLException {
+        this.parameters.put(parameterIndex, x);
+        this.delegate.setString(parameterIndex, x);
+    }
+
+    @Override
+    public void setInt(int parameterIndex, int x) throws SQLException {
+        this.parameters.put(parameterIndex, x);
+        this.delegate.setInt(parameterIndex, x);
+    }
+
+    @Override
+    public void setLong(int parameterIndex, long x) throws SQLException {
+        this.parameters.put(parameterIndex, x);
+        this.delegate.setLong(parameterIndex, x);
+    }
+
+    @Override
+    public void setBytes(int parameterIndex, byte[] x) throws SQLException {
+        this.parameters.put(parameterIndex, x);
+        this.delegate.setBytes(parameterIndex, x);
+    }
+
+    @Override
+    public void clearParameters() throws SQLException {
+        this.parameters.clear();
+        this.delegate.clearParameters();
+    }
+
+    @Override
+    public void addBatch() throws SQLException {
+        this.batchSize++;
+        this.delegate.addBatch();
+    }
+
+    @Override
+    public boolean execute() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return this.delegate.execute();
+        } finally {
+            record(start);
+        }
+    }
+
+    @Override
+    public ResultSet executeQuery() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return this.delegate.executeQuery();
+        } finally {
+            record(start);
+        }
+    }
+
+    @Override
+    public int executeUpdate() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return this.delegate.executeUpdate();
+        } finally {
+            record(start);
+        }
+    }
+
+    @Override
+    public int[] executeBatch() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return this.delegate.executeBatch();
+        } finally {
+            record(start);
+            this.batchSize = 0;
+        }
+    }
+
+    private void record(long start) {
+        // parameters of a batch are those of the final row
+        this.log.record(this.sql, this.parameters.values(), this.batchSize, System.nanoTime() - start, this.connection.takeAcquireNanos());
+    }
+
+    private interface Exclude {
+        void setString(int parameterIndex, String x) throws SQLException;
+        void setInt(int parameterIndex, int x) throws SQLException;
+        void setLong(int parameterIndex, long x) throws SQLException;
+        void setBytes(int parameterIndex, byte[] x) throws SQLException;
+        void clearParameters() throws SQLException;
+        void addBatch() throws SQLException;
+        boolean execute() throws SQLException;
+        ResultSet executeQuery() throws SQLException;
+        int executeUpdate() throws SQLException;
+        int[] executeBatch() throws SQLException;
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * This file is part of NetworkAnalytics, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.networkanalytics.data.slowlog;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Records statements which take longer than a threshold to run, or to acquire
+ * a connection for, in a bounded ring buffer.
+ */
+public class SlowOperationLog {
+
+    // the DataManager operation currently running on each thread
+    private static final ThreadLocal<String> OPERATION = new ThreadLocal<>();
+
+    /**
+     * Runs the given task, attributing any statements it runs to the named operation
+     *
+     * @param name the name of the operation
+     * @param task the task
+     * @param <T> the result type
+     * @return the result
+     */
+    public static <T> T withOperation(String name, Supplier<T> task) {
+        String previous = OPERATION.get();
+        OPERATION.set(name);
+        try {
+            return task.get();
+        } finally {
+            if (previous == null) {
+                OPERATION.remove();
+            } else {
+                OPERATION.set(previous);
+            }
+        }
+    }
+
+    public static void withOperation(String name, Runnable task) {
+        withOperation(name, () -> {
+            task.run();
+            return null;
+        });
+    }
+
+    private final long thresholdNanos;
+    private final int capacity;
+
+    private final Deque<SlowOperation> entries = new ArrayDeque<>();
+    private int nextId = 1;
+
+    public SlowOperationLog(long thresholdMillis, int capacity) {
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        this.capacity = capacity;
+    }
+
+    public boolean isEnabled() {
+        return this.capacity > 0;
+    }
+
+    /**
+     * Records a statement, if it was slow.
+     *
+     * @param statement the sql statement
+     * @param parameters the bound parameters
+     * @param batchSize the number of rows in the batch, or 0
+     * @param durationNanos the time taken to execute the statement
+     * @param acquireNanos the time taken to acquire the connection, for the first statement executed on it, otherwise 0
+     */
+    public void record(String statement, Collection<Object> parameters, int batchSize, long durationNanos, long acquireNanos) {
+        if (!isEnabled() || (durationNanos < this.thresholdNanos && acquireNanos < this.thresholdNanos)) {
+            return;
+        }
+
+        synchronized (this.entries) {
+            SlowOperation operation = new SlowOperation(this.nextId++, System.currentTimeMillis(), OPERATION.get(), statement, new ArrayList<>(parameters), batchSize,
+                    TimeUnit.NANOSECONDS.toMicros(durationNanos), TimeUnit.NANOSECONDS.toMicros(acquireNanos), null);
+            this.entries.addFirst(operation);
+            while (this.entries.size() > this.capacity) {
+                this.entries.removeLast();
+            }
+        }
+    }
+
+    /**
+     * Gets the recorded statements, most recent first.
+     *
+     * @return the statements
+     */
+    public List<SlowOperation> getEntries() {
+        synchronized (this.entries) {
+            return new ArrayList<>(this.entries);
+        }
+    }
+
+    public Optional<SlowOperation> get(int id) {
+        synchronized (this.entries) {
+            for (SlowOperation operation : this.entries) {
+                if (operation.getId() == id) {
+                    return Optional.of(operation);
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    public void clear() {
+        synchronized (this.entries) {
+            this.entries.clear();
+        }
+    }
+}
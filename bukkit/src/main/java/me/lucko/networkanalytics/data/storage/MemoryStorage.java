@@ -0,0 +1,428 @@
+/*
+ * This file is part of NetworkAnalytics, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.networkanalytics.data.storage;
+
+import me.lucko.networkanalytics.data.PlayerRecord;
+import me.lucko.networkanalytics.data.StatsHolder;
+import me.lucko.networkanalytics.data.archive.ArchiveBatch;
+import me.lucko.networkanalytics.data.archive.ArchiveTotals;
+import me.lucko.networkanalytics.data.leaderboard.LeaderboardEntry;
+import me.lucko.networkanalytics.data.leaderboard.LeaderboardType;
+import me.lucko.networkanalytics.data.rollup.DailyRollup;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+
+/**
+ * Non-persistent storage, holding all data in memory.
+ *
+ * <p>Intended for small servers and test environments.</p>
+ */
+public class MemoryStorage implements Storage {
+
+    private final Map<UUID, Entry> records = new ConcurrentHashMap<>();
+    private final Map<String, UUID> usernames = new ConcurrentHashMap<>();
+    private final Map<String, byte[]> sketches = new ConcurrentHashMap<>();
+    private final Map<Long, Map<String, DailyRollup>> rollups = new ConcurrentHashMap<>();
+    private final Map<Long, Map<String, Set<UUID>>> dailyJoins = new ConcurrentHashMap<>();
+    private final Map<UUID, Entry> archive = new ConcurrentHashMap<>();
+    private volatile ArchiveTotals archiveTotals = new ArchiveTotals();
+
+    @Override
+    public String getName() {
+        return "Memory";
+    }
+
+    @Override
+    public void init() {
+
+    }
+
+    @Override
+    public void shutdown() {
+        this.records.clear();
+        this.usernames.clear();
+        this.sketches.clear();
+        this.rollups.clear();
+        this.dailyJoins.clear();
+        this.archive.clear();
+    }
+
+    @Override
+    public int logPlayer(UUID uuid, String username, long time, String serverId) {
+        Entry entry = this.records.compute(uuid, (u, e) -> {
+            if (e == null) {
+                e = new Entry(username, time, serverId);
+
+                Entry archived = this.archive.remove(uuid);
+                if (archived != null) {
+                    e.firstLogin = archived.firstLogin;
+                    e.timesConnected += archived.timesConnected;
+                    e.minutesPlayed += archived.minutesPlayed;
+                    addArchiveTotals(ArchiveTotals.of(archived.minutesPlayed, archived.timesConnected).negate());
+                }
+            } else {
+                synchronized (e) {
+                    this.usernames.remove(e.username.toLowerCase(Locale.ROOT), uuid);
+                    e.username = username;
+                    e.lastLogin = time;
+                    e.lastSeen = serverId;
+                    e.timesConnected++;
+                }
+            }
+            return e;
+        });
+        this.usernames.put(username.toLowerCase(Locale.ROOT), uuid);
+        synchronized (entry) {
+            return entry.timesConnected;
+        }
+    }
+
+    @Override
+    public int incrementMinutesPlayed(UUID uuid, int minutes) {
+        int[] result = {-1};
+        this.records.computeIfPresent(uuid, (u, e) -> {
+            synchronized (e) {
+                e.minutesPlayed += minutes;
+                result[0] = e.minutesPlayed;
+            }
+            return e;
+        });
+        return result[0];
+    }
+
+    @Override
+    public Optional<String> getUsername(UUID uuid) {
+        Entry e = this.records.get(uuid);
+        if (e == null) {
+            e = this.archive.get(uuid);
+        }
+        if (e == null) {
+            return Optional.empty();
+        }
+        synchronized (e) {
+            return Optional.of(e.username);
+        }
+    }
+
+    @Override
+    public Optional<UUID> getUuid(String username) {
+        return Optional.ofNullable(this.usernames.get(username.toLowerCase(Locale.ROOT)));
+    }
+
+    @Override
+    public List<String> searchUsernames(String prefix, int limit) {
+        List<String> usernames = new ArrayList<>();
+        for (Entry e : this.records.values()) {
+            synchronized (e) {
+                if (e.username.regionMatches(true, 0, prefix, 0, prefix.length())) {
+                    usernames.add(e.username);
+                }
+            }
+        }
+        usernames.sort(String.CASE_INSENSITIVE_ORDER);
+        return usernames.size() > limit ? new ArrayList<>(usernames.subList(0, limit)) : usernames;
+    }
+
+    @Override
+    public Optional<PlayerRecord> getPlayerData(UUID uuid) {
+        Entry e = this.records.get(uuid);
+        if (e == null) {
+            e = this.archive.get(uuid);
+        }
+        if (e == null) {
+            return Optional.empty();
+        }
+        synchronized (e) {
+            return Optional.of(new PlayerRecord(uuid, e.username, e.firstLogin, e.lastLogin, e.lastSeen, e.timesConnected, e.minutesPlayed));
+        }
+    }
+
+    @Override
+    public Map<UUID, String> getRecentPlayers(long since, int limit) {
+        List<PlayerRecord> recent = new ArrayList<>();
+        for (UUID uuid : this.records.keySet()) {
+            getPlayerData(uuid).filter(r -> r.getLastLogin() > since).ifPresent(recent::add);
+        }
+        recent.sort(Comparator.comparingLong(PlayerRecord::getLastLogin).reversed());
+
+        Map<UUID, String> players = new LinkedHashMap<>();
+        for (int i = 0; i < recent.size() && i < limit; i++) {
+            players.put(recent.get(i).getUuid(), recent.get(i).getUsername());
+        }
+        return players;
+    }
+
+    @Override
+    public List<LeaderboardEntry> getLeaderboard(LeaderboardType type, LeaderboardEntry after, int limit) {
+        Comparator<LeaderboardEntry> order = Comparator.comparingLong(LeaderboardEntry::getValue)
+                .thenComparing(e -> e.getUuid().toString())
+                .reversed();
+
+        List<LeaderboardEntry> entries = new ArrayList<>();
+        for (UUID uuid : this.records.keySet()) {
+            getPlayerData(uuid).ifPresent(record -> {
+                long value;
+                switch (type) {
+                    case PLAYTIME:
+                        value = record.getMinutesPlayed();
+                        break;
+                    case CONNECTIONS:
+                        value = record.getTimesConnected();
+                        break;
+                    default:
+                        value = record.getFirstLogin();
+                        break;
+                }
+
+                LeaderboardEntry entry = new LeaderboardEntry(uuid, record.getUsername(), value);
+                if (after == null || order.compare(entry, after) > 0) {
+                    entries.add(entry);
+                }
+            });
+        }
+        entries.sort(order);
+        return entries.size() > limit ? new ArrayList<>(entries.subList(0, limit)) : entries;
+    }
+
+    @Override
+    public List<String> explain(String statement, List<Object> parameters) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public StatsHolder getStats(long now) {
+        long month = now - 2592000L;
+        long week = now - 604800L;
+        long day = now - 86400;
+
+        long numWithPtGreaterThan1h = 0, numWithPtGreaterThan6h = 0, numWithConnGreaterThan50 = 0;
+        long numWithLastLoginMoreThan1moAgo = 0, numWithLastLoginMoreThan1wAgo = 0, numWithConnLessThan10 = 0, numWithPtLessThan30m = 0;
+        long uniqueJoins = 0, totalTimePlayed = 0, totalConnections = 0;
+        long uniqueJoinsMonth = 0, newPlayersMonth = 0;
+        long uniqueJoinsWeek = 0, newPlayersWeek = 0;
+        long uniqueJoinsToday = 0, newPlayersToday = 0;
+
+        for (Entry e : this.records.values()) {
+            long firstLogin, lastLogin;
+            int timesConnected, minutesPlayed;
+            synchronized (e) {
+                firstLogin = e.firstLogin;
+                lastLogin = e.lastLogin;
+                timesConnected = e.timesConnected;
+                minutesPlayed = e.minutesPlayed;
+            }
+
+            if (minutesPlayed > 60) numWithPtGreaterThan1h++;
+            if (minutesPlayed > 360) numWithPtGreaterThan6h++;
+            if (timesConnected > 50) numWithConnGreaterThan50++;
+
+            if (lastLogin < month) numWithLastLoginMoreThan1moAgo++;
+            if (lastLogin < week) numWithLastLoginMoreThan1wAgo++;
+            if (timesConnected < 10) numWithConnLessThan10++;
+            if (minutesPlayed < 30) numWithPtLessThan30m++;
+
+            uniqueJoins++;
+            totalTimePlayed += minutesPlayed;
+            totalConnections += timesConnected;
+
+            if (lastLogin > month) uniqueJoinsMonth++;
+            if (firstLogin > month) newPlayersMonth++;
+            if (lastLogin > week) uniqueJoinsWeek++;
+            if (firstLogin > week) newPlayersWeek++;
+            if (lastLogin > day) uniqueJoinsToday++;
+            if (firstLogin > day) newPlayersToday++;
+        }
+
+        ArchiveTotals archived = this.archiveTotals;
+        numWithPtGreaterThan1h += archived.getNumWithPtGreaterThan1h();
+        numWithPtGreaterThan6h += archived.getNumWithPtGreaterThan6h();
+        numWithConnGreaterThan50 += archived.getNumWithConnGreaterThan50();
+        numWithLastLoginMoreThan1moAgo += archived.getPlayers();
+        numWithLastLoginMoreThan1wAgo += archived.getPlayers();
+        numWithConnLessThan10 += archived.getNumWithConnLessThan10();
+        numWithPtLessThan30m += archived.getNumWithPtLessThan30m();
+        uniqueJoins += archived.getPlayers();
+        totalTimePlayed += archived.getMinutesPlayed();
+        totalConnections += archived.getTimesConnected();
+
+        int averageTimePlayed = uniqueJoins == 0 ? 0 : (int) (totalTimePlayed / uniqueJoins);
+        int averageTimesConnected = uniqueJoins == 0 ? 0 : (int) (totalConnections / uniqueJoins);
+
+        return new StatsHolder(
+                numWithPtGreaterThan1h, numWithPtGreaterThan6h, numWithConnGreaterThan50,
+                numWithLastLoginMoreThan1moAgo, numWithLastLoginMoreThan1wAgo, numWithConnLessThan10, numWithPtLessThan30m,
+                averageTimePlayed, averageTimesConnected,
+                uniqueJoins, totalTimePlayed, totalConnections,
+                uniqueJoinsMonth, newPlayersMonth, uniqueJoinsMonth - newPlayersMonth,
+                uniqueJoinsWeek, newPlayersWeek, uniqueJoinsWeek - newPlayersWeek,
+                uniqueJoinsToday, newPlayersToday, uniqueJoinsToday - newPlayersToday
+        );
+    }
+
+    @Override
+    public ArchiveBatch archiveInactivePlayers(long cutoff, String afterKey, int batchSize) {
+        // order by last login then the string form of the uuid, the same as the sql implementations
+        long afterLogin = ArchiveBatch.getKeyLastLogin(afterKey);
+        String afterUuid = ArchiveBatch.getKeyUuid(afterKey);
+        Comparator<Map.Entry<Long, String>> order = Map.Entry.<Long, String>comparingByKey().thenComparing(Map.Entry.comparingByValue());
+
+        List<Map.Entry<Long, String>> candidates = new ArrayList<>();
+        for (Map.Entry<UUID, Entry> e : this.records.entrySet()) {
+            long lastLogin;
+            synchronized (e.getValue()) {
+                lastLogin = e.getValue().lastLogin;
+            }
+            String uuid = e.getKey().toString();
+            if (lastLogin >= cutoff || lastLogin < afterLogin || (lastLogin == afterLogin && uuid.compareTo(afterUuid) <= 0)) {
+                continue;
+            }
+            candidates.add(new AbstractMap.SimpleImmutableEntry<>(lastLogin, uuid));
+        }
+        candidates.sort(order);
+        if (candidates.size() > batchSize) {
+            candidates = candidates.subList(0, batchSize);
+        }
+
+        int archived = 0;
+        for (Map.Entry<Long, String> candidate : candidates) {
+            UUID uuid = UUID.fromString(candidate.getValue());
+            boolean[] removed = {false};
+            this.records.computeIfPresent(uuid, (u, e) -> {
+                synchronized (e) {
+                    if (e.lastLogin >= cutoff) {
+                        return e;
+                    }
+                    this.archive.put(uuid, e);
+                    addArchiveTotals(ArchiveTotals.of(e.minutesPlayed, e.timesConnected));
+                }
+                removed[0] = true;
+                return null;
+            });
+            if (removed[0]) {
+                archived++;
+            }
+        }
+
+        if (candidates.size() < batchSize) {
+            return new ArchiveBatch(archived, null);
+        }
+        Map.Entry<Long, String> last = candidates.get(candidates.size() - 1);
+        return new ArchiveBatch(archived, ArchiveBatch.createKey(last.getKey(), last.getValue()));
+    }
+
+    private synchronized void addArchiveTotals(ArchiveTotals delta) {
+        this.archiveTotals = this.archiveTotals.add(delta);
+    }
+
+    @Override
+    public void scanPlayerTotals(PlayerTotalsVisitor visitor) {
+        for (Entry e : this.records.values()) {
+            int minutesPlayed, timesConnected;
+            synchronized (e) {
+                minutesPlayed = e.minutesPlayed;
+                timesConnected = e.timesConnected;
+            }
+            visitor.visit(minutesPlayed, timesConnected);
+        }
+    }
+
+    @Override
+    public Optional<byte[]> getSketch(String name) {
+        return Optional.ofNullable(this.sketches.get(name));
+    }
+
+    @Override
+    public void updateSketch(String name, UnaryOperator<byte[]> updater) {
+        this.sketches.compute(name, (n, current) -> updater.apply(current));
+    }
+
+    @Override
+    public void addDailyRollup(long day, String serverId, DailyRollup delta, boolean seal) {
+        this.rollups.computeIfAbsent(day, d -> new ConcurrentHashMap<>()).merge(serverId, delta, DailyRollup::add);
+        if (seal) {
+            sealDailyRollups(serverId, day + 1);
+        }
+    }
+
+    @Override
+    public boolean addDailyJoin(long day, String serverId, UUID uuid) {
+        return this.dailyJoins.computeIfAbsent(day, d -> new ConcurrentHashMap<>())
+                .computeIfAbsent(serverId, s -> ConcurrentHashMap.newKeySet())
+                .add(uuid);
+    }
+
+    @Override
+    public void sealDailyRollups(String serverId, long beforeDay) {
+        // rows aren't persisted, so there's nothing to seal - just drop the joins
+        for (Map.Entry<Long, Map<String, Set<UUID>>> day : this.dailyJoins.entrySet()) {
+            if (day.getKey() < beforeDay) {
+                day.getValue().remove(serverId);
+            }
+        }
+    }
+
+    @Override
+    public Map<String, DailyRollup> getDailyRollups(long fromDay, long toDay) {
+        Map<String, DailyRollup> totals = new HashMap<>();
+        for (Map.Entry<Long, Map<String, DailyRollup>> day : this.rollups.entrySet()) {
+            if (day.getKey() >= fromDay && day.getKey() <= toDay) {
+                day.getValue().forEach((server, rollup) -> totals.merge(server, rollup, DailyRollup::add));
+            }
+        }
+        return totals;
+    }
+
+    private static final class Entry {
+        private String username;
+        private long firstLogin;
+        private long lastLogin;
+        private String lastSeen;
+        private int timesConnected;
+        private int minutesPlayed;
+
+        private Entry(String username, long time, String serverId) {
+            this.username = username;
+            this.firstLogin = time;
+            this.lastLogin = time;
+            this.lastSeen = serverId;
+            this.timesConnected = 1;
+            this.minutesPlayed = 0;
+        }
+    }
+}
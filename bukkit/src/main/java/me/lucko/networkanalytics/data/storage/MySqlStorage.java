@@ -0,0 +1,103 @@
+/*
+ * This file is part of NetworkAnalytics, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.networkanalytics.data.storage;
+
+import lombok.RequiredArgsConstructor;
+
+import me.lucko.helper.sql.HelperDataSource;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.UUID;
+
+/**
+ * MySQL storage, backed by the shared helper-sql connection pool.
+ */
+@RequiredArgsConstructor
+public class MySqlStorage extends SqlStorage {
+    private static final String INSERT = "INSERT INTO analytics_data VALUES(?, ?, ?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE username=?, last_login=?, last_seen=?, times_connected = times_connected + 1";
+
+    private final HelperDataSource sql;
+
+    @Override
+    public String getName() {
+        return "MySQL";
+    }
+
+    @Override
+    protected Connection getConnection() throws SQLException {
+        return sql.getConnection();
+    }
+
+    @Override
+    protected String insertIgnore() {
+        return "INSERT IGNORE INTO";
+    }
+
+    @Override
+    protected void createIndex(Connection c, String table, String name, String columns) throws SQLException {
+        // mysql has no "IF NOT EXISTS" for indexes
+        try (PreparedStatement ps = c.prepareStatement("SHOW INDEX FROM `" + table + "` WHERE Key_name = ?")) {
+            ps.setString(1, name);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    return;
+                }
+            }
+        }
+        try (PreparedStatement ps = c.prepareStatement("CREATE INDEX `" + name + "` ON `" + table + "` (" + columns + ")")) {
+            ps.execute();
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        // the pool is owned by helper-sql
+    }
+
+    @Override
+    protected void upsertPlayer(Connection c, UUID uuid, String username, long time, String serverId) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(INSERT)) {
+            // insert
+            ps.setString(1, uuid.toString()); // uuid
+            ps.setString(2, username); // username
+            ps.setLong(3, time); // first login
+            ps.setLong(4, time); // last login
+            ps.setString(5, serverId); // last seen
+            ps.setLong(6, 1); // times connected
+            ps.setLong(7, 0); // minutes played
+
+            // update
+            ps.setString(8, username); // username
+            ps.setLong(9, time); // last login
+            ps.setString(10, serverId); // last seen
+
+            ps.execute();
+        }
+    }
+}
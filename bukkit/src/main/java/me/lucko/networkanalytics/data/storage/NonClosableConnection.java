@@ -0,0 +1,61 @@
+/*
+ * This file is part of NetworkAnalytics, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.networkanalytics.data.storage;
+
+import lombok.experimental.Delegate;
+
+import java.sql.Connection;
+
+/**
+ * A wrapper around a {@link Connection} which doesn't close the underlying
+ * connection when {@link #close()} is called, running a callback instead.
+ *
+ * <p>Used to share a single connection to an embedded database.</p>
+ */
+public final class NonClosableConnection implements Connection {
+
+    @Delegate(excludes = Exclude.class)
+    private final Connection delegate;
+    private final Runnable closeCallback;
+    private boolean closed = false;
+
+    public NonClosableConnection(Connection delegate, Runnable closeCallback) {
+        this.delegate = delegate;
+        this.closeCallback = closeCallback;
+    }
+
+    @Override
+    public void close() {
+        if (!this.closed) {
+            this.closed = true;
+            this.closeCallback.run();
+        }
+    }
+
+    private interface Exclude {
+        void close();
+    }
+}
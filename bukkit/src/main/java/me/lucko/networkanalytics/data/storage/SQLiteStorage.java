@@ -0,0 +1,158 @@
+/*
+ * This file is part of NetworkAnalytics, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.networkanalytics.data.storage;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Embedded SQL storage, using the SQLite driver bundled with the server.
+ */
+public class SQLiteStorage extends SqlStorage {
+    private static final String INSERT = "INSERT OR IGNORE INTO analytics_data VALUES(?, ?, ?, ?, ?, ?, ?)";
+    private static final String UPDATE = "UPDATE analytics_data SET username=?, last_login=?, last_seen=?, times_connected = times_connected + 1 WHERE uuid=?";
+
+    private final File file;
+
+    // sqlite only allows a single writer, so access to the connection is exclusive
+    // and held until the connection handed out by getConnection is "closed"
+    private final ReentrantLock lock = new ReentrantLock();
+    private Connection connection;
+    // set on shutdown, so late writes fail rather than reopening the database
+    private boolean closed = false;
+
+    public SQLiteStorage(File file) {
+        this.file = file;
+    }
+
+    @Override
+    public String getName() {
+        return "SQLite";
+    }
+
+    @Override
+    protected Connection getConnection() throws SQLException {
+        this.lock.lock();
+        try {
+            if (this.closed) {
+                throw new SQLException("Storage has been shut down");
+            }
+            if (this.connection == null || this.connection.isClosed()) {
+                try {
+                    Class.forName("org.sqlite.JDBC");
+                } catch (ClassNotFoundException e) {
+                    throw new SQLException("SQLite driver not present", e);
+                }
+
+                this.connection = DriverManager.getConnection("jdbc:sqlite:" + this.file.getAbsolutePath());
+            }
+        } catch (SQLException | RuntimeException e) {
+            this.lock.unlock();
+            throw e;
+        }
+        return new NonClosableConnection(this.connection, this.lock::unlock);
+    }
+
+    @Override
+    protected String insertIgnore() {
+        return "INSERT OR IGNORE INTO";
+    }
+
+    @Override
+    protected String explainPrefix() {
+        return "EXPLAIN QUERY PLAN ";
+    }
+
+    @Override
+    protected String caseInsensitive(String column) {
+        // LIKE is case insensitive, so the index must be too for it to be used for prefix matches.
+        // '=' is case sensitive by default, so exact lookups need the collation too
+        return column + " COLLATE NOCASE";
+    }
+
+    @Override
+    protected String forUpdate(String query) {
+        // not supported, but we hold an exclusive lock on the database anyway
+        return query;
+    }
+
+    @Override
+    public void init() throws Exception {
+        File parent = this.file.getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+        super.init();
+    }
+
+    @Override
+    public void shutdown() {
+        this.lock.lock();
+        try {
+            this.closed = true;
+            if (this.connection != null) {
+                this.connection.close();
+                this.connection = null;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    @Override
+    protected void upsertPlayer(Connection c, UUID uuid, String username, long time, String serverId) throws SQLException {
+        // sqlite (at least the version shipped with the server) has no upsert,
+        // so try the insert first and fallback to an update.
+        try (PreparedStatement ps = c.prepareStatement(INSERT)) {
+            ps.setString(1, uuid.toString()); // uuid
+            ps.setString(2, username); // username
+            ps.setLong(3, time); // first login
+            ps.setLong(4, time); // last login
+            ps.setString(5, serverId); // last seen
+            ps.setLong(6, 1); // times connected
+            ps.setLong(7, 0); // minutes played
+
+            if (ps.executeUpdate() != 0) {
+                return;
+            }
+        }
+
+        try (PreparedStatement ps = c.prepareStatement(UPDATE)) {
+            ps.setString(1, username); // username
+            ps.setLong(2, time); // last login
+            ps.setString(3, serverId); // last seen
+            ps.setString(4, uuid.toString());
+            ps.execute();
+        }
+    }
+}
@@ -0,0 +1,879 @@
+/*
+ * This file is part of NetworkAnalytics, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.networkanalytics.data.storage;
+
+import me.lucko.networkanalytics.data.PlayerRecord;
+import me.lucko.networkanalytics.data.StatsHolder;
+import me.lucko.networkanalytics.data.archive.ArchiveBatch;
+import me.lucko.networkanalytics.data.archive.ArchiveTotals;
+import me.lucko.networkanalytics.data.leaderboard.LeaderboardEntry;
+import me.lucko.networkanalytics.data.leaderboard.LeaderboardType;
+import me.lucko.networkanalytics.data.rollup.DailyRollup;
+import me.lucko.networkanalytics.data.slowlog.RecordingConnection;
+import me.lucko.networkanalytics.data.slowlog.SlowOperationLog;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.UnaryOperator;
+
+/**
+ * Base {@link Storage} implementation for JDBC backed storage types.
+ *
+ * <p>Implementations provide connections and the dialect specific upsert used
+ * when a player logs in.</p>
+ */
+public abstract class SqlStorage implements Storage {
+
+    private static final String CREATE_TABLE = "CREATE TABLE IF NOT EXISTS `analytics_data` (`uuid` VARCHAR(36) NOT NULL, `username` VARCHAR(16) NOT NULL, `first_login` INT NOT NULL, `last_login` INT NOT NULL, `last_seen` VARCHAR(32) NOT NULL, `times_connected` INT NOT NULL, `minutes_played` INT NOT NULL, PRIMARY KEY (`uuid`))";
+    private static final String CREATE_SKETCH_TABLE = "CREATE TABLE IF NOT EXISTS `analytics_sketches` (`name` VARCHAR(32) NOT NULL, `data` BLOB NOT NULL, PRIMARY KEY (`name`))";
+    private static final String CREATE_DAILY_TABLE = "CREATE TABLE IF NOT EXISTS `analytics_daily` (`day` INT NOT NULL, `server` VARCHAR(32) NOT NULL, `new_players` INT NOT NULL, `unique_joins` INT NOT NULL, `connections` INT NOT NULL, `minutes_played` BIGINT NOT NULL, `sealed` TINYINT NOT NULL, PRIMARY KEY (`day`, `server`))";
+    private static final String CREATE_DAILY_JOINS_TABLE = "CREATE TABLE IF NOT EXISTS `analytics_daily_joins` (`day` INT NOT NULL, `server` VARCHAR(32) NOT NULL, `uuid` VARCHAR(36) NOT NULL, PRIMARY KEY (`day`, `server`, `uuid`))";
+    private static final String CREATE_ARCHIVE_TABLE = "CREATE TABLE IF NOT EXISTS `analytics_archive` (`uuid` VARCHAR(36) NOT NULL, `username` VARCHAR(16) NOT NULL, `first_login` INT NOT NULL, `last_login` INT NOT NULL, `last_seen` VARCHAR(32) NOT NULL, `times_connected` INT NOT NULL, `minutes_played` INT NOT NULL, PRIMARY KEY (`uuid`))";
+    private static final String CREATE_ARCHIVE_TOTALS_TABLE = "CREATE TABLE IF NOT EXISTS `analytics_archive_totals` (`id` INT NOT NULL, `players` BIGINT NOT NULL, `minutes_played` BIGINT NOT NULL, `times_connected` BIGINT NOT NULL, `pt_gt_1h` BIGINT NOT NULL, `pt_gt_6h` BIGINT NOT NULL, `conn_gt_50` BIGINT NOT NULL, `conn_lt_10` BIGINT NOT NULL, `pt_lt_30m` BIGINT NOT NULL, PRIMARY KEY (`id`))";
+    private static final String INSERT_ARCHIVE_TOTALS = " analytics_archive_totals VALUES(1, 0, 0, 0, 0, 0, 0, 0, 0)";
+    private static final String SELECT_ARCHIVE_TOTALS = "SELECT * FROM analytics_archive_totals WHERE id=1";
+    private static final String UPDATE_ARCHIVE_TOTALS = "UPDATE analytics_archive_totals SET players = players + ?, minutes_played = minutes_played + ?, times_connected = times_connected + ?, pt_gt_1h = pt_gt_1h + ?, pt_gt_6h = pt_gt_6h + ?, conn_gt_50 = conn_gt_50 + ?, conn_lt_10 = conn_lt_10 + ?, pt_lt_30m = pt_lt_30m + ? WHERE id=1";
+    private static final String SELECT_INACTIVE = "SELECT uuid, last_login FROM analytics_data WHERE last_login < ? AND (last_login > ? OR (last_login = ? AND uuid > ?)) ORDER BY last_login, uuid LIMIT ?";
+    private static final String LOCK_INACTIVE = "SELECT * FROM analytics_data WHERE last_login < ? AND uuid IN (%s)";
+    private static final String INSERT_ARCHIVE = "REPLACE INTO analytics_archive VALUES(?, ?, ?, ?, ?, ?, ?)";
+    private static final String DELETE_INACTIVE = "DELETE FROM analytics_data WHERE uuid=? AND last_login < ?";
+    private static final String SELECT_ARCHIVED = "SELECT * FROM analytics_archive WHERE uuid=?";
+    private static final String DELETE_ARCHIVED = "DELETE FROM analytics_archive WHERE uuid=?";
+    private static final String RESTORE_ARCHIVED = "UPDATE analytics_data SET first_login=?, times_connected = times_connected + ?, minutes_played = minutes_played + ? WHERE uuid=?";
+    private static final String SEARCH_USERNAMES = "SELECT username FROM analytics_data WHERE username LIKE ? ESCAPE '!' ORDER BY username LIMIT ?";
+    private static final String SELECT_RECENT = "SELECT uuid, username FROM analytics_data WHERE last_login > ? ORDER BY last_login DESC LIMIT ?";
+    private static final String UPDATE_MINUTES = "UPDATE analytics_data SET minutes_played = minutes_played + ? WHERE uuid=?";
+    private static final String SELECT_TIMES_CONNECTED = "SELECT times_connected FROM analytics_data WHERE uuid=?";
+    private static final String SELECT_MINUTES = "SELECT minutes_played FROM analytics_data WHERE uuid=?";
+    private static final String SELECT_TOTALS = "SELECT minutes_played, times_connected FROM analytics_data";
+    private static final String SELECT_SKETCH = "SELECT data FROM analytics_sketches WHERE name=?";
+    private static final String REPLACE_SKETCH = "REPLACE INTO analytics_sketches VALUES(?, ?)";
+    private static final String INSERT_DAILY = " analytics_daily VALUES(?, ?, 0, 0, 0, 0, 0)";
+    private static final String UPDATE_DAILY = "UPDATE analytics_daily SET new_players = new_players + ?, unique_joins = unique_joins + ?, connections = connections + ?, minutes_played = minutes_played + ? WHERE day=? AND server=?";
+    private static final String SEAL_DAILY = "UPDATE analytics_daily SET sealed = 1 WHERE day=? AND server=?";
+    private static final String SEAL_OPEN_DAILY = "UPDATE analytics_daily SET sealed = 1 WHERE server=? AND day < ? AND sealed = 0";
+    private static final String INSERT_DAILY_JOIN = " analytics_daily_joins VALUES(?, ?, ?)";
+    private static final String DELETE_DAILY_JOINS = "DELETE FROM analytics_daily_joins WHERE server=? AND day < ?";
+    private static final String SELECT_DAILY = "SELECT server, SUM(new_players) AS new_players, SUM(unique_joins) AS unique_joins, SUM(connections) AS connections, SUM(minutes_played) AS minutes_played FROM analytics_daily WHERE day >= ? AND day <= ? GROUP BY server";
+    private static final String SELECT = "SELECT * FROM analytics_data WHERE uuid=?";
+    private static final String SELECT_UUID = "SELECT uuid FROM analytics_data WHERE %s=?";
+    private static final String SELECT_USERNAME = "SELECT username FROM analytics_data WHERE uuid=?";
+    private static final String SELECT_ARCHIVED_UUID = "SELECT uuid FROM analytics_archive WHERE %s=?";
+    private static final String SELECT_ARCHIVED_USERNAME = "SELECT username FROM analytics_archive WHERE uuid=?";
+
+    private SlowOperationLog slowLog = null;
+
+    /**
+     * Gets a connection to the database
+     *
+     * @return a connection
+     * @throws SQLException if a connection could not be obtained
+     */
+    protected abstract Connection getConnection() throws SQLException;
+
+    /**
+     * Gets the dialect specific prefix used to obtain the plan for a statement
+     *
+     * @return the prefix
+     */
+    protected String explainPrefix() {
+        return "EXPLAIN ";
+    }
+
+    /**
+     * Sets the log to record slow statements to
+     *
+     * @param slowLog the log
+     */
+    public void setSlowLog(SlowOperationLog slowLog) {
+        this.slowLog = slowLog;
+    }
+
+    private Connection connect() throws SQLException {
+        SlowOperationLog slowLog = this.slowLog;
+        if (slowLog == null || !slowLog.isEnabled()) {
+            return getConnection();
+        }
+
+        long start = System.nanoTime();
+        Connection connection = getConnection();
+        return new RecordingConnection(connection, slowLog, System.nanoTime() - start);
+    }
+
+    /**
+     * Inserts or updates the players record following a login.
+     *
+     * @param c the connection
+     * @param uuid the players uuid
+     * @param username the players username
+     * @param time the login time
+     * @param serverId the id of the server the player logged into
+     * @throws SQLException if an error occurs
+     */
+    protected abstract void upsertPlayer(Connection c, UUID uuid, String username, long time, String serverId) throws SQLException;
+
+    /**
+     * Gets the dialect specific prefix for an insert which ignores duplicate keys
+     *
+     * @return the insert prefix, e.g. "INSERT IGNORE INTO"
+     */
+    protected abstract String insertIgnore();
+
+    /**
+     * Creates an index on the given table if it doesn't already exist.
+     *
+     * @param c the connection
+     * @param table the table
+     * @param name the name of the index
+     * @param columns the indexed columns, comma separated
+     * @throws SQLException if an error occurs
+     */
+    protected void createIndex(Connection c, String table, String name, String columns) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement("CREATE INDEX IF NOT EXISTS `" + name + "` ON `" + table + "` (" + columns + ")")) {
+            ps.execute();
+        }
+    }
+
+    /**
+     * Gets the definition of a column which is compared without regard to case,
+     * for use in an index or a comparison.
+     *
+     * @param column the column
+     * @return the column definition
+     */
+    protected String caseInsensitive(String column) {
+        // the default mysql collations are already case insensitive
+        return column;
+    }
+
+    /**
+     * Appends a row locking clause to the given query, if the dialect supports it.
+     *
+     * @param query the select query
+     * @return the query
+     */
+    protected String forUpdate(String query) {
+        return query + " FOR UPDATE";
+    }
+
+    @Override
+    public void init() throws Exception {
+        try (Connection c = connect()) {
+            try (PreparedStatement ps = c.prepareStatement(CREATE_TABLE)) {
+                ps.execute();
+            }
+            try (PreparedStatement ps = c.prepareStatement(CREATE_SKETCH_TABLE)) {
+                ps.execute();
+            }
+            try (PreparedStatement ps = c.prepareStatement(CREATE_DAILY_TABLE)) {
+                ps.execute();
+            }
+            try (PreparedStatement ps = c.prepareStatement(CREATE_DAILY_JOINS_TABLE)) {
+                ps.execute();
+            }
+            try (PreparedStatement ps = c.prepareStatement(CREATE_ARCHIVE_TABLE)) {
+                ps.execute();
+            }
+            try (PreparedStatement ps = c.prepareStatement(CREATE_ARCHIVE_TOTALS_TABLE)) {
+                ps.execute();
+            }
+            try (PreparedStatement ps = c.prepareStatement(insertIgnore() + INSERT_ARCHIVE_TOTALS)) {
+                ps.execute();
+            }
+            createIndex(c, "analytics_data", "analytics_data_last_login", "`last_login`");
+            createIndex(c, "analytics_data", "analytics_data_last_login_uuid", "`last_login`, `uuid`");
+            createIndex(c, "analytics_data", "analytics_data_username", caseInsensitive("`username`"));
+            createIndex(c, "analytics_archive", "analytics_archive_username", caseInsensitive("`username`"));
+            for (LeaderboardType type : LeaderboardType.values()) {
+                createIndex(c, "analytics_data", "analytics_data_" + type.getColumn(), "`" + type.getColumn() + "`, `uuid`");
+            }
+        }
+    }
+
+    @Override
+    public int logPlayer(UUID uuid, String username, long time, String serverId) throws Exception {
+        try (Connection c = connect()) {
+            upsertPlayer(c, uuid, username, time, serverId);
+            int timesConnected = selectInt(c, SELECT_TIMES_CONNECTED, uuid);
+            if (timesConnected == 1 && restoreArchived(c, uuid)) {
+                timesConnected = selectInt(c, SELECT_TIMES_CONNECTED, uuid);
+            }
+            return timesConnected;
+        }
+    }
+
+    /**
+     * Merges a returning players archived record back into their new record.
+     *
+     * @param c the connection
+     * @param uuid the players uuid
+     * @return true if the player had an archived record
+     * @throws Exception if an error occurs
+     */
+    private boolean restoreArchived(Connection c, UUID uuid) throws Exception {
+        boolean[] restored = {false};
+        inTransaction(c, () -> {
+            PlayerRecord archived = null;
+            try (PreparedStatement ps = c.prepareStatement(forUpdate(SELECT_ARCHIVED))) {
+                ps.setString(1, uuid.toString());
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        archived = readRecord(rs);
+                    }
+                }
+            }
+            if (archived == null) {
+                return;
+            }
+
+            try (PreparedStatement ps = c.prepareStatement(RESTORE_ARCHIVED)) {
+                ps.setLong(1, archived.getFirstLogin());
+                ps.setInt(2, archived.getTimesConnected());
+                ps.setInt(3, archived.getMinutesPlayed());
+                ps.setString(4, uuid.toString());
+                ps.execute();
+            }
+            try (PreparedStatement ps = c.prepareStatement(DELETE_ARCHIVED)) {
+                ps.setString(1, uuid.toString());
+                ps.execute();
+            }
+            updateArchiveTotals(c, ArchiveTotals.of(archived.getMinutesPlayed(), archived.getTimesConnected()).negate());
+            restored[0] = true;
+        });
+        return restored[0];
+    }
+
+    @Override
+    public int incrementMinutesPlayed(UUID uuid, int minutes) throws Exception {
+        try (Connection c = connect()) {
+            try (PreparedStatement ps = c.prepareStatement(UPDATE_MINUTES)) {
+                ps.setInt(1, minutes);
+                ps.setString(2, uuid.toString());
+                if (ps.executeUpdate() == 0) {
+                    return -1;
+                }
+            }
+            return selectInt(c, SELECT_MINUTES, uuid);
+        }
+    }
+
+    @Override
+    public Optional<String> getUsername(UUID uuid) throws Exception {
+        try (Connection c = connect()) {
+            try (PreparedStatement ps = c.prepareStatement(SELECT_USERNAME)) {
+                ps.setString(1, uuid.toString());
+
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        return Optional.of(rs.getString("username"));
+                    }
+                }
+            }
+
+            // the player may have been archived
+            try (PreparedStatement ps = c.prepareStatement(SELECT_ARCHIVED_USERNAME)) {
+                ps.setString(1, uuid.toString());
+
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        return Optional.of(rs.getString("username"));
+                    }
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<UUID> getUuid(String username) throws Exception {
+        try (Connection c = connect()) {
+            try (PreparedStatement ps = c.prepareStatement(String.format(SELECT_UUID, caseInsensitive("username")))) {
+                ps.setString(1, username);
+
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        return Optional.of(UUID.fromString(rs.getString("uuid")));
+                    }
+                }
+            }
+
+            // the player may have been archived
+            try (PreparedStatement ps = c.prepareStatement(String.format(SELECT_ARCHIVED_UUID, caseInsensitive("username")))) {
+                ps.setString(1, username);
+
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        return Optional.of(UUID.fromString(rs.getString("uuid")));
+                    }
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public List<String> searchUsernames(String prefix, int limit) throws Exception {
+        // a prefix match can be answered with a range scan over the username index
+        String pattern = prefix.replace("!", "!!").replace("%", "!%").replace("_", "!_") + "%";
+
+        List<String> usernames = new ArrayList<>();
+        try (Connection c = connect()) {
+            try (PreparedStatement ps = c.prepareStatement(SEARCH_USERNAMES)) {
+                ps.setString(1, pattern);
+                ps.setInt(2, limit);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        usernames.add(rs.getString("username"));
+                    }
+                }
+            }
+        }
+        return usernames;
+    }
+
+    @Override
+    public Optional<PlayerRecord> getPlayerData(UUID uuid) throws Exception {
+        try (Connection c = connect()) {
+            try (PreparedStatement ps = c.prepareStatement(SELECT)) {
+                ps.setString(1, uuid.toString());
+
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        return Optional.of(readRecord(rs));
+                    }
+                }
+            }
+
+            // the player may have been archived
+            try (PreparedStatement ps = c.prepareStatement(SELECT_ARCHIVED)) {
+                ps.setString(1, uuid.toString());
+
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        return Optional.of(readRecord(rs));
+                    }
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public List<String> explain(String statement, List<Object> parameters) throws Exception {
+        List<String> plan = new ArrayList<>();
+        // not recorded, so explaining a slow statement doesn't add another entry
+        try (Connection c = getConnection()) {
+            try (PreparedStatement ps = c.prepareStatement(explainPrefix() + statement)) {
+                for (int i = 0; i < parameters.size(); i++) {
+                    ps.setObject(i + 1, parameters.get(i));
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    ResultSetMetaData meta = rs.getMetaData();
+                    while (rs.next()) {
+                        StringBuilder row = new StringBuilder();
+                        for (int i = 1; i <= meta.getColumnCount(); i++) {
+                            if (i != 1) {
+                                row.append(", ");
+                            }
+                            row.append(meta.getColumnLabel(i)).append('=').append(rs.getString(i));
+                        }
+                        plan.add(row.toString());
+                    }
+                }
+            }
+        }
+        return plan;
+    }
+
+    @Override
+    public Map<UUID, String> getRecentPlayers(long since, int limit) throws Exception {
+        Map<UUID, String> players = new LinkedHashMap<>();
+        try (Connection c = connect()) {
+            try (PreparedStatement ps = c.prepareStatement(SELECT_RECENT)) {
+                ps.setLong(1, since);
+                ps.setInt(2, limit);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        players.put(UUID.fromString(rs.getString("uuid")), rs.getString("username"));
+                    }
+                }
+            }
+        }
+        return players;
+    }
+
+    @Override
+    public List<LeaderboardEntry> getLeaderboard(LeaderboardType type, LeaderboardEntry after, int limit) throws Exception {
+        String column = type.getColumn();
+        String query = "SELECT uuid, username, " + column + " AS value FROM analytics_data" +
+                // seek past the previous page. the first clause bounds the index range scan
+                (after == null ? "" : " WHERE " + column + " <= ? AND (" + column + " < ? OR uuid < ?)") +
+                " ORDER BY " + column + " DESC, uuid DESC LIMIT ?";
+
+        List<LeaderboardEntry> entries = new ArrayList<>(limit);
+        try (Connection c = connect()) {
+            try (PreparedStatement ps = c.prepareStatement(query)) {
+                int i = 1;
+                if (after != null) {
+                    ps.setLong(i++, after.getValue());
+                    ps.setLong(i++, after.getValue());
+                    ps.setString(i++, after.getUuid().toString());
+                }
+                ps.setInt(i, limit);
+
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        entries.add(new LeaderboardEntry(UUID.fromString(rs.getString("uuid")), rs.getString("username"), rs.getLong("value")));
+                    }
+                }
+            }
+        }
+        return entries;
+    }
+
+    private static PlayerRecord readRecord(ResultSet rs) throws SQLException {
+        UUID uuid = UUID.fromString(rs.getString("uuid"));
+        String username = rs.getString("username");
+        long firstLogin = rs.getLong("first_login");
+        long lastLogin = rs.getLong("last_login");
+        String lastSeen = rs.getString("last_seen");
+        int timesConnected = rs.getInt("times_connected");
+        int minutesPlayed = rs.getInt("minutes_played");
+
+        return new PlayerRecord(uuid, username, firstLogin, lastLogin, lastSeen, timesConnected, minutesPlayed);
+    }
+
+    @Override
+    public StatsHolder getStats(long now) throws Exception {
+        long month = now - 2592000L;
+        long week = now - 604800L;
+        long day = now - 86400;
+
+        try (Connection c = connect()) {
+            long numWithPtGreaterThan1h = getLong(c, "SELECT COUNT(*) AS amount FROM analytics_data WHERE minutes_played > ?", 60);
+            long numWithPtGreaterThan6h = getLong(c, "SELECT COUNT(*) AS amount FROM analytics_data WHERE minutes_played > ?", 360);
+            long numWithConnGreaterThan50 = getLong(c, "SELECT COUNT(*) AS amount FROM analytics_data WHERE times_connected > ?", 50);
+
+            long numWithLastLoginMoreThan1moAgo = getLong(c, "SELECT COUNT(*) AS amount FROM analytics_data WHERE last_login < ?", month);
+            long numWithLastLoginMoreThan1wAgo = getLong(c, "SELECT COUNT(*) AS amount FROM analytics_data WHERE last_login < ?", week);
+            long numWithConnLessThan10 = getLong(c, "SELECT COUNT(*) AS amount FROM analytics_data WHERE times_connected < ?", 10);
+            long numWithPtLessThan30m = getLong(c, "SELECT COUNT(*) AS amount FROM analytics_data WHERE minutes_played < ?", 30);
+
+            long uniqueJoins = getLong(c, "SELECT COUNT(*) AS amount FROM analytics_data");
+            long totalTimePlayed = getLong(c, "SELECT sum(minutes_played) AS amount FROM analytics_data");
+            long totalConnections = getLong(c, "SELECT sum(times_connected) AS amount FROM analytics_data");
+
+            // archived players have been inactive for over a month, so only count towards the all-time figures
+            ArchiveTotals archived = getArchiveTotals(c);
+            numWithPtGreaterThan1h += archived.getNumWithPtGreaterThan1h();
+            numWithPtGreaterThan6h += archived.getNumWithPtGreaterThan6h();
+            numWithConnGreaterThan50 += archived.getNumWithConnGreaterThan50();
+            numWithLastLoginMoreThan1moAgo += archived.getPlayers();
+            numWithLastLoginMoreThan1wAgo += archived.getPlayers();
+            numWithConnLessThan10 += archived.getNumWithConnLessThan10();
+            numWithPtLessThan30m += archived.getNumWithPtLessThan30m();
+            uniqueJoins += archived.getPlayers();
+            totalTimePlayed += archived.getMinutesPlayed();
+            totalConnections += archived.getTimesConnected();
+
+            int averageTimePlayed = uniqueJoins == 0 ? 0 : (int) (totalTimePlayed / uniqueJoins);
+            int averageTimesConnected = uniqueJoins == 0 ? 0 : (int) (totalConnections / uniqueJoins);
+
+            long uniqueJoinsMonth = getLong(c, "SELECT COUNT(*) AS amount FROM analytics_data WHERE lASt_login > ?", month);
+            long newPlayersMonth = getLong(c, "SELECT COUNT(*) AS amount FROM analytics_data WHERE first_login > ?", month);
+            long returningPlayersMonth = uniqueJoinsMonth - newPlayersMonth;
+
+            long uniqueJoinsWeek = getLong(c, "SELECT COUNT(*) AS amount FROM analytics_data WHERE lASt_login > ?", week);
+            long newPlayersWeek = getLong(c, "SELECT COUNT(*) AS amount FROM analytics_data WHERE first_login > ?", week);
+            long returningPlayersWeek = uniqueJoinsWeek - newPlayersWeek;
+
+            long uniqueJoinsToday = getLong(c, "SELECT COUNT(*) AS amount FROM analytics_data WHERE lASt_login > ?", day);
+            long newPlayersToday = getLong(c, "SELECT COUNT(*) AS amount FROM analytics_data WHERE first_login > ?", day);
+            long returningPlayersToday = uniqueJoinsToday - newPlayersToday;
+
+            return new StatsHolder(
+                    numWithPtGreaterThan1h, numWithPtGreaterThan6h, numWithConnGreaterThan50,
+                    numWithLastLoginMoreThan1moAgo, numWithLastLoginMoreThan1wAgo, numWithConnLessThan10, numWithPtLessThan30m,
+                    averageTimePlayed, averageTimesConnected,
+                    uniqueJoins, totalTimePlayed, totalConnections,
+                    uniqueJoinsMonth, newPlayersMonth, returningPlayersMonth,
+                    uniqueJoinsWeek, newPlayersWeek, returningPlayersWeek,
+                    uniqueJoinsToday, newPlayersToday, returningPlayersToday
+            );
+        }
+    }
+
+    @Override
+    public ArchiveBatch archiveInactivePlayers(long cutoff, String afterKey, int batchSize) throws Exception {
+        List<String> candidates = new ArrayList<>(batchSize);
+        String lastKey = null;
+        int[] archived = {0};
+        try (Connection c = connect()) {
+            // find the candidates without locking anything, so active players aren't held up
+            long afterLogin = ArchiveBatch.getKeyLastLogin(afterKey);
+            try (PreparedStatement ps = c.prepareStatement(SELECT_INACTIVE)) {
+                ps.setLong(1, cutoff);
+                ps.setLong(2, afterLogin);
+                ps.setLong(3, afterLogin);
+                ps.setString(4, ArchiveBatch.getKeyUuid(afterKey));
+                ps.setInt(5, batchSize);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        String uuid = rs.getString("uuid");
+                        candidates.add(uuid);
+                        lastKey = ArchiveBatch.createKey(rs.getLong("last_login"), uuid);
+                    }
+                }
+            }
+            if (candidates.isEmpty()) {
+                return new ArchiveBatch(0, null);
+            }
+
+            // then lock just those rows by key. any which have logged in since are skipped
+            inTransaction(c, () -> {
+                List<PlayerRecord> batch = new ArrayList<>(candidates.size());
+                StringBuilder placeholders = new StringBuilder();
+                for (int i = 0; i < candidates.size(); i++) {
+                    placeholders.append(i == 0 ? "?" : ", ?");
+                }
+                try (PreparedStatement ps = c.prepareStatement(forUpdate(String.format(LOCK_INACTIVE, placeholders)))) {
+                    ps.setLong(1, cutoff);
+                    for (int i = 0; i < candidates.size(); i++) {
+                        ps.setString(i + 2, candidates.get(i));
+                    }
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            batch.add(readRecord(rs));
+                        }
+                    }
+                }
+                if (batch.isEmpty()) {
+                    return;
+                }
+
+                int[] deleted;
+                try (PreparedStatement ps = c.prepareStatement(DELETE_INACTIVE)) {
+                    for (PlayerRecord record : batch) {
+                        ps.setString(1, record.getUuid().toString());
+                        ps.setLong(2, cutoff);
+                        ps.addBatch();
+                    }
+                    deleted = ps.executeBatch();
+                }
+
+                // only archive the rows which were actually removed
+                ArchiveTotals totals = new ArchiveTotals();
+                try (PreparedStatement ps = c.prepareStatement(INSERT_ARCHIVE)) {
+                    for (int i = 0; i < batch.size(); i++) {
+                        if (deleted[i] != 1 && deleted[i] != Statement.SUCCESS_NO_INFO) {
+                            continue;
+                        }
+                        PlayerRecord record = batch.get(i);
+                        ps.setString(1, record.getUuid().toString());
+                        ps.setString(2, record.getUsername());
+                        ps.setLong(3, record.getFirstLogin());
+                        ps.setLong(4, record.getLastLogin());
+                        ps.setString(5, record.getLastSeen());
+                        ps.setInt(6, record.getTimesConnected());
+                        ps.setInt(7, record.getMinutesPlayed());
+                        ps.addBatch();
+                        totals = totals.add(ArchiveTotals.of(record.getMinutesPlayed(), record.getTimesConnected()));
+                        archived[0]++;
+                    }
+                    if (archived[0] != 0) {
+                        ps.executeBatch();
+                    }
+                }
+                updateArchiveTotals(c, totals);
+            });
+        }
+
+        String nextKey = candidates.size() < batchSize ? null : lastKey;
+        return new ArchiveBatch(archived[0], nextKey);
+    }
+
+    private static ArchiveTotals getArchiveTotals(Connection c) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(SELECT_ARCHIVE_TOTALS)) {
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    return new ArchiveTotals(
+                            rs.getLong("players"),
+                            rs.getLong("minutes_played"),
+                            rs.getLong("times_connected"),
+                            rs.getLong("pt_gt_1h"),
+                            rs.getLong("pt_gt_6h"),
+                            rs.getLong("conn_gt_50"),
+                            rs.getLong("conn_lt_10"),
+                            rs.getLong("pt_lt_30m")
+                    );
+                }
+            }
+        }
+        return new ArchiveTotals();
+    }
+
+    private static void updateArchiveTotals(Connection c, ArchiveTotals delta) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(UPDATE_ARCHIVE_TOTALS)) {
+            ps.setLong(1, delta.getPlayers());
+            ps.setLong(2, delta.getMinutesPlayed());
+            ps.setLong(3, delta.getTimesConnected());
+            ps.setLong(4, delta.getNumWithPtGreaterThan1h());
+            ps.setLong(5, delta.getNumWithPtGreaterThan6h());
+            ps.setLong(6, delta.getNumWithConnGreaterThan50());
+            ps.setLong(7, delta.getNumWithConnLessThan10());
+            ps.setLong(8, delta.getNumWithPtLessThan30m());
+            ps.execute();
+        }
+    }
+
+    @Override
+    public void scanPlayerTotals(PlayerTotalsVisitor visitor) throws Exception {
+        try (Connection c = connect()) {
+            try (PreparedStatement ps = c.prepareStatement(SELECT_TOTALS)) {
+                ps.setFetchSize(1000);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        visitor.visit(rs.getInt("minutes_played"), rs.getInt("times_connected"));
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public Optional<byte[]> getSketch(String name) throws Exception {
+        try (Connection c = connect()) {
+            try (PreparedStatement ps = c.prepareStatement(SELECT_SKETCH)) {
+                ps.setString(1, name);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        return Optional.of(rs.getBytes("data"));
+                    }
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public void updateSketch(String name, UnaryOperator<byte[]> updater) throws Exception {
+        try (Connection c = connect()) {
+            inTransaction(c, () -> {
+                byte[] current = null;
+                try (PreparedStatement ps = c.prepareStatement(forUpdate(SELECT_SKETCH))) {
+                    ps.setString(1, name);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        if (rs.next()) {
+                            current = rs.getBytes("data");
+                        }
+                    }
+                }
+
+                byte[] updated = updater.apply(current);
+                try (PreparedStatement ps = c.prepareStatement(REPLACE_SKETCH)) {
+                    ps.setString(1, name);
+                    ps.setBytes(2, updated);
+                    ps.execute();
+                }
+            });
+        }
+    }
+
+    @Override
+    public void addDailyRollup(long day, String serverId, DailyRollup delta, boolean seal) throws Exception {
+        try (Connection c = connect()) {
+            inTransaction(c, () -> {
+                try (PreparedStatement ps = c.prepareStatement(insertIgnore() + INSERT_DAILY)) {
+                    ps.setLong(1, day);
+                    ps.setString(2, serverId);
+                    ps.execute();
+                }
+                try (PreparedStatement ps = c.prepareStatement(UPDATE_DAILY)) {
+                    ps.setLong(1, delta.getNewPlayers());
+                    ps.setLong(2, delta.getUniqueJoins());
+                    ps.setLong(3, delta.getConnections());
+                    ps.setLong(4, delta.getMinutesPlayed());
+                    ps.setLong(5, day);
+                    ps.setString(6, serverId);
+                    ps.execute();
+                }
+                if (seal) {
+                    try (PreparedStatement ps = c.prepareStatement(SEAL_DAILY)) {
+                        ps.setLong(1, day);
+                        ps.setString(2, serverId);
+                        ps.execute();
+                    }
+                    try (PreparedStatement ps = c.prepareStatement(DELETE_DAILY_JOINS)) {
+                        ps.setString(1, serverId);
+                        ps.setLong(2, day + 1);
+                        ps.execute();
+                    }
+                }
+            });
+        }
+    }
+
+    @Override
+    public boolean addDailyJoin(long day, String serverId, UUID uuid) throws Exception {
+        try (Connection c = connect()) {
+            try (PreparedStatement ps = c.prepareStatement(insertIgnore() + INSERT_DAILY_JOIN)) {
+                ps.setLong(1, day);
+                ps.setString(2, serverId);
+                ps.setString(3, uuid.toString());
+                return ps.executeUpdate() > 0;
+            }
+        }
+    }
+
+    @Override
+    public void sealDailyRollups(String serverId, long beforeDay) throws Exception {
+        try (Connection c = connect()) {
+            inTransaction(c, () -> {
+                try (PreparedStatement ps = c.prepareStatement(SEAL_OPEN_DAILY)) {
+                    ps.setString(1, serverId);
+                    ps.setLong(2, beforeDay);
+                    ps.execute();
+                }
+                try (PreparedStatement ps = c.prepareStatement(DELETE_DAILY_JOINS)) {
+                    ps.setString(1, serverId);
+                    ps.setLong(2, beforeDay);
+                    ps.execute();
+                }
+            });
+        }
+    }
+
+    @Override
+    public Map<String, DailyRollup> getDailyRollups(long fromDay, long toDay) throws Exception {
+        Map<String, DailyRollup> rollups = new HashMap<>();
+        try (Connection c = connect()) {
+            try (PreparedStatement ps = c.prepareStatement(SELECT_DAILY)) {
+                ps.setLong(1, fromDay);
+                ps.setLong(2, toDay);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        rollups.put(rs.getString("server"), new DailyRollup(
+                                rs.getLong("new_players"),
+                                rs.getLong("unique_joins"),
+                                rs.getLong("connections"),
+                                rs.getLong("minutes_played")
+                        ));
+                    }
+                }
+            }
+        }
+        return rollups;
+    }
+
+    /**
+     * Runs the given action within a transaction, rolling back if it fails.
+     *
+     * @param c the connection
+     * @param action the action
+     * @throws Exception if an error occurs
+     */
+    protected static void inTransaction(Connection c, SqlAction action) throws Exception {
+        boolean autoCommit = c.getAutoCommit();
+        c.setAutoCommit(false);
+        try {
+            action.run();
+            c.commit();
+        } catch (Exception e) {
+            c.rollback();
+            throw e;
+        } finally {
+            c.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static int selectInt(Connection c, String query, UUID uuid) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(query)) {
+            ps.setString(1, uuid.toString());
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    return rs.getInt(1);
+                }
+            }
+        }
+        return -1;
+    }
+
+    @FunctionalInterface
+    protected interface SqlAction {
+        void run() throws Exception;
+    }
+
+    protected static long getLong(Connection c, String query) throws Exception {
+        try (PreparedStatement ps = c.prepareStatement(query)) {
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    return rs.getLong("amount");
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalArgumentException(query, e);
+        }
+        throw new IllegalArgumentException(query);
+    }
+
+    protected static long getLong(Connection c, String query, long val) throws Exception {
+        try (PreparedStatement ps = c.prepareStatement(query)) {
+            ps.setLong(1, val);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    return rs.getLong("amount");
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalArgumentException(query, e);
+        }
+        throw new IllegalArgumentException(query);
+    }
+
+    protected static int getInt(Connection c, String query) throws Exception {
+        try (PreparedStatement ps = c.prepareStatement(query)) {
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    return (int) rs.getDouble("amount");
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalArgumentException(query, e);
+        }
+        throw new IllegalArgumentException(query);
+    }
+}
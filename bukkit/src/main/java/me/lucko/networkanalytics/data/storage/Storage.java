@@ -0,0 +1,258 @@
+/*
+ * This file is part of NetworkAnalytics, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.networkanalytics.data.storage;
+
+import me.lucko.networkanalytics.data.PlayerRecord;
+import me.lucko.networkanalytics.data.StatsHolder;
+import me.lucko.networkanalytics.data.archive.ArchiveBatch;
+import me.lucko.networkanalytics.data.leaderboard.LeaderboardEntry;
+import me.lucko.networkanalytics.data.leaderboard.LeaderboardType;
+import me.lucko.networkanalytics.data.rollup.DailyRollup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.UnaryOperator;
+
+/**
+ * A backend capable of persisting analytics data.
+ *
+ * <p>All methods are blocking, and are called from async threads by the
+ * {@link me.lucko.networkanalytics.data.DataManager}.</p>
+ */
+public interface Storage {
+
+    /**
+     * Gets the name of this storage implementation
+     *
+     * @return the name
+     */
+    String getName();
+
+    /**
+     * Initialises the storage, creating any tables required.
+     *
+     * @throws Exception if an error occurs
+     */
+    void init() throws Exception;
+
+    /**
+     * Closes any resources held by the storage.
+     */
+    void shutdown();
+
+    /**
+     * Records a login for the given player, inserting a new record if one doesn't exist,
+     * or otherwise updating their username, last login time & connection count.
+     *
+     * @param uuid the players uuid
+     * @param username the players username
+     * @param time the login time, in unix seconds
+     * @param serverId the id of the server the player logged into
+     * @return the number of times the player has connected, including this login
+     * @throws Exception if an error occurs
+     */
+    int logPlayer(UUID uuid, String username, long time, String serverId) throws Exception;
+
+    /**
+     * Adds the given number of minutes to the players play time.
+     *
+     * @param uuid the players uuid
+     * @param minutes the minutes to add
+     * @return the players total minutes played after the update, or -1 if the player has no record
+     * @throws Exception if an error occurs
+     */
+    int incrementMinutesPlayed(UUID uuid, int minutes) throws Exception;
+
+    /**
+     * Gets the last known username of a player, including archived players.
+     *
+     * @param uuid the players uuid
+     * @return the username, if known
+     * @throws Exception if an error occurs
+     */
+    Optional<String> getUsername(UUID uuid) throws Exception;
+
+    /**
+     * Gets the uuid of the player with the given username, ignoring case.
+     *
+     * <p>Active players take precedence over archived players with the same name.</p>
+     *
+     * @param username the username
+     * @return the uuid, if known
+     * @throws Exception if an error occurs
+     */
+    Optional<UUID> getUuid(String username) throws Exception;
+
+    /**
+     * Gets the usernames starting with the given prefix, ignoring case, in alphabetical order.
+     *
+     * @param prefix the prefix
+     * @param limit the maximum number of usernames to return
+     * @return the usernames
+     * @throws Exception if an error occurs
+     */
+    List<String> searchUsernames(String prefix, int limit) throws Exception;
+
+    Optional<PlayerRecord> getPlayerData(UUID uuid) throws Exception;
+
+    /**
+     * Gets the players who have logged in since the given time, most recent first.
+     *
+     * @param since the time, in unix seconds
+     * @param limit the maximum number of players to return
+     * @return a map of uuid to username
+     * @throws Exception if an error occurs
+     */
+    Map<UUID, String> getRecentPlayers(long since, int limit) throws Exception;
+
+    /**
+     * Reads entries from a leaderboard, ordered by value then uuid, descending.
+     *
+     * @param type the leaderboard
+     * @param after the last entry of the previous page, or null to start from the top
+     * @param limit the maximum number of entries to return
+     * @return the entries
+     * @throws Exception if an error occurs
+     */
+    List<LeaderboardEntry> getLeaderboard(LeaderboardType type, LeaderboardEntry after, int limit) throws Exception;
+
+    /**
+     * Gets the query plan for the given statement.
+     *
+     * @param statement the statement
+     * @param parameters the parameters to bind
+     * @return the lines of the plan, or an empty list if plans aren't supported
+     * @throws Exception if an error occurs
+     */
+    List<String> explain(String statement, List<Object> parameters) throws Exception;
+
+    /**
+     * Calculates the current network stats.
+     *
+     * @param now the current time, in unix seconds
+     * @return the stats
+     * @throws Exception if an error occurs
+     */
+    StatsHolder getStats(long now) throws Exception;
+
+    /**
+     * Moves a batch of players who last logged in before the cutoff into the archive.
+     *
+     * <p>Players are visited in order of last login then uuid, starting after the
+     * given key, and only the players being archived are locked. Archived
+     * players continue to count towards the all-time figures returned by
+     * {@link #getStats(long)}, and are restored if they log in again.</p>
+     *
+     * @param cutoff the cutoff time, in unix seconds
+     * @param afterKey the key to start after, or an empty string to start from the beginning
+     * @param batchSize the maximum number of players to archive
+     * @return the result of the batch
+     * @throws Exception if an error occurs
+     */
+    ArchiveBatch archiveInactivePlayers(long cutoff, String afterKey, int batchSize) throws Exception;
+
+    /**
+     * Visits the play time and connection count of every player.
+     *
+     * @param visitor the visitor
+     * @throws Exception if an error occurs
+     */
+    void scanPlayerTotals(PlayerTotalsVisitor visitor) throws Exception;
+
+    /**
+     * Gets the encoded form of a persisted quantile sketch
+     *
+     * @param name the name of the sketch
+     * @return the encoded sketch, if present
+     * @throws Exception if an error occurs
+     */
+    Optional<byte[]> getSketch(String name) throws Exception;
+
+    /**
+     * Atomically updates a persisted quantile sketch.
+     *
+     * <p>The updater is passed the current encoded sketch, or null if none exists,
+     * and returns the new value. Concurrent updates (including from other servers)
+     * are serialised.</p>
+     *
+     * @param name the name of the sketch
+     * @param updater the update function
+     * @throws Exception if an error occurs
+     */
+    void updateSketch(String name, UnaryOperator<byte[]> updater) throws Exception;
+
+    /**
+     * Adds to the rollup row for the given day & server, creating it if necessary.
+     *
+     * @param day the day, as an epoch day
+     * @param serverId the server
+     * @param delta the counts to add
+     * @param seal if the row should be marked as sealed (the day has ended)
+     * @throws Exception if an error occurs
+     */
+    void addDailyRollup(long day, String serverId, DailyRollup delta, boolean seal) throws Exception;
+
+    /**
+     * Records that a player joined the given server on the given day.
+     *
+     * <p>Joins are kept until the day's rollup row is sealed.</p>
+     *
+     * @param day the day, as an epoch day
+     * @param serverId the server
+     * @param uuid the player
+     * @return true if this is the players first join to the server that day
+     * @throws Exception if an error occurs
+     */
+    boolean addDailyJoin(long day, String serverId, UUID uuid) throws Exception;
+
+    /**
+     * Seals the servers rollup rows for days before the given day which were
+     * left open, e.g. because the server was stopped before the day ended.
+     *
+     * @param serverId the server
+     * @param beforeDay the first day to leave open, as an epoch day
+     * @throws Exception if an error occurs
+     */
+    void sealDailyRollups(String serverId, long beforeDay) throws Exception;
+
+    /**
+     * Sums the rollup rows for each server between the given days.
+     *
+     * @param fromDay the first day, inclusive, as an epoch day
+     * @param toDay the last day, inclusive, as an epoch day
+     * @return the totals for each server
+     * @throws Exception if an error occurs
+     */
+    Map<String, DailyRollup> getDailyRollups(long fromDay, long toDay) throws Exception;
+
+    @FunctionalInterface
+    interface PlayerTotalsVisitor {
+        void visit(int minutesPlayed, int timesConnected);
+    }
+
+}
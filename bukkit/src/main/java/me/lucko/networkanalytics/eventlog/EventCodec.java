@@ -0,0 +1,229 @@
+/*
+ * This file is part of NetworkAnalytics, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.networkanalytics.eventlog;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * Encodes events in the binary segment format.
+ *
+ * <p>A segment starts with a header:</p>
+ * <pre>
+ *   int    magic ("NAEL")
+ *   byte   format version
+ *   long   base time, in unix millis
+ *   utf    server id
+ * </pre>
+ *
+ * <p>followed by any number of records:</p>
+ * <pre>
+ *   varint length of body
+ *   body:
+ *     byte   type id
+ *     varint time, in millis since the base time (zigzag)
+ *     long   uuid most significant bits
+ *     long   uuid least significant bits
+ *     ...    type specific payload
+ *   int    crc32 of body
+ * </pre>
+ *
+ * <p>A truncated or corrupt record marks the end of the readable part of a segment.</p>
+ */
+public final class EventCodec {
+
+    public static final int MAGIC = 0x4E41454C;
+    public static final int FORMAT_VERSION = 1;
+
+    private static final int MAX_RECORD_LENGTH = 1024;
+
+    /**
+     * Encodes a complete record, including the length prefix and checksum.
+     *
+     * @param type the event type
+     * @param timeOffset the time of the event, relative to the segments base time
+     * @param uuid the player
+     * @param username the username, for LOGIN events
+     * @param value the session length for QUIT events, or protocol id for VERSION events
+     * @return the encoded record
+     */
+    public static byte[] encode(EventType type, long timeOffset, UUID uuid, String username, long value) {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(48);
+        body.write(type.getId());
+        writeVarLong(body, zigzag(timeOffset));
+        writeLong(body, uuid.getMostSignificantBits());
+        writeLong(body, uuid.getLeastSignificantBits());
+        switch (type) {
+            case LOGIN:
+                byte[] name = username.getBytes(StandardCharsets.UTF_8);
+                writeVarLong(body, name.length);
+                body.write(name, 0, name.length);
+                break;
+            case QUIT:
+            case VERSION:
+                writeVarLong(body, zigzag(value));
+                break;
+            default:
+                throw new IllegalArgumentException(type.name());
+        }
+
+        byte[] bytes = body.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length + 8);
+        writeVarLong(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+        int checksum = (int) crc.getValue();
+        out.write(checksum >>> 24);
+        out.write(checksum >>> 16);
+        out.write(checksum >>> 8);
+        out.write(checksum);
+        return out.toByteArray();
+    }
+
+    /**
+     * Reads the next record from the stream.
+     *
+     * @param in the stream, positioned at the start of a record
+     * @param baseTime the base time of the segment
+     * @param serverId the server id of the segment
+     * @return the event, or null if the end of the readable data has been reached,
+     *         or the record is truncated or corrupt
+     * @throws IOException if an io error occurs
+     */
+    public static LoggedEvent decode(DataInputStream in, long baseTime, String serverId) throws IOException {
+        byte[] body;
+        int checksum;
+        try {
+            long length = readVarLong(in);
+            if (length <= 0 || length > MAX_RECORD_LENGTH) {
+                return null;
+            }
+            body = new byte[(int) length];
+            in.readFully(body);
+            checksum = in.readInt();
+        } catch (EOFException | MalformedRecordException e) {
+            return null;
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        if ((int) crc.getValue() != checksum) {
+            return null;
+        }
+
+        try {
+            return decodeBody(new DataInputStream(new ByteArrayInputStream(body)), baseTime, serverId);
+        } catch (EOFException | MalformedRecordException e) {
+            // the checksum matched, but the body can't be parsed - treat the same as a corrupt record
+            return null;
+        }
+    }
+
+    private static LoggedEvent decodeBody(DataInputStream data, long baseTime, String serverId) throws IOException {
+        EventType type = EventType.byId(data.readUnsignedByte());
+        if (type == null) {
+            return null;
+        }
+        long time = baseTime + unzigzag(readVarLong(data));
+        UUID uuid = new UUID(data.readLong(), data.readLong());
+
+        switch (type) {
+            case LOGIN:
+                long nameLength = readVarLong(data);
+                if (nameLength < 0 || nameLength > data.available()) {
+                    throw new MalformedRecordException("invalid username length");
+                }
+                byte[] name = new byte[(int) nameLength];
+                data.readFully(name);
+                return new LoggedEvent(type, time, serverId, uuid, new String(name, StandardCharsets.UTF_8), 0, -1);
+            case QUIT:
+                return new LoggedEvent(type, time, serverId, uuid, null, unzigzag(readVarLong(data)), -1);
+            case VERSION:
+                return new LoggedEvent(type, time, serverId, uuid, null, 0, (int) unzigzag(readVarLong(data)));
+            default:
+                return null;
+        }
+    }
+
+    private static long zigzag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    private static long unzigzag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private static void writeLong(ByteArrayOutputStream out, long v) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            out.write((int) (v >>> shift));
+        }
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long v) {
+        while ((v & ~0x7FL) != 0) {
+            out.write((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.write((int) v);
+    }
+
+    private static long readVarLong(InputStream in) throws IOException {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b == -1) {
+                throw new EOFException();
+            }
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new MalformedRecordException("varlong too long");
+    }
+
+    private EventCodec() {
+
+    }
+
+    /**
+     * Thrown when a record can't be parsed, as opposed to an error reading the underlying stream
+     */
+    private static final class MalformedRecordException extends IOException {
+        MalformedRecordException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,335 @@
+/*
+ * This file is part of NetworkAnalytics, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.networkanalytics.eventlog;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A local, append-only log of the events seen by the
+ * {@link me.lucko.networkanalytics.handler.AnalyticsListener}.
+ *
+ * <p>Events are queued by the caller and written to the current segment by
+ * {@link #flush()}, which is called periodically from an async thread. A new
+ * segment is started once the current one reaches the configured size or age,
+ * and segments older than the retention period are deleted.</p>
+ *
+ * <p>If a write fails, the segment is truncated back to the last successful
+ * flush and closed, and the events which weren't flushed are written to a new
+ * segment on the next flush.</p>
+ *
+ * @see EventCodec for the format
+ */
+public class EventLog {
+    private static final String PREFIX = "events-";
+    private static final String SUFFIX = ".nael";
+
+    /**
+     * Lists the segments in the given directory, oldest first
+     *
+     * @param directory the directory
+     * @return the segments
+     */
+    public static List<File> listSegments(File directory) {
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(PREFIX) && name.endsWith(SUFFIX));
+        if (files == null) {
+            return Collections.emptyList();
+        }
+        List<File> segments = new ArrayList<>(Arrays.asList(files));
+        segments.sort((o1, o2) -> Long.compare(sequenceOf(o1), sequenceOf(o2)));
+        return segments;
+    }
+
+    /**
+     * Reads the events in a segment.
+     *
+     * @param segment the segment
+     * @param consumer the consumer to pass each event to
+     * @return the number of events read
+     * @throws IOException if an io error occurs, or the segment isn't in the expected format
+     */
+    public static int readSegment(File segment, Consumer<LoggedEvent> consumer) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(segment), 65536))) {
+            if (in.readInt() != EventCodec.MAGIC || in.readUnsignedByte() != EventCodec.FORMAT_VERSION) {
+                throw new IOException("Unknown segment format: " + segment);
+            }
+            long baseTime = in.readLong();
+            String serverId = in.readUTF();
+
+            int count = 0;
+            LoggedEvent event;
+            while ((event = EventCodec.decode(in, baseTime, serverId)) != null) {
+                consumer.accept(event);
+                count++;
+            }
+            return count;
+        }
+    }
+
+    private static long sequenceOf(File segment) {
+        String name = segment.getName();
+        try {
+            return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private final File directory;
+    private final Logger logger;
+    private final String serverId;
+    private final long maxSegmentBytes;
+    private final long maxSegmentAgeMillis;
+    private final long retentionMillis;
+
+    private final Queue<PendingEvent> pending = new ConcurrentLinkedQueue<>();
+
+    // events taken from the queue which haven't been flushed yet, guarded by this
+    private final List<PendingEvent> unwritten = new ArrayList<>();
+    // if the last flush failed, so the error is only logged once
+    private boolean failing = false;
+
+    // the current segment, guarded by this
+    private DataOutputStream out = null;
+    private File segmentFile = null;
+    private long segmentBaseTime;
+    private long segmentBytes;
+    private long flushedBytes;
+    private long nextSequence;
+
+    public EventLog(File directory, Logger logger, String serverId, long maxSegmentBytes, long maxSegmentAgeMillis, long retentionMillis) {
+        this.directory = directory;
+        this.logger = logger;
+        this.serverId = serverId;
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.maxSegmentAgeMillis = maxSegmentAgeMillis;
+        this.retentionMillis = retentionMillis;
+    }
+
+    public File getDirectory() {
+        return this.directory;
+    }
+
+    public synchronized void init() {
+        this.directory.mkdirs();
+
+        // never append to an existing segment, it may have a torn final record
+        long sequence = 0;
+        for (File segment : listSegments(this.directory)) {
+            sequence = Math.max(sequence, sequenceOf(segment) + 1);
+        }
+        this.nextSequence = sequence;
+
+        applyRetention();
+    }
+
+    public void logLogin(UUID uuid, String username) {
+        this.pending.add(new PendingEvent(EventType.LOGIN, System.currentTimeMillis(), uuid, username, 0));
+    }
+
+    public void logQuit(UUID uuid, long sessionSeconds) {
+        this.pending.add(new PendingEvent(EventType.QUIT, System.currentTimeMillis(), uuid, null, sessionSeconds));
+    }
+
+    public void logVersion(UUID uuid, int protocolId) {
+        this.pending.add(new PendingEvent(EventType.VERSION, System.currentTimeMillis(), uuid, null, protocolId));
+    }
+
+    /**
+     * Writes any queued events to disk.
+     */
+    public synchronized void flush() {
+        PendingEvent polled;
+        while ((polled = this.pending.poll()) != null) {
+            this.unwritten.add(polled);
+        }
+
+        int flushed = 0;
+        try {
+            while (flushed < this.unwritten.size()) {
+                // fill the current segment, and flush it before starting the next
+                int i = flushed;
+                ensureSegment(this.unwritten.get(i).time);
+                do {
+                    PendingEvent event = this.unwritten.get(i++);
+                    byte[] record = EventCodec.encode(event.type, event.time - this.segmentBaseTime, event.uuid, event.username, event.value);
+                    this.out.write(record);
+                    this.segmentBytes += record.length;
+                } while (i < this.unwritten.size() && !needsNewSegment(this.unwritten.get(i).time));
+
+                this.out.flush();
+                this.flushedBytes = this.segmentBytes;
+                flushed = i;
+            }
+
+            if (this.failing) {
+                this.failing = false;
+                this.logger.info("Writes to the event log have resumed.");
+            }
+        } catch (IOException e) {
+            if (!this.failing) {
+                this.failing = true;
+                this.logger.log(Level.WARNING, "Unable to write to the event log, " + (this.unwritten.size() - flushed) + " events will be retried on the next flush.", e);
+            }
+            abandonSegment();
+        } finally {
+            this.unwritten.subList(0, flushed).clear();
+        }
+    }
+
+    public synchronized void close() {
+        flush();
+        closeSegment();
+        if (!this.unwritten.isEmpty()) {
+            this.logger.warning("Unable to write " + this.unwritten.size() + " events to the event log, they have been lost.");
+            this.unwritten.clear();
+        }
+    }
+
+    private boolean needsNewSegment(long time) {
+        return this.out == null || this.segmentBytes >= this.maxSegmentBytes || time - this.segmentBaseTime >= this.maxSegmentAgeMillis;
+    }
+
+    private void ensureSegment(long time) throws IOException {
+        if (!needsNewSegment(time)) {
+            return;
+        }
+
+        closeSegment();
+        applyRetention();
+
+        File file = new File(this.directory, PREFIX + String.format("%016d", this.nextSequence++) + SUFFIX);
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 65536));
+        this.segmentFile = file;
+        this.segmentBaseTime = time;
+        this.flushedBytes = 0;
+        this.out.writeInt(EventCodec.MAGIC);
+        this.out.writeByte(EventCodec.FORMAT_VERSION);
+        this.out.writeLong(time);
+        this.out.writeUTF(this.serverId);
+        this.segmentBytes = this.out.size();
+    }
+
+    private void closeSegment() {
+        if (this.out == null) {
+            return;
+        }
+        try {
+            this.out.close();
+        } catch (IOException e) {
+            this.logger.log(Level.WARNING, "Unable to close event log segment " + this.segmentFile, e);
+        }
+        this.out = null;
+        this.segmentFile = null;
+    }
+
+    /**
+     * Closes the current segment after a failed write, removing anything
+     * written since the last successful flush.
+     */
+    private void abandonSegment() {
+        if (this.out == null) {
+            return;
+        }
+        File file = this.segmentFile;
+        try {
+            this.out.close();
+        } catch (IOException e) {
+            // expected, the buffer can't be written either
+        }
+        this.out = null;
+        this.segmentFile = null;
+
+        try {
+            if (this.flushedBytes == 0) {
+                // not even the header was written
+                if (!file.delete()) {
+                    file.deleteOnExit();
+                }
+            } else {
+                try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                    raf.setLength(this.flushedBytes);
+                }
+            }
+        } catch (IOException e) {
+            // the torn record is skipped when the segment is read, but any before it may be duplicated
+            this.logger.log(Level.WARNING, "Unable to truncate event log segment " + file, e);
+        }
+    }
+
+    /**
+     * Deletes any segments older than the retention period.
+     *
+     * <p>Called when the log is opened and each time a segment is rotated, and
+     * should also be called periodically, so old segments are removed even if
+     * nothing is being written.</p>
+     */
+    public synchronized void applyRetention() {
+        long cutoff = System.currentTimeMillis() - this.retentionMillis;
+        for (File segment : listSegments(this.directory)) {
+            // never delete the segment currently being written
+            if (segment.equals(this.segmentFile)) {
+                continue;
+            }
+            if (segment.lastModified() < cutoff && !segment.delete()) {
+                segment.deleteOnExit();
+            }
+        }
+    }
+
+    private static final class PendingEvent {
+        private final EventType type;
+        private final long time;
+        private final UUID uuid;
+        private final String username;
+        private final long value;
+
+        private PendingEvent(EventType type, long time, UUID uuid, String username, long value) {
+            this.type = type;
+            this.time = time;
+            this.uuid = uuid;
+            this.username = username;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * This file is part of NetworkAnalytics, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.networkanalytics.eventlog;
+
+import me.lucko.networkanalytics.data.rollup.DailyRollup;
+import me.lucko.networkanalytics.data.sketch.QuantileSummary;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
+
+/**
+ * Rebuilds aggregates from the segments of an {@link EventLog}.
+ *
+ * <p>Each segment is read on its own thread into a separate accumulator,
+ * and the accumulators are merged once every segment has been read. New
+ * metrics can be backfilled by supplying their own accumulator.</p>
+ *
+ * <p>Can also be run standalone:</p>
+ * <pre>
+ *   java -cp NetworkAnalytics.jar me.lucko.networkanalytics.eventlog.EventLogReplay &lt;directory&gt; [threads]
+ * </pre>
+ */
+public final class EventLogReplay {
+
+    /**
+     * Replays the given segments.
+     *
+     * @param segments the segments
+     * @param parallelism the number of segments to read at once
+     * @param factory creates an empty accumulator
+     * @param accumulator adds an event to an accumulator
+     * @param combiner merges two accumulators
+     * @param <A> the accumulator type
+     * @return the merged result
+     * @throws Exception if a segment could not be read
+     */
+    public static <A> A replay(List<File> segments, int parallelism, Supplier<A> factory, BiConsumer<A, LoggedEvent> accumulator, BinaryOperator<A> combiner) throws Exception {
+        AtomicInteger threadId = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, parallelism), r -> {
+            Thread thread = new Thread(r, "na-replay-" + threadId.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            List<Future<A>> futures = new ArrayList<>(segments.size());
+            for (File segment : segments) {
+                futures.add(executor.submit(() -> {
+                    A result = factory.get();
+                    try {
+                        EventLog.readSegment(segment, event -> accumulator.accept(result, event));
+                    } catch (IOException e) {
+                        // skip the rest of an unreadable segment, rather than failing the whole replay
+                        e.printStackTrace();
+                    }
+                    return result;
+                }));
+            }
+
+            A result = factory.get();
+            for (Future<A> future : futures) {
+                result = combiner.apply(result, future.get());
+            }
+            return result;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Rebuilds the standard aggregates from every segment in the given directory.
+     *
+     * @param directory the directory
+     * @param parallelism the number of segments to read at once
+     * @return the aggregates
+     * @throws Exception if a segment could not be read
+     */
+    public static ReplayAggregates replay(File directory, int parallelism) throws Exception {
+        return replay(EventLog.listSegments(directory), parallelism, ReplayAggregates::new, ReplayAggregates::accept, ReplayAggregates::merge);
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: EventLogReplay <directory> [threads]");
+            System.exit(1);
+            return;
+        }
+
+        File directory = new File(args[0]);
+        int threads = args.length >= 2 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        List<File> segments = EventLog.listSegments(directory);
+
+        long start = System.currentTimeMillis();
+        ReplayAggregates aggregates = replay(segments, threads, ReplayAggregates::new, ReplayAggregates::accept, ReplayAggregates::merge);
+        long duration = System.currentTimeMillis() - start;
+
+        System.out.println("Replayed " + aggregates.getEvents() + " events from " + segments.size() + " segments in " + duration + "ms using " + threads + " threads.");
+        System.out.println("Logins: " + aggregates.getLogins() + ", quits: " + aggregates.getQuits() + ", unique players: " + aggregates.getUniquePlayers());
+
+        QuantileSummary sessions = aggregates.getSessionLengths().summarise();
+        System.out.println("Session length p50/p90/p99 (s): " + Math.round(sessions.getP50()) + "/" + Math.round(sessions.getP90()) + "/" + Math.round(sessions.getP99()));
+
+        System.out.println();
+        System.out.println("day          new  unique  connections  minutes");
+        for (Map.Entry<Long, DailyRollup> e : aggregates.getDailyRollups().entrySet()) {
+            DailyRollup r = e.getValue();
+            System.out.println(String.format("%s %6d %7d %12d %8d", LocalDate.ofEpochDay(e.getKey()), r.getNewPlayers(), r.getUniqueJoins(), r.getConnections(), r.getMinutesPlayed()));
+        }
+
+        System.out.println();
+        System.out.println("protocol  connections");
+        aggregates.getProtocolCounts().entrySet().stream()
+                .sorted((o1, o2) -> Long.compare(o2.getValue(), o1.getValue()))
+                .forEach(e -> System.out.println(String.format("%8d %12d", e.getKey(), e.getValue())));
+    }
+
+    private EventLogReplay() {
+
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * This file is part of NetworkAnalytics, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.networkanalytics.eventlog;
+
+/**
+ * The types of event recorded in the {@link EventLog}.
+ *
+ * <p>The ids are written to disk, so must not change.</p>
+ */
+public enum EventType {
+
+    /**
+     * A player logged in. Carries the players username.
+     */
+    LOGIN(1),
+
+    /**
+     * A player quit. Carries the length of the session, in seconds.
+     */
+    QUIT(2),
+
+    /**
+     * A players protocol version became known. Carries the protocol id.
+     */
+    VERSION(3);
+
+    private static final EventType[] BY_ID = new EventType[4];
+    static {
+        for (EventType type : values()) {
+            BY_ID[type.id] = type;
+        }
+    }
+
+    public static EventType byId(int id) {
+        return id >= 0 && id < BY_ID.length ? BY_ID[id] : null;
+    }
+
+    private final int id;
+
+    EventType(int id) {
+        this.id = id;
+    }
+
+    public int getId() {
+        return this.id;
+    }
+}
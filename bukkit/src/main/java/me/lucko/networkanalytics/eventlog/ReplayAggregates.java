@@ -0,0 +1,142 @@
+/*
+ * This file is part of NetworkAnalytics, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.networkanalytics.eventlog;
+
+import lombok.Getter;
+
+import me.lucko.networkanalytics.data.rollup.DailyRollup;
+import me.lucko.networkanalytics.data.sketch.QuantileSketch;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * The standard aggregates rebuilt from the event log.
+ *
+ * <p>Instances are filled from a single segment, and then merged together.</p>
+ */
+public class ReplayAggregates {
+
+    @Getter
+    private long events = 0;
+    @Getter
+    private long logins = 0;
+    @Getter
+    private long quits = 0;
+
+    // epoch day -> connections & minutes played
+    private final Map<Long, long[]> days = new HashMap<>();
+    // epoch day -> the players who joined
+    private final Map<Long, Set<UUID>> joins = new HashMap<>();
+    // player -> the time they were first seen in the log
+    private final Map<UUID, Long> firstSeen = new HashMap<>();
+
+    // protocol id -> number of connections
+    @Getter
+    private final Map<Integer, Long> protocolCounts = new HashMap<>();
+
+    @Getter
+    private final QuantileSketch sessionLengths = new QuantileSketch();
+
+    public void accept(LoggedEvent event) {
+        this.events++;
+        long day = Instant.ofEpochMilli(event.getTime()).atZone(ZoneId.systemDefault()).toLocalDate().toEpochDay();
+
+        switch (event.getType()) {
+            case LOGIN:
+                this.logins++;
+                this.days.computeIfAbsent(day, d -> new long[2])[0]++;
+                this.joins.computeIfAbsent(day, d -> new HashSet<>()).add(event.getUuid());
+                this.firstSeen.merge(event.getUuid(), event.getTime(), Math::min);
+                break;
+            case QUIT:
+                this.quits++;
+                this.days.computeIfAbsent(day, d -> new long[2])[1] += event.getSessionSeconds() / 60L;
+                this.sessionLengths.add(event.getSessionSeconds());
+                break;
+            case VERSION:
+                this.protocolCounts.merge(event.getProtocolId(), 1L, Long::sum);
+                break;
+            default:
+                break;
+        }
+    }
+
+    public ReplayAggregates merge(ReplayAggregates other) {
+        this.events += other.events;
+        this.logins += other.logins;
+        this.quits += other.quits;
+        other.days.forEach((day, counts) -> {
+            long[] existing = this.days.computeIfAbsent(day, d -> new long[2]);
+            existing[0] += counts[0];
+            existing[1] += counts[1];
+        });
+        other.joins.forEach((day, players) -> this.joins.computeIfAbsent(day, d -> new HashSet<>()).addAll(players));
+        other.firstSeen.forEach((uuid, time) -> this.firstSeen.merge(uuid, time, Math::min));
+        other.protocolCounts.forEach((id, count) -> this.protocolCounts.merge(id, count, Long::sum));
+        this.sessionLengths.merge(other.sessionLengths);
+        return this;
+    }
+
+    /**
+     * Gets the number of distinct players seen in the log
+     *
+     * @return the number of players
+     */
+    public int getUniquePlayers() {
+        return this.firstSeen.size();
+    }
+
+    /**
+     * Builds the daily rollups from the replayed events.
+     *
+     * <p>A player is counted as new on the day they first appear in the log,
+     * so players who joined before the oldest retained segment are
+     * over-counted on its first day.</p>
+     *
+     * @return the rollups, keyed by epoch day
+     */
+    public Map<Long, DailyRollup> getDailyRollups() {
+        Map<Long, Long> newPlayers = new HashMap<>();
+        for (long time : this.firstSeen.values()) {
+            long day = Instant.ofEpochMilli(time).atZone(ZoneId.systemDefault()).toLocalDate().toEpochDay();
+            newPlayers.merge(day, 1L, Long::sum);
+        }
+
+        Map<Long, DailyRollup> rollups = new TreeMap<>();
+        this.days.forEach((day, counts) -> {
+            Set<UUID> players = this.joins.get(day);
+            rollups.put(day, new DailyRollup(newPlayers.getOrDefault(day, 0L), players == null ? 0 : players.size(), counts[0], counts[1]));
+        });
+        return rollups;
+    }
+}
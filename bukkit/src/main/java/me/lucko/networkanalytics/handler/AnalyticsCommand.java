@@ -0,0 +1,580 @@
+/*
+ * This file is part of NetworkAnalytics, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.networkanalytics.handler;
+
+import lombok.RequiredArgsConstructor;
+
+import com.google.common.collect.Maps;
+
+import me.lucko.helper.Schedulers;
+import me.lucko.helper.text.Text;
+import me.lucko.helper.utils.TimeUtil;
+import me.lucko.networkanalytics.AnalyticsPlugin;
+import me.lucko.networkanalytics.channel.NetworkSummary;
+import me.lucko.networkanalytics.data.PlayerRecord;
+import me.lucko.networkanalytics.data.StatsHolder;
+import me.lucko.networkanalytics.data.leaderboard.LeaderboardEntry;
+import me.lucko.networkanalytics.data.leaderboard.LeaderboardPage;
+import me.lucko.networkanalytics.data.leaderboard.LeaderboardType;
+import me.lucko.networkanalytics.data.leaderboard.Leaderboards;
+import me.lucko.networkanalytics.data.rollup.DailyRollup;
+import me.lucko.networkanalytics.data.sketch.QuantileSummary;
+import me.lucko.networkanalytics.data.slowlog.SlowOperation;
+import me.lucko.networkanalytics.eventlog.EventLog;
+import me.lucko.networkanalytics.eventlog.EventLogReplay;
+import me.lucko.networkanalytics.eventlog.ReplayAggregates;
+
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.CommandSender;
+
+import protocolsupport.api.ProtocolVersion;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.text.NumberFormat;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+@RequiredArgsConstructor
+public class AnalyticsCommand implements CommandExecutor {
+    private static final String HEADER = "&f&m-&3&m-&f&m-&3&m-&f&m-&3&m-&f&m-&3&m-&f&m-&f[ &bAnalytics &f]&f&m-&3&m-&f&m-&3&m-&f&m-&3&m-&f&m-&3&m-&f&m-&r\n&r";
+
+    private final AnalyticsPlugin plugin;
+
+    // only one replay may run at a time, as each one uses half the available cores
+    private final AtomicBoolean replaying = new AtomicBoolean(false);
+
+    @Override
+    public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
+        if (!sender.hasPermission("networkanalytics.view")) {
+            sender.sendMessage(Text.colorize("&3[ANALYTICS] &fYou do not have permission to use this command."));
+            return true;
+        }
+
+        if (args.length >= 1 && args[0].equalsIgnoreCase("top")) {
+            handleTop(sender, args);
+            return true;
+        }
+
+        if (args.length == 1 && args[0].equalsIgnoreCase("replay")) {
+            if (!sender.hasPermission("networkanalytics.replay")) {
+                sender.sendMessage(Text.colorize("&3[ANALYTICS] &fYou do not have permission to replay the event log."));
+                return true;
+            }
+            handleReplay(sender);
+            return true;
+        }
+
+        // the slow log shows bound parameters (usernames & uuids), and explain runs against the live database
+        if (args.length >= 1 && (args[0].equalsIgnoreCase("slow") || args[0].equalsIgnoreCase("explain"))) {
+            if (!sender.hasPermission("networkanalytics.slowlog")) {
+                sender.sendMessage(Text.colorize("&3[ANALYTICS] &fYou do not have permission to view the slow operation log."));
+                return true;
+            }
+        }
+
+        if (args.length == 1 && args[0].equalsIgnoreCase("slow")) {
+            handleSlow(sender);
+            return true;
+        }
+
+        if (args.length >= 1 && args[0].equalsIgnoreCase("explain")) {
+            handleExplain(sender, args);
+            return true;
+        }
+
+        if (args.length >= 1 && args[0].equalsIgnoreCase("player")) {
+            if (args.length != 2) {
+                sender.sendMessage(Text.colorize("&3[ANALYTICS] &fUsage: /analytics player <username>"));
+                return true;
+            }
+            handlePlayer(sender, args[1]);
+            return true;
+        }
+
+        if (args.length == 2) {
+            handleRange(sender, args[0], args[1]);
+            return true;
+        }
+
+        sender.sendMessage(Text.colorize("&3[ANALYTICS] &fRetrieving monitoring data..."));
+
+        plugin.getAggregator().requestSummary().thenAcceptAsync(summary -> {
+            if (!summary.isPresent()) {
+                sender.sendMessage(Text.colorize("&3[ANALYTICS] &fUnable to retrieve monitoring data."));
+                return;
+            }
+
+            // the stats holder
+            StatsHolder s = summary.get().getStats();
+
+            // the number of unique joins
+            BigDecimal total = BigDecimal.valueOf(s.getUniqueJoins());
+
+            // a map of protocol version --> number of players
+            Map<ProtocolVersion, AtomicInteger> versionMap = new HashMap<>();
+            // a map of locale --> number of players
+            Map<String, AtomicInteger> localeMap = new HashMap<>();
+
+            for (Map.Entry<String, Integer> e : summary.get().getVersionCounts().entrySet()) {
+                ProtocolVersion version = NetworkSummary.parseVersion(e.getKey());
+                versionMap.computeIfAbsent(version, v -> new AtomicInteger(0)).addAndGet(e.getValue());
+            }
+
+            // the margins of error for each version/locale, if the counts are estimates
+            boolean sampled = summary.get().isSampled();
+            Map<ProtocolVersion, Double> versionMargins = new HashMap<>();
+            Map<String, Double> localeMargins = new HashMap<>();
+            if (sampled) {
+                summary.get().getVersionMargins().forEach((k, v) -> versionMargins.merge(NetworkSummary.parseVersion(k), v, Math::max));
+                summary.get().getLocaleMargins().forEach((k, v) -> localeMargins.merge(k.equals(NetworkSummary.UNKNOWN) ? null : k, v, Math::max));
+            }
+
+            for (Map.Entry<String, Integer> e : summary.get().getLocaleCounts().entrySet()) {
+                String locale = e.getKey().equals(NetworkSummary.UNKNOWN) ? null : e.getKey();
+                localeMap.computeIfAbsent(locale, v -> new AtomicInteger(0)).addAndGet(e.getValue());
+            }
+
+            List<Map.Entry<ProtocolVersion, Integer>> versionCounts = versionMap.entrySet().stream()
+                    .filter(e -> e.getValue().get() > 0)
+                    .sorted((o1, o2) -> {
+                        int i = Integer.compare(o2.getValue().get(), o1.getValue().get());
+                        if (i != 0) {
+                            return i;
+                        }
+                        return String.valueOf(o1.getKey()).compareTo(String.valueOf(o2.getKey()));
+                    })
+                    .map(e -> Maps.immutableEntry(e.getKey(), e.getValue().get()))
+                    .collect(Collectors.toList());
+
+            List<Map.Entry<String, Integer>> localeCounts = localeMap.entrySet().stream()
+                    .filter(e -> e.getValue().get() > 0)
+                    .sorted((o1, o2) -> {
+                        int i = Integer.compare(o2.getValue().get(), o1.getValue().get());
+                        if (i != 0) {
+                            return i;
+                        }
+
+                        return String.valueOf(o1.getKey()).compareTo(String.valueOf(o2.getKey()));
+                    })
+                    .map(e -> Maps.immutableEntry(e.getKey(), e.getValue().get()))
+                    .collect(Collectors.toList());
+
+            BigDecimal playersWithVersion = BigDecimal.valueOf(versionCounts.stream().mapToInt(Map.Entry::getValue).sum());
+            BigDecimal playersWithLocale = BigDecimal.valueOf(localeCounts.stream().mapToInt(Map.Entry::getValue).sum());
+
+            List<String> m = new ArrayList<>();
+
+            m.add(HEADER);
+            m.add("&fPlayer Retention:");
+            m.add("  &3- &fPlay time greater than 1h: &3" + formatPercent(total, s.getNumWithPtGreaterThan1h()));
+            m.add("  &3- &fPlay time greater than 6h: &3" + formatPercent(total, s.getNumWithPtGreaterThan6h()));
+            m.add("  &3- &fConnected more than 50 times: &3" + formatPercent(total, s.getNumWithConnGreaterThan50()));
+            m.add(" ");
+            m.add("  &3- &fLast login more than 1 month ago: &3" + formatPercent(total, s.getNumWithLastLoginMoreThan1moAgo()));
+            m.add("  &3- &fLast login more than 1 week ago: &3" + formatPercent(total, s.getNumWithLastLoginMoreThan1wAgo()));
+            m.add("  &3- &fConnected less than 10 times: &3" + formatPercent(total, s.getNumWithConnLessThan10()));
+            m.add("  &3- &fPlay time less than 30 minutes: &3" + formatPercent(total, s.getNumWithPtLessThan30m()));
+            m.add(" ");
+            m.add("  &3- &fAverage time played: &3" + TimeUtil.toShortForm(s.getAverageTimePlayed() * 60L));
+            m.add("  &3- &fAverage times connected: &3" + s.getAverageTimesConnected());
+            if (s.getPlayTimeQuantiles() != null) {
+                QuantileSummary q = s.getPlayTimeQuantiles();
+                m.add("  &3- &fTime played p50/p90/p99: &3" + TimeUtil.toShortForm((long) q.getP50() * 60L) + "&7/&3" + TimeUtil.toShortForm((long) q.getP90() * 60L) + "&7/&3" + TimeUtil.toShortForm((long) q.getP99() * 60L));
+            }
+            if (s.getSessionLengthQuantiles() != null) {
+                QuantileSummary q = s.getSessionLengthQuantiles();
+                m.add("  &3- &fSession length p50/p90/p99: &3" + TimeUtil.toShortForm((long) q.getP50()) + "&7/&3" + TimeUtil.toShortForm((long) q.getP90()) + "&7/&3" + TimeUtil.toShortForm((long) q.getP99()));
+            }
+            if (s.getTimesConnectedQuantiles() != null) {
+                QuantileSummary q = s.getTimesConnectedQuantiles();
+                m.add("  &3- &fTimes connected p50/p90/p99: &3" + Math.round(q.getP50()) + "&7/&3" + Math.round(q.getP90()) + "&7/&3" + Math.round(q.getP99()));
+            }
+            m.add(" ");
+            m.add("&fAll time:");
+            m.add("  &3- &fUnique joins: &3" + formatNumberShort(s.getUniqueJoins()));
+            m.add("  &3- &fTotal time played: &3" + TimeUtil.toShortForm(s.getTotalTimePlayed() * 60L));
+            m.add("  &3- &fTotal connections: &3" + formatNumberShort(s.getTotalConnections()));
+            m.add(" ");
+            m.add("&fLast month:");
+            m.add("  &3- &fUnique joins: &3" + formatNumberShort(s.getUniqueJoinsMonth()));
+            m.add("  &3- &fNew players: &3" + formatNumberShort(s.getNewPlayersMonth()) + " &7(" + formatPercent(BigDecimal.valueOf(s.getUniqueJoinsMonth()), s.getNewPlayersMonth()) + "&7)");
+            m.add("  &3- &fReturning players: &3" + formatNumberShort(s.getReturningPlayersMonth()) + " &7(" + formatPercent(BigDecimal.valueOf(s.getUniqueJoinsMonth()), s.getReturningPlayersMonth()) + "&7)");
+            m.add("&fLast week:");
+            m.add("  &3- &fUnique joins: &3" + formatNumberShort(s.getUniqueJoinsWeek()));
+            m.add("  &3- &fNew players: &3" + formatNumberShort(s.getNewPlayersWeek()) + " &7(" + formatPercent(BigDecimal.valueOf(s.getUniqueJoinsWeek()), s.getNewPlayersWeek()) + "&7)");
+            m.add("  &3- &fReturning players: &3" + formatNumberShort(s.getReturningPlayersWeek()) + " &7(" + formatPercent(BigDecimal.valueOf(s.getUniqueJoinsWeek()), s.getReturningPlayersWeek()) + "&7)");
+            m.add("&fLast 24 hours:");
+            m.add("  &3- &fUnique joins: &3" + formatNumberShort(s.getUniqueJoinsToday()));
+            m.add("  &3- &fNew players: &3" + formatNumberShort(s.getNewPlayersToday()) + " &7(" + formatPercent(BigDecimal.valueOf(s.getUniqueJoinsToday()), s.getNewPlayersToday()) + "&7)");
+            m.add("  &3- &fReturning players: &3" + formatNumberShort(s.getReturningPlayersToday()) + " &7(" + formatPercent(BigDecimal.valueOf(s.getUniqueJoinsToday()), s.getReturningPlayersToday()) + "&7)");
+            m.add(" ");
+            m.add(sampled ? "&fPlayer Versions &7(estimated, 95% confidence)&f:" : "&fPlayer Versions:");
+            for (Map.Entry<ProtocolVersion, Integer> versionData : versionCounts) {
+                if (sampled) {
+                    m.add("  &3- &f" + AnalyticsPlugin.getProtocolName(versionData.getKey()) + ": &3~" + versionData.getValue() + " &7(" + formatPercent(playersWithVersion, versionData.getValue()) + " \u00B1 " + formatMargin(versionMargins.getOrDefault(versionData.getKey(), 0d)) + ")");
+                } else {
+                    m.add("  &3- &f" + AnalyticsPlugin.getProtocolName(versionData.getKey()) + ": &3" + versionData.getValue() + " &7(" + formatPercent(playersWithVersion, versionData.getValue()) + ")");
+                }
+            }
+            m.add(" ");
+            m.add(sampled ? "&fPlayer Locales &7(estimated, 95% confidence)&f:" : "&fPlayer Locales:");
+            for (Map.Entry<String, Integer> localeData : localeCounts) {
+                if (sampled) {
+                    m.add("  &3- &f" + String.valueOf(localeData.getKey()) + ": &3~" + localeData.getValue() + " &7(" + formatPercent(playersWithLocale, localeData.getValue()) + " \u00B1 " + formatMargin(localeMargins.getOrDefault(localeData.getKey(), 0d)) + ")");
+                } else {
+                    m.add("  &3- &f" + String.valueOf(localeData.getKey()) + ": &3" + localeData.getValue() + " &7(" + formatPercent(playersWithLocale, localeData.getValue()) + ")");
+                }
+            }
+            m.add(" ");
+
+            for (String str : m) {
+                sender.sendMessage(Text.colorize(str));
+            }
+
+        }, Schedulers.async());
+        return true;
+    }
+
+    private void handleReplay(CommandSender sender) {
+        EventLog eventLog = plugin.getEventLog();
+        if (eventLog == null) {
+            sender.sendMessage(Text.colorize("&3[ANALYTICS] &fThe event log is not enabled on this server."));
+            return;
+        }
+
+        if (!replaying.compareAndSet(false, true)) {
+            sender.sendMessage(Text.colorize("&3[ANALYTICS] &fA replay is already running, please wait for it to finish."));
+            return;
+        }
+
+        sender.sendMessage(Text.colorize("&3[ANALYTICS] &fReplaying event log..."));
+
+        Schedulers.async().run(() -> {
+            try {
+                replay(sender, eventLog);
+            } finally {
+                replaying.set(false);
+            }
+        });
+    }
+
+    private void replay(CommandSender sender, EventLog eventLog) {
+        eventLog.flush();
+
+        List<File> segments = EventLog.listSegments(eventLog.getDirectory());
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        long start = System.currentTimeMillis();
+        ReplayAggregates aggregates;
+        try {
+            aggregates = EventLogReplay.replay(segments, threads, ReplayAggregates::new, ReplayAggregates::accept, ReplayAggregates::merge);
+        } catch (Exception e) {
+            e.printStackTrace();
+            sender.sendMessage(Text.colorize("&3[ANALYTICS] &fUnable to replay the event log."));
+            return;
+        }
+        long duration = System.currentTimeMillis() - start;
+
+        List<String> m = new ArrayList<>();
+        m.add(HEADER);
+        m.add("&fReplayed &3" + formatNumberShort(aggregates.getEvents()) + " &fevents from &3" + segments.size() + " &fsegments in &3" + duration + "ms&f:");
+        m.add("  &3- &fLogins: &3" + formatNumberShort(aggregates.getLogins()));
+        m.add("  &3- &fUnique players: &3" + formatNumberShort(aggregates.getUniquePlayers()));
+        if (!aggregates.getSessionLengths().isEmpty()) {
+            QuantileSummary q = aggregates.getSessionLengths().summarise();
+            m.add("  &3- &fSession length p50/p90/p99: &3" + TimeUtil.toShortForm((long) q.getP50()) + "&7/&3" + TimeUtil.toShortForm((long) q.getP90()) + "&7/&3" + TimeUtil.toShortForm((long) q.getP99()));
+        }
+        m.add(" ");
+        m.add("&fLast 7 days &7(new / unique / connections)&f:");
+        long today = LocalDate.now().toEpochDay();
+        aggregates.getDailyRollups().forEach((day, r) -> {
+            if (day > today - 7) {
+                m.add("  &3- &f" + LocalDate.ofEpochDay(day) + ": &3" + r.getNewPlayers() + " &7/ &3" + r.getUniqueJoins() + " &7/ &3" + r.getConnections());
+            }
+        });
+        m.add(" ");
+
+        for (String str : m) {
+            sender.sendMessage(Text.colorize(str));
+        }
+    }
+
+    private void handleSlow(CommandSender sender) {
+        List<SlowOperation> entries = plugin.getDataManager().getSlowLog().getEntries();
+
+        List<String> m = new ArrayList<>();
+        m.add(HEADER);
+        m.add("&fSlow operations &7(most recent first)&f:");
+        if (entries.isEmpty()) {
+            m.add("  &7None recorded.");
+        }
+
+        long now = System.currentTimeMillis();
+        for (SlowOperation op : entries) {
+            m.add("  &3#" + op.getId() + " &f" + (op.getOperation() == null ? "-" : op.getOperation()) + " &7(" + TimeUtil.toShortForm((now - op.getTime()) / 1000L) + " ago)&f: &3" + formatMicros(op.getDurationMicros()) + " &7+ " + formatMicros(op.getConnectionAcquireMicros()) + " to acquire");
+            m.add("    &7" + abbreviate(op.getStatement(), 120) + (op.getBatchSize() > 0 ? " &8[batch of " + op.getBatchSize() + "]" : ""));
+            if (!op.getParameters().isEmpty()) {
+                m.add("    &8" + op.getParameters().stream().map(AnalyticsCommand::formatParameter).collect(Collectors.joining(", ", "[", "]")));
+            }
+        }
+        m.add(" ");
+
+        for (String str : m) {
+            sender.sendMessage(Text.colorize(str));
+        }
+    }
+
+    private void handleExplain(CommandSender sender, String[] args) {
+        int id;
+        try {
+            id = args.length == 2 ? Integer.parseInt(args[1].startsWith("#") ? args[1].substring(1) : args[1]) : -1;
+        } catch (NumberFormatException e) {
+            id = -1;
+        }
+        if (id < 0) {
+            sender.sendMessage(Text.colorize("&3[ANALYTICS] &fUsage: /analytics explain <id>"));
+            return;
+        }
+
+        int finalId = id;
+        plugin.getDataManager().explainSlowOperation(id).thenAcceptAsync(result -> {
+            if (!result.isPresent()) {
+                sender.sendMessage(Text.colorize("&3[ANALYTICS] &fNo slow operation with id #" + finalId + " has been recorded."));
+                return;
+            }
+
+            SlowOperation op = result.get();
+            List<String> m = new ArrayList<>();
+            m.add(HEADER);
+            m.add("&fPlan for &3#" + op.getId() + "&f:");
+            m.add("  &7" + op.getStatement());
+            if (op.getPlan() == null || op.getPlan().isEmpty()) {
+                m.add("  &7No plan available.");
+            } else {
+                for (String line : op.getPlan()) {
+                    m.add("  &3- &f" + line);
+                }
+            }
+            m.add(" ");
+
+            for (String str : m) {
+                sender.sendMessage(Text.colorize(str));
+            }
+        }, Schedulers.async());
+    }
+
+    private static String formatMicros(long micros) {
+        return BigDecimal.valueOf(micros).divide(BigDecimal.valueOf(1000), 1, RoundingMode.HALF_UP).toPlainString() + "ms";
+    }
+
+    private static String formatParameter(Object parameter) {
+        if (parameter instanceof byte[]) {
+            return "<" + ((byte[]) parameter).length + " bytes>";
+        }
+        return abbreviate(String.valueOf(parameter), 40);
+    }
+
+    private static String abbreviate(String s, int length) {
+        return s.length() <= length ? s : s.substring(0, length - 3) + "...";
+    }
+
+    private void handlePlayer(CommandSender sender, String username) {
+        plugin.getDataManager().getUuid(username)
+                .thenCompose(uuid -> uuid.isPresent() ? plugin.getDataManager().getPlayerData(uuid.get()) : CompletableFuture.completedFuture(Optional.<PlayerRecord>empty()))
+                .thenAcceptAsync(result -> {
+                    if (!result.isPresent()) {
+                        sender.sendMessage(Text.colorize("&3[ANALYTICS] &fNo data found for the username '" + username + "'."));
+                        return;
+                    }
+
+                    PlayerRecord r = result.get();
+                    long now = System.currentTimeMillis() / 1000L;
+
+                    List<String> m = new ArrayList<>();
+                    m.add(HEADER);
+                    m.add("&f" + r.getUsername() + " &7(" + r.getUuid() + ")&f:");
+                    m.add("  &3- &fFirst login: &3" + TimeUtil.toShortForm(now - r.getFirstLogin()) + " ago");
+                    m.add("  &3- &fLast login: &3" + TimeUtil.toShortForm(now - r.getLastLogin()) + " ago &7(" + r.getLastSeen() + ")");
+                    m.add("  &3- &fTimes connected: &3" + formatNumberShort(r.getTimesConnected()));
+                    m.add("  &3- &fTime played: &3" + TimeUtil.toShortForm(r.getMinutesPlayed() * 60L));
+                    m.add(" ");
+
+                    for (String str : m) {
+                        sender.sendMessage(Text.colorize(str));
+                    }
+                }, Schedulers.async());
+    }
+
+    private void handleTop(CommandSender sender, String[] args) {
+        String types = Arrays.stream(LeaderboardType.values()).map(LeaderboardType::getId).collect(Collectors.joining("|"));
+        LeaderboardType type = args.length >= 2 ? LeaderboardType.parse(args[1]).orElse(null) : null;
+        if (type == null || args.length > 3) {
+            sender.sendMessage(Text.colorize("&3[ANALYTICS] &fUsage: /analytics top <" + types + "> [page]"));
+            return;
+        }
+
+        int page = 1;
+        if (args.length == 3) {
+            try {
+                page = Integer.parseInt(args[2]);
+            } catch (NumberFormatException e) {
+                page = -1;
+            }
+            if (page < 1 || page > Leaderboards.MAX_PAGES) {
+                sender.sendMessage(Text.colorize("&3[ANALYTICS] &fThe page must be between 1 and " + Leaderboards.MAX_PAGES + "."));
+                return;
+            }
+        }
+
+        plugin.getDataManager().getLeaderboard(type, page).thenAcceptAsync(result -> {
+            if (!result.isPresent()) {
+                sender.sendMessage(Text.colorize("&3[ANALYTICS] &fUnable to retrieve leaderboard data."));
+                return;
+            }
+
+            LeaderboardPage p = result.get();
+            List<String> m = new ArrayList<>();
+            m.add(HEADER);
+            m.add("&f" + p.getType().getDisplayName() + " &7(page " + p.getPage() + "):");
+            if (p.getEntries().isEmpty()) {
+                m.add("  &7No entries.");
+            }
+
+            int rank = p.getFirstRank();
+            for (LeaderboardEntry entry : p.getEntries()) {
+                m.add("  &3" + rank++ + ". &f" + entry.getUsername() + ": &3" + formatLeaderboardValue(p.getType(), entry.getValue()));
+            }
+            if (p.isHasNext()) {
+                m.add("  &7Next page: /analytics top " + p.getType().getId() + " " + (p.getPage() + 1));
+            }
+            m.add(" ");
+
+            for (String str : m) {
+                sender.sendMessage(Text.colorize(str));
+            }
+        }, Schedulers.async());
+    }
+
+    private static String formatLeaderboardValue(LeaderboardType type, long value) {
+        switch (type) {
+            case PLAYTIME:
+                return TimeUtil.toShortForm(value * 60L);
+            case CONNECTIONS:
+                return formatNumberShort(value);
+            default:
+                return TimeUtil.toShortForm((System.currentTimeMillis() / 1000L) - value) + " ago";
+        }
+    }
+
+    private void handleRange(CommandSender sender, String fromArg, String toArg) {
+        LocalDate from;
+        LocalDate to;
+        try {
+            from = LocalDate.parse(fromArg);
+            to = LocalDate.parse(toArg);
+        } catch (DateTimeParseException e) {
+            sender.sendMessage(Text.colorize("&3[ANALYTICS] &fUsage: /analytics <from> <to> &7(dates as yyyy-mm-dd)"));
+            return;
+        }
+
+        if (to.isBefore(from)) {
+            sender.sendMessage(Text.colorize("&3[ANALYTICS] &fThe end date must not be before the start date."));
+            return;
+        }
+
+        sender.sendMessage(Text.colorize("&3[ANALYTICS] &fRetrieving monitoring data..."));
+
+        plugin.getDataManager().getDailyRollups(from, to).thenAcceptAsync(result -> {
+            if (!result.isPresent()) {
+                sender.sendMessage(Text.colorize("&3[ANALYTICS] &fUnable to retrieve monitoring data."));
+                return;
+            }
+
+            Map<String, DailyRollup> servers = result.get();
+            DailyRollup total = servers.values().stream().reduce(new DailyRollup(), DailyRollup::add);
+
+            List<String> m = new ArrayList<>();
+            m.add(HEADER);
+            m.add("&f" + from + " to " + to + ":");
+            m.add("  &3- &fNew players: &3" + formatNumberShort(total.getNewPlayers()));
+            m.add("  &3- &fPlayer-days (per server): &3" + formatNumberShort(total.getUniqueJoins()));
+            m.add("  &3- &fConnections: &3" + formatNumberShort(total.getConnections()));
+            m.add("  &3- &fTime played: &3" + TimeUtil.toShortForm(total.getMinutesPlayed() * 60L));
+            m.add(" ");
+
+            if (!servers.isEmpty()) {
+                BigDecimal totalConnections = BigDecimal.valueOf(Math.max(1, total.getConnections()));
+                m.add("&fConnections by server:");
+                servers.entrySet().stream()
+                        .sorted((o1, o2) -> Long.compare(o2.getValue().getConnections(), o1.getValue().getConnections()))
+                        .forEach(e -> m.add("  &3- &f" + e.getKey() + ": &3" + formatNumberShort(e.getValue().getConnections()) + " &7(" + formatPercent(totalConnections, e.getValue().getConnections()) + ")"));
+                m.add(" ");
+            }
+
+            for (String str : m) {
+                sender.sendMessage(Text.colorize(str));
+            }
+        }, Schedulers.async());
+    }
+
+    private static String formatPercent(BigDecimal total, long quot) {
+        return BigDecimal.valueOf(quot).multiply(BigDecimal.valueOf(100)).divide(total, BigDecimal.ROUND_HALF_UP).round(new MathContext(3, RoundingMode.HALF_UP)).toPlainString() + "%";
+    }
+
+    private static String formatMargin(double margin) {
+        return BigDecimal.valueOf(margin * 100d).setScale(1, RoundingMode.HALF_UP).toPlainString() + "%";
+    }
+
+    private static String formatNumberShort(long num) {
+        if (num >= 1000000000000000L) {
+            return (Math.floor(((float) num / 1000000000000000f) * 10f) / 10d) + "Q";
+        }
+        if (num >= 1000000000000L) {
+            return (Math.floor(((float) num / 1000000000000f) * 10f) / 10d) + "T";
+        }
+        if (num >= 1000000000L) {
+            return (Math.floor(((float) num / 1000000000f) * 10f) / 10d) + "B";
+        }
+        if (num >= 1000000) {
+            return (Math.floor(((float) num / 1000000L) * 10f) / 10d) + "M";
+        }
+        return NumberFormat.getNumberInstance(Locale.US).format(num);
+    }
+}
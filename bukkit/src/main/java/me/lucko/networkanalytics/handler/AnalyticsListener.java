@@ -0,0 +1,177 @@
+/*
+ * This file is part of NetworkAnalytics, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.networkanalytics.handler;
+
+import lombok.RequiredArgsConstructor;
+
+import me.lucko.helper.Events;
+import me.lucko.helper.Schedulers;
+import me.lucko.helper.metadata.Metadata;
+import me.lucko.helper.terminable.TerminableConsumer;
+import me.lucko.helper.terminable.module.TerminableModule;
+import me.lucko.networkanalytics.NetworkAnalytics;
+import me.lucko.networkanalytics.data.DataManager;
+import me.lucko.networkanalytics.eventlog.EventLog;
+import me.lucko.networkanalytics.session.LeaveResult;
+import me.lucko.networkanalytics.session.SessionTracker;
+
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerLoginEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+import protocolsupport.api.ProtocolSupportAPI;
+import protocolsupport.api.ProtocolVersion;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+@RequiredArgsConstructor
+public class AnalyticsListener implements TerminableModule {
+    private final DataManager dataManager;
+
+    // the log to record events to, or null if disabled
+    private final EventLog eventLog;
+
+    // stitches server switches into a single network session, or null if every login is a new session
+    private final SessionTracker sessionTracker;
+
+    @Override
+    public void setup(@Nonnull TerminableConsumer consumer) {
+        Events.subscribe(PlayerLoginEvent.class, EventPriority.MONITOR)
+                .filter(e -> e.getResult() == PlayerLoginEvent.Result.ALLOWED)
+                .handler(e -> {
+                    handleLogin(e.getPlayer().getUniqueId(), e.getPlayer().getName());
+                    Metadata.provideForPlayer(e.getPlayer()).put(NetworkAnalytics.CONNECTION_TIME_SECONDS, (System.currentTimeMillis() / 1000L));
+                })
+                .bindWith(consumer);
+
+        Events.subscribe(PlayerJoinEvent.class, EventPriority.MONITOR)
+                .handler(e -> {
+                    ProtocolVersion protocolVersion = ProtocolSupportAPI.getProtocolVersion(e.getPlayer());
+                    if (protocolVersion != null) {
+                        Metadata.provideForPlayer(e.getPlayer()).put(NetworkAnalytics.PROTOCOL_VERSION, protocolVersion);
+                    }
+                    if (eventLog != null) {
+                        eventLog.logVersion(e.getPlayer().getUniqueId(), protocolVersion == null ? -1 : protocolVersion.getId());
+                    }
+                })
+                .bindWith(consumer);
+
+        Events.subscribe(PlayerQuitEvent.class)
+                .handler(e -> {
+                    Long loginTime = Metadata.provideForPlayer(e.getPlayer()).getOrNull(NetworkAnalytics.CONNECTION_TIME_SECONDS);
+                    if (loginTime != null) {
+                        handleQuit(e.getPlayer().getUniqueId(), loginTime, System.currentTimeMillis() / 1000L);
+                    }
+                })
+                .bindWith(consumer);
+
+        if (sessionTracker != null) {
+            Schedulers.async().runRepeating(() -> sessionTracker.finishExpired(System.currentTimeMillis() / 1000L, this::writeSession), 20L, 20L).bindWith(consumer);
+
+            long heartbeatTicks = SessionTracker.HEARTBEAT_INTERVAL_SECONDS * 20L;
+            Schedulers.async().runRepeating(() -> sessionTracker.heartbeat(System.currentTimeMillis() / 1000L), heartbeatTicks, heartbeatTicks).bindWith(consumer);
+        }
+    }
+
+    /**
+     * Finishes any sessions still held open on this server.
+     *
+     * @return a future encapsulating the writes
+     */
+    public CompletableFuture<Void> finishSessions() {
+        if (sessionTracker == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return sessionTracker.finishAll(this::writeSession);
+    }
+
+    /**
+     * Handles a player login.
+     *
+     * @param uuid the players uuid
+     * @param username the players username
+     * @return a future encapsulating the write
+     */
+    public CompletableFuture<Void> handleLogin(UUID uuid, String username) {
+        if (eventLog != null) {
+            eventLog.logLogin(uuid, username);
+        }
+        if (sessionTracker == null) {
+            return dataManager.logPlayer(uuid, username);
+        }
+
+        return sessionTracker.join(uuid, System.currentTimeMillis() / 1000L).thenCompose(result -> {
+            if (result.hasPrevious()) {
+                writeSession(uuid, result.getPreviousStart(), result.getPreviousEnd());
+            }
+            if (result.isContinued()) {
+                return CompletableFuture.completedFuture(null);
+            }
+            return dataManager.logPlayer(uuid, username);
+        });
+    }
+
+    /**
+     * Handles a player quit.
+     *
+     * @param uuid the players uuid
+     * @param loginTime the time the player logged in, in unix seconds
+     * @param now the current time, in unix seconds
+     * @return a future encapsulating the write
+     */
+    public CompletableFuture<Boolean> handleQuit(UUID uuid, long loginTime, long now) {
+        if (eventLog != null) {
+            eventLog.logQuit(uuid, now - loginTime);
+        }
+        if (sessionTracker == null) {
+            return writeSession(uuid, loginTime, now);
+        }
+
+        return sessionTracker.leave(uuid, now).thenCompose(result -> {
+            if (result == LeaveResult.UNTRACKED) {
+                return writeSession(uuid, loginTime, now);
+            }
+            // either finished later by the tracker, or by the server the player moved to
+            return CompletableFuture.completedFuture(false);
+        });
+    }
+
+    private CompletableFuture<Boolean> writeSession(UUID uuid, long start, long end) {
+        long diff = end - start;
+        dataManager.recordSession(diff);
+
+        int mins = (int) TimeUnit.SECONDS.toMinutes(diff);
+        if (mins > 0) {
+            return dataManager.incrementPlayerMinutesPlayed(uuid, mins);
+        }
+        return CompletableFuture.completedFuture(false);
+    }
+}
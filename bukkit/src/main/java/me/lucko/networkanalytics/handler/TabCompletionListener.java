@@ -0,0 +1,139 @@
+/*
+ * This file is part of NetworkAnalytics, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.networkanalytics.handler;
+
+import lombok.RequiredArgsConstructor;
+
+import me.lucko.helper.Events;
+import me.lucko.helper.terminable.TerminableConsumer;
+import me.lucko.helper.terminable.module.TerminableModule;
+import me.lucko.networkanalytics.data.DataManager;
+import me.lucko.networkanalytics.data.leaderboard.LeaderboardType;
+
+import org.bukkit.command.CommandSender;
+import org.bukkit.event.server.TabCompleteEvent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Provides tab completion for the plugins commands.
+ *
+ * <p>Completions are formed only from in-memory data, so never block the main
+ * thread. Username completions from the storage are fetched in the background,
+ * and appear as the player continues typing.</p>
+ */
+@RequiredArgsConstructor
+public class TabCompletionListener implements TerminableModule {
+    private static final int MAX_COMPLETIONS = 20;
+    private static final List<String> ANALYTICS_SUBCOMMANDS = Arrays.asList("explain", "player", "replay", "slow", "top");
+
+    private final DataManager dataManager;
+
+    @Override
+    public void setup(@Nonnull TerminableConsumer consumer) {
+        Events.subscribe(TabCompleteEvent.class)
+                .handler(e -> {
+                    List<String> completions = complete(e.getSender(), e.getBuffer());
+                    if (completions != null) {
+                        e.setCompletions(completions);
+                    }
+                })
+                .bindWith(consumer);
+    }
+
+    private List<String> complete(CommandSender sender, String buffer) {
+        if (buffer.startsWith("/")) {
+            buffer = buffer.substring(1);
+        }
+
+        String[] parts = buffer.split(" ", -1);
+        if (parts.length < 2) {
+            return null;
+        }
+
+        String label = parts[0].toLowerCase(Locale.ROOT);
+        if (label.startsWith("networkanalytics:")) {
+            label = label.substring("networkanalytics:".length());
+        }
+        String[] args = Arrays.copyOfRange(parts, 1, parts.length);
+        String last = args[args.length - 1];
+
+        switch (label) {
+            case "playerversion":
+                if (args.length == 1 && sender.hasPermission("networkanalytics.playerversion")) {
+                    return dataManager.completeUsernames(last, MAX_COMPLETIONS);
+                }
+                return null;
+            case "analytics":
+                if (!sender.hasPermission("networkanalytics.view")) {
+                    return null;
+                }
+                if (args.length == 1) {
+                    return filter(subcommands(sender), last);
+                }
+                if (args.length == 2 && args[0].equalsIgnoreCase("top")) {
+                    List<String> types = new ArrayList<>();
+                    for (LeaderboardType type : LeaderboardType.values()) {
+                        types.add(type.getId());
+                    }
+                    return filter(types, last);
+                }
+                if (args.length == 2 && args[0].equalsIgnoreCase("player")) {
+                    return dataManager.completeUsernames(last, MAX_COMPLETIONS);
+                }
+                return null;
+            default:
+                return null;
+        }
+    }
+
+    private static List<String> subcommands(CommandSender sender) {
+        List<String> subcommands = new ArrayList<>(ANALYTICS_SUBCOMMANDS);
+        if (!sender.hasPermission("networkanalytics.replay")) {
+            subcommands.remove("replay");
+        }
+        if (!sender.hasPermission("networkanalytics.slowlog")) {
+            subcommands.remove("explain");
+            subcommands.remove("slow");
+        }
+        return subcommands;
+    }
+
+    private static List<String> filter(List<String> options, String prefix) {
+        List<String> matches = new ArrayList<>();
+        for (String option : options) {
+            if (option.regionMatches(true, 0, prefix, 0, prefix.length())) {
+                matches.add(option);
+            }
+        }
+        return matches;
+    }
+}
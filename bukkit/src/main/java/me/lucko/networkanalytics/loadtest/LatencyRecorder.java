@@ -0,0 +1,102 @@
+/*
+ * This file is part of NetworkAnalytics, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.networkanalytics.loadtest;
+
+import me.lucko.networkanalytics.data.sketch.QuantileSketch;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Records the latency of a single type of operation.
+ */
+public class LatencyRecorder {
+    private final String name;
+
+    // latencies in microseconds
+    private final QuantileSketch latencies = new QuantileSketch();
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    public LatencyRecorder(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Times the future returned by the given supplier, from submission to completion.
+     *
+     * @param operation the operation
+     * @param <T> the result type
+     * @return the future
+     */
+    public <T> CompletableFuture<T> time(Supplier<CompletableFuture<T>> operation) {
+        long start = System.nanoTime();
+        CompletableFuture<T> future = operation.get();
+        future.whenComplete((result, ex) -> record(start, ex == null));
+        return future;
+    }
+
+    /**
+     * Times the given action, which is run synchronously.
+     *
+     * @param action the action
+     */
+    public void timeSync(Runnable action) {
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            action.run();
+            success = true;
+        } finally {
+            record(start, success);
+        }
+    }
+
+    private void record(long start, boolean success) {
+        this.latencies.add((System.nanoTime() - start) / 1000d);
+        this.count.incrementAndGet();
+        if (!success) {
+            this.failures.incrementAndGet();
+        }
+    }
+
+    public long getCount() {
+        return this.count.get();
+    }
+
+    public long getFailures() {
+        return this.failures.get();
+    }
+
+    public double getQuantileMillis(double quantile) {
+        return this.latencies.getQuantile(quantile) / 1000d;
+    }
+}
@@ -0,0 +1,346 @@
+/*
+ * This file is part of NetworkAnalytics, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.networkanalytics.loadtest;
+
+import me.lucko.networkanalytics.channel.AnalyticsData;
+import me.lucko.networkanalytics.channel.NetworkSummary;
+import me.lucko.networkanalytics.data.DataManager;
+import me.lucko.networkanalytics.data.StatsHolder;
+import me.lucko.networkanalytics.data.slowlog.SlowOperationLog;
+import me.lucko.networkanalytics.data.storage.MemoryStorage;
+import me.lucko.networkanalytics.data.storage.SQLiteStorage;
+import me.lucko.networkanalytics.data.storage.Storage;
+import me.lucko.networkanalytics.handler.AnalyticsListener;
+import me.lucko.networkanalytics.roster.RosterStore;
+
+import protocolsupport.api.ProtocolVersion;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * A synthetic load generator, which simulates a full network of servers and
+ * players against in-process stand-ins for redis and sql.
+ *
+ * <p>Players log in and quit through the {@link AnalyticsListener} code paths,
+ * each server publishes its roster through a {@link LocalChannel}, and staff
+ * commands are simulated by periodically computing the network summary.</p>
+ *
+ * <p>Usage: {@code java me.lucko.networkanalytics.loadtest.LoadTest [--option=value...]}, see
+ * {@link #DEFAULTS} for the available options. The {@code loadtest} maven profile
+ * provides a preconfigured {@code exec:java} goal, e.g.</p>
+ *
+ * <pre>
+ *   mvn -Ploadtest -pl bukkit compile exec:java -Dexec.args="--servers=100 --players=50000"
+ * </pre>
+ */
+public final class LoadTest {
+
+    private static final Map<String, String> DEFAULTS;
+    static {
+        Map<String, String> defaults = new HashMap<>();
+        defaults.put("servers", "100"); // the number of backend servers
+        defaults.put("players", "50000"); // the number of players online at once
+        defaults.put("population", "200000"); // the number of distinct players
+        defaults.put("duration", "60"); // the length of the test, in seconds
+        defaults.put("session", "1800"); // the mean session length, in simulated seconds
+        defaults.put("time-scale", "60"); // simulated seconds per real second
+        defaults.put("storage", "memory"); // memory or sqlite
+        defaults.put("threads", "16"); // the size of the async pool
+        defaults.put("command-interval", "5"); // seconds between simulated staff commands
+        DEFAULTS = defaults;
+    }
+
+    private static final long TICK_MILLIS = 50;
+    private static final int PUBLISH_INTERVAL_TICKS = 90;
+    private static final String[] LOCALES = {"en_us", "en_gb", "de_de", "fr_fr", "es_es", "pt_br", "ru_ru", "pl_pl", "nl_nl", "undisclosed"};
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>(DEFAULTS);
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                System.err.println("Invalid argument: " + arg + " - expected --option=value");
+                System.exit(1);
+            }
+            String key = arg.substring(2, arg.indexOf('='));
+            if (!DEFAULTS.containsKey(key)) {
+                System.err.println("Unknown option: " + key + " - available: " + DEFAULTS.keySet());
+                System.exit(1);
+            }
+            options.put(key, arg.substring(arg.indexOf('=') + 1));
+        }
+
+        new LoadTest(options).run();
+        System.exit(0);
+    }
+
+    private final int serverCount;
+    private final int playerCount;
+    private final int population;
+    private final long durationSeconds;
+    private final long sessionSeconds;
+    private final long timeScale;
+    private final String storageType;
+    private final int threads;
+    private final long commandIntervalSeconds;
+
+    private final Random random = new Random();
+
+    private final List<SimulatedServer> servers = new ArrayList<>();
+    private final List<SimulatedPlayer> offline = new ArrayList<>();
+    private final List<SimulatedPlayer> everyone = new ArrayList<>();
+
+    private final RosterStore rosterStore = new RosterStore();
+    private final LocalChannel<AnalyticsData> channel = new LocalChannel<>(AnalyticsData.class);
+
+    private final LatencyRecorder logins = new LatencyRecorder("login");
+    private final LatencyRecorder quits = new LatencyRecorder("quit");
+    private final LatencyRecorder stats = new LatencyRecorder("stats");
+    private final LatencyRecorder summaries = new LatencyRecorder("summary");
+    private final LatencyRecorder lookups = new LatencyRecorder("lookup");
+
+    private DataManager dataManager;
+    private AnalyticsListener listener;
+
+    private long startMillis;
+    private long startSimSeconds;
+    private int tick = 0;
+
+    private LoadTest(Map<String, String> options) {
+        this.serverCount = Integer.parseInt(options.get("servers"));
+        this.playerCount = Integer.parseInt(options.get("players"));
+        this.population = Math.max(this.playerCount, Integer.parseInt(options.get("population")));
+        this.durationSeconds = Long.parseLong(options.get("duration"));
+        this.sessionSeconds = Long.parseLong(options.get("session"));
+        this.timeScale = Long.parseLong(options.get("time-scale"));
+        this.storageType = options.get("storage");
+        this.threads = Integer.parseInt(options.get("threads"));
+        this.commandIntervalSeconds = Long.parseLong(options.get("command-interval"));
+    }
+
+    private void run() throws Exception {
+        Storage storage;
+        switch (this.storageType.toLowerCase(Locale.ROOT)) {
+            case "memory":
+                storage = new MemoryStorage();
+                break;
+            case "sqlite":
+                File file = File.createTempFile("na-loadtest", ".db");
+                file.deleteOnExit();
+                storage = new SQLiteStorage(file);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown storage type: " + this.storageType);
+        }
+
+        AtomicInteger threadId = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(this.threads, this.threads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "na-loadtest-async-" + threadId.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.dataManager = new DataManager(storage, "loadtest", executor, 10000, 0, new SlowOperationLog(250, 50));
+        this.dataManager.init(Logger.getLogger("loadtest")).join();
+        this.listener = new AnalyticsListener(this.dataManager, null, null);
+        this.channel.subscribe(this.rosterStore::accept);
+
+        System.out.println("Simulating " + this.playerCount + " players (" + this.population + " distinct) across " + this.serverCount + " servers for " + this.durationSeconds + "s using " + storage.getName() + " storage...");
+
+        ProtocolVersion[] versions = ProtocolVersion.values();
+        for (int i = 0; i < this.population; i++) {
+            SimulatedPlayer player = new SimulatedPlayer(UUID.randomUUID(), "player" + i, versions[this.random.nextInt(versions.length)], LOCALES[this.random.nextInt(LOCALES.length)]);
+            this.everyone.add(player);
+            this.offline.add(player);
+        }
+        for (int i = 0; i < this.serverCount; i++) {
+            this.servers.add(new SimulatedServer("server-" + i));
+        }
+
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        Map<Long, Long> allocatedAtStart = allocatedBytes(threadBean);
+
+        this.startMillis = System.currentTimeMillis();
+        this.startSimSeconds = this.startMillis / 1000L;
+
+        // initial login wave
+        for (int i = 0; i < this.playerCount; i++) {
+            login(this.servers.get(i % this.serverCount), this.startSimSeconds);
+        }
+
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2, r -> {
+            Thread thread = new Thread(r, "na-loadtest-driver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::tick, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::runCommand, this.commandIntervalSeconds, this.commandIntervalSeconds, TimeUnit.SECONDS);
+
+        for (long elapsed = 10; elapsed <= this.durationSeconds; elapsed += 10) {
+            Thread.sleep(10000L);
+            System.out.println("[" + elapsed + "s] logins=" + this.logins.getCount() + " quits=" + this.quits.getCount() + " online=" + this.rosterStore.countPlayers() + " messages=" + this.channel.getPublished());
+        }
+        Thread.sleep((this.durationSeconds % 10) * 1000L);
+
+        scheduler.shutdown();
+        scheduler.awaitTermination(30, TimeUnit.SECONDS);
+
+        // wait for queued writes to complete, but measure before the pool threads exit
+        while (executor.getActiveCount() != 0 || !executor.getQueue().isEmpty()) {
+            Thread.sleep(10L);
+        }
+
+        double elapsedSeconds = (System.currentTimeMillis() - this.startMillis) / 1000d;
+        long allocated = allocatedSince(threadBean, allocatedAtStart);
+
+        executor.shutdown();
+        this.dataManager.shutdown();
+        report(elapsedSeconds, allocated);
+    }
+
+    private long simNow() {
+        return this.startSimSeconds + ((System.currentTimeMillis() - this.startMillis) * this.timeScale) / 1000L;
+    }
+
+    private void login(SimulatedServer server, long now) {
+        int index = this.random.nextInt(this.offline.size());
+        int last = this.offline.size() - 1;
+        SimulatedPlayer player = this.offline.get(index);
+        this.offline.set(index, this.offline.get(last));
+        this.offline.remove(last);
+
+        player.setLoginTime(now);
+        server.add(player);
+        this.logins.time(() -> this.listener.handleLogin(player.getUuid(), player.getUsername()));
+    }
+
+    private void tick() {
+        try {
+            long now = simNow();
+            double quitChance = ((double) TICK_MILLIS * this.timeScale / 1000d) / this.sessionSeconds;
+
+            for (int i = 0; i < this.servers.size(); i++) {
+                SimulatedServer server = this.servers.get(i);
+
+                // quit some players, and replace them with others on a random server
+                double expected = server.getOnlineCount() * quitChance;
+                int leaving = (int) expected + (this.random.nextDouble() < expected - (int) expected ? 1 : 0);
+                for (int j = 0; j < leaving && server.getOnlineCount() > 0; j++) {
+                    SimulatedPlayer player = server.removeRandom(this.random);
+                    this.quits.time(() -> this.listener.handleQuit(player.getUuid(), player.getLoginTime(), now));
+                    this.offline.add(player);
+                    login(this.servers.get(this.random.nextInt(this.servers.size())), now);
+                }
+
+                // each server publishes its roster every 4.5 seconds, staggered
+                if ((this.tick + i) % PUBLISH_INTERVAL_TICKS == 0) {
+                    this.channel.publish(server.formData(System.currentTimeMillis() / 1000L));
+                }
+            }
+
+            this.tick++;
+        } catch (Throwable t) {
+            t.printStackTrace();
+        }
+    }
+
+    private void runCommand() {
+        try {
+            StatsHolder[] holder = new StatsHolder[1];
+            this.stats.time(() -> this.dataManager.getStats().thenApply(s -> holder[0] = s.orElse(null))).join();
+            if (holder[0] != null) {
+                this.summaries.timeSync(() -> NetworkSummary.compute("loadtest", this.rosterStore, holder[0], false));
+            }
+
+            SimulatedPlayer target = this.everyone.get(this.random.nextInt(this.everyone.size()));
+            this.lookups.timeSync(() -> this.rosterStore.find(target.getUsername()));
+        } catch (Throwable t) {
+            t.printStackTrace();
+        }
+    }
+
+    private void report(double elapsedSeconds, long allocatedBytes) {
+        System.out.println();
+        System.out.println(String.format("%-10s %12s %12s %12s %12s %10s", "operation", "count", "ops/s", "p50 (ms)", "p99 (ms)", "failures"));
+        for (LatencyRecorder recorder : Arrays.asList(this.logins, this.quits, this.stats, this.summaries, this.lookups)) {
+            System.out.println(String.format("%-10s %12d %12.1f %12.3f %12.3f %10d",
+                    recorder.getName(),
+                    recorder.getCount(),
+                    recorder.getCount() / elapsedSeconds,
+                    recorder.getQuantileMillis(0.5),
+                    recorder.getQuantileMillis(0.99),
+                    recorder.getFailures()
+            ));
+        }
+
+        System.out.println();
+        long published = this.channel.getPublished();
+        long bytes = this.channel.getBytes();
+        System.out.println(String.format("messages: %d published (%.1f/s), %.1f KiB/s published", published, published / elapsedSeconds, (bytes / 1024d) / elapsedSeconds));
+        System.out.println(String.format("          %d deliveries/s network-wide if every server subscribes", (long) ((published * this.serverCount) / elapsedSeconds)));
+        System.out.println(String.format("allocation: %.1f MiB total, %.1f MiB/s", allocatedBytes / 1048576d, (allocatedBytes / 1048576d) / elapsedSeconds));
+    }
+
+    private static Map<Long, Long> allocatedBytes(ThreadMXBean bean) {
+        Map<Long, Long> allocated = new HashMap<>();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return allocated;
+        }
+
+        long[] ids = bean.getAllThreadIds();
+        long[] bytes = ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(ids);
+        for (int i = 0; i < ids.length; i++) {
+            if (bytes[i] >= 0) {
+                allocated.put(ids[i], bytes[i]);
+            }
+        }
+        return allocated;
+    }
+
+    private static long allocatedSince(ThreadMXBean bean, Map<Long, Long> start) {
+        long total = 0;
+        for (Map.Entry<Long, Long> e : allocatedBytes(bean).entrySet()) {
+            total += e.getValue() - start.getOrDefault(e.getKey(), 0L);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * This file is part of NetworkAnalytics, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.networkanalytics.loadtest;
+
+import com.google.gson.Gson;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * An in-process stand-in for a redis messaging channel.
+ *
+ * <p>Messages are encoded to json and decoded again for each subscriber, as they
+ * would be when sent through redis, so the encoding cost & message volume are
+ * representative.</p>
+ *
+ * @param <T> the message type
+ */
+public class LocalChannel<T> {
+    private static final Gson GSON = new Gson();
+
+    private final Class<T> type;
+    private final List<Consumer<T>> subscribers = new CopyOnWriteArrayList<>();
+
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+
+    public LocalChannel(Class<T> type) {
+        this.type = type;
+    }
+
+    public void subscribe(Consumer<T> subscriber) {
+        this.subscribers.add(subscriber);
+    }
+
+    public void publish(T message) {
+        String encoded = GSON.toJson(message, this.type);
+        this.published.incrementAndGet();
+        this.bytes.addAndGet(encoded.getBytes(StandardCharsets.UTF_8).length);
+
+        for (Consumer<T> subscriber : this.subscribers) {
+            subscriber.accept(GSON.fromJson(encoded, this.type));
+            this.delivered.incrementAndGet();
+        }
+    }
+
+    public long getPublished() {
+        return this.published.get();
+    }
+
+    public long getDelivered() {
+        return this.delivered.get();
+    }
+
+    public long getBytes() {
+        return this.bytes.get();
+    }
+}
@@ -23,29 +23,28 @@
  *  SOFTWARE.
  */
 
-package me.lucko.networkanalytics;
+package me.lucko.networkanalytics.loadtest;
 
-import me.lucko.helper.metadata.MetadataKey;
-import me.lucko.networkanalytics.channel.AnalyticsData;
-import me.lucko.networkanalytics.data.DataManager;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
 
 import protocolsupport.api.ProtocolVersion;
 
-import java.util.Map;
-
-public interface NetworkAnalytics {
-
-    MetadataKey<Long> CONNECTION_TIME_SECONDS = MetadataKey.createLongKey("na-login-time");
-
-    MetadataKey<ProtocolVersion> PROTOCOL_VERSION = MetadataKey.create("p-ver", ProtocolVersion.class);
-
-    /**
-     * Gets the analytics data manager.
-     *
-     * @return the data manager
-     */
-    DataManager getDataManager();
-
-    Map<String, AnalyticsData> getAnalyticsDataMap();
+import java.util.UUID;
 
+/**
+ * A simulated player identity.
+ */
+@Getter
+@RequiredArgsConstructor
+class SimulatedPlayer {
+    private final UUID uuid;
+    private final String username;
+    private final ProtocolVersion version;
+    private final String locale;
+
+    // the simulated time the player logged in, in unix seconds
+    @Setter
+    private long loginTime;
 }
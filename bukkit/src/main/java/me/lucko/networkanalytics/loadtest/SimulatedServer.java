@@ -0,0 +1,90 @@
+/*
+ * This file is part of NetworkAnalytics, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.networkanalytics.loadtest;
+
+import me.lucko.networkanalytics.channel.AnalyticsData;
+import me.lucko.networkanalytics.channel.OnlinePlayerRecord;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A simulated backend server, holding the players currently connected to it.
+ *
+ * <p>Only accessed from the load test driver thread.</p>
+ */
+class SimulatedServer {
+    private final String id;
+    private final List<SimulatedPlayer> online = new ArrayList<>();
+
+    SimulatedServer(String id) {
+        this.id = id;
+    }
+
+    String getId() {
+        return this.id;
+    }
+
+    int getOnlineCount() {
+        return this.online.size();
+    }
+
+    void add(SimulatedPlayer player) {
+        this.online.add(player);
+    }
+
+    /**
+     * Removes a random player from the server
+     *
+     * @param random the random source
+     * @return the removed player
+     */
+    SimulatedPlayer removeRandom(Random random) {
+        int index = random.nextInt(this.online.size());
+        int last = this.online.size() - 1;
+
+        // swap with the last element, to avoid shifting the list
+        SimulatedPlayer player = this.online.get(index);
+        this.online.set(index, this.online.get(last));
+        this.online.remove(last);
+        return player;
+    }
+
+    /**
+     * Forms the roster message the plugin would publish for this server
+     *
+     * @param time the current time, in unix seconds
+     * @return the message
+     */
+    AnalyticsData formData(long time) {
+        List<OnlinePlayerRecord> records = new ArrayList<>(this.online.size());
+        for (SimulatedPlayer p : this.online) {
+            records.add(new OnlinePlayerRecord(p.getUuid(), p.getUsername(), p.getVersion(), p.getLocale()));
+        }
+        return new AnalyticsData(this.id, time, records);
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * This file is part of NetworkAnalytics, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.networkanalytics.roster;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns locale strings to compact numeric ids.
+ *
+ * <p>Locales are sent by clients, so the table is capped - once full, any new
+ * locales are mapped to {@link #UNKNOWN}.</p>
+ */
+public final class LocaleTable {
+
+    /**
+     * The id used for unknown locales
+     */
+    public static final short UNKNOWN = -1;
+
+    private static final int MAX_SIZE = 1024;
+
+    private final Map<String, Short> ids = new ConcurrentHashMap<>();
+    private volatile String[] locales = new String[0];
+
+    /**
+     * Gets the id for the given locale, assigning a new one if necessary
+     *
+     * @param locale the locale
+     * @return the id
+     */
+    public short intern(String locale) {
+        if (locale == null) {
+            return UNKNOWN;
+        }
+
+        Short id = this.ids.get(locale);
+        if (id != null) {
+            return id;
+        }
+
+        synchronized (this) {
+            id = this.ids.get(locale);
+            if (id != null) {
+                return id;
+            }
+
+            String[] current = this.locales;
+            if (current.length >= MAX_SIZE) {
+                return UNKNOWN;
+            }
+
+            short newId = (short) current.length;
+            String[] updated = Arrays.copyOf(current, current.length + 1);
+            updated[newId] = locale;
+
+            // publish the array before the id, so readers never see an id they can't resolve
+            this.locales = updated;
+            this.ids.put(locale, newId);
+            return newId;
+        }
+    }
+
+    /**
+     * Gets the locale with the given id
+     *
+     * @param id the id
+     * @return the locale, or null if the id is unknown
+     */
+    public String get(int id) {
+        String[] locales = this.locales;
+        if (id < 0 || id >= locales.length) {
+            return null;
+        }
+        return locales[id];
+    }
+
+    /**
+     * Gets the number of locales currently in the table
+     *
+     * @return the size
+     */
+    public int size() {
+        return this.locales.length;
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * This file is part of NetworkAnalytics, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.networkanalytics.roster;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import me.lucko.networkanalytics.channel.AnalyticsData;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds the latest {@link ServerRoster} received from each server on the network.
+ */
+public class RosterStore {
+
+    @Getter
+    private final LocaleTable localeTable = new LocaleTable();
+    private final Map<String, ServerRoster> rosters = new ConcurrentHashMap<>();
+
+    /**
+     * Records a received analytics message, replacing any previous roster for the server.
+     *
+     * @param data the message
+     * @return the new roster
+     */
+    public ServerRoster accept(AnalyticsData data) {
+        ServerRoster roster = ServerRoster.of(data, this.localeTable);
+        this.rosters.put(roster.getServerId(), roster);
+        return roster;
+    }
+
+    /**
+     * Removes any rosters sent before the given time
+     *
+     * @param expiry the expiry time, in unix seconds
+     * @return true if any rosters were removed
+     */
+    public boolean expire(long expiry) {
+        return this.rosters.values().removeIf(roster -> roster.getTimeSent() < expiry);
+    }
+
+    public Collection<ServerRoster> getRosters() {
+        return Collections.unmodifiableCollection(this.rosters.values());
+    }
+
+    public Optional<ServerRoster> getRoster(String serverId) {
+        return Optional.ofNullable(this.rosters.get(serverId));
+    }
+
+    /**
+     * Gets the total number of players online across all servers
+     *
+     * @return the number of players
+     */
+    public int countPlayers() {
+        int count = 0;
+        for (ServerRoster roster : this.rosters.values()) {
+            count += roster.getOnlineCount();
+        }
+        return count;
+    }
+
+    /**
+     * Gets if any of the rosters only hold a sample of the players online.
+     *
+     * <p>If so, the exact counts are incomplete, and player lookups may miss players.</p>
+     *
+     * @return if any rosters are partial
+     */
+    public boolean isPartial() {
+        for (ServerRoster roster : this.rosters.values()) {
+            if (roster.isPartial()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void forEach(RosterVisitor visitor) {
+        for (ServerRoster roster : this.rosters.values()) {
+            roster.forEach(visitor);
+        }
+    }
+
+    /**
+     * Counts the number of players on each protocol version.
+     *
+     * @return an array indexed by version ordinal, with the final element used for unknown versions
+     * @see ServerRoster#countVersions(int[])
+     */
+    public int[] countVersions() {
+        int[] counts = new int[ServerRoster.versionCount() + 1];
+        for (ServerRoster roster : this.rosters.values()) {
+            roster.countVersions(counts);
+        }
+        return counts;
+    }
+
+    /**
+     * Counts the number of players using each locale.
+     *
+     * @return an array indexed by locale id, with the final element used for unknown locales
+     * @see ServerRoster#countLocales(int[])
+     */
+    public int[] countLocales() {
+        int[] counts = new int[this.localeTable.size() + 1];
+        for (ServerRoster roster : this.rosters.values()) {
+            roster.countLocales(counts);
+        }
+        return counts;
+    }
+
+    /**
+     * Estimates the proportion of players on each protocol version from the samples
+     * sent by each server, using the full roster for servers which didn't send one.
+     *
+     * <p>The cost is proportional to the sample size, rather than the number of players.</p>
+     *
+     * @return the estimate, with categories indexed as in {@link #countVersions()}
+     */
+    public StratifiedEstimate estimateVersions() {
+        int categories = ServerRoster.versionCount() + 1;
+        StratifiedEstimate estimate = new StratifiedEstimate(categories);
+        for (ServerRoster roster : this.rosters.values()) {
+            ServerRoster sample = roster.getSample().orElse(roster);
+            int[] counts = new int[categories];
+            sample.countVersions(counts);
+            estimate.addStratum(roster.getOnlineCount(), sample.size(), counts);
+        }
+        return estimate;
+    }
+
+    /**
+     * Estimates the proportion of players using each locale.
+     *
+     * @return the estimate, with categories indexed as in {@link #countLocales()}
+     * @see #estimateVersions()
+     */
+    public StratifiedEstimate estimateLocales() {
+        int categories = this.localeTable.size() + 1;
+        StratifiedEstimate estimate = new StratifiedEstimate(categories);
+        for (ServerRoster roster : this.rosters.values()) {
+            ServerRoster sample = roster.getSample().orElse(roster);
+            int[] counts = new int[categories];
+            sample.countLocales(counts);
+            estimate.addStratum(roster.getOnlineCount(), sample.size(), counts);
+        }
+        return estimate;
+    }
+
+    /**
+     * Searches for an online player by username or uuid.
+     *
+     * <p>Only the sampled players of {@link ServerRoster#isPartial() partial} rosters can be found.</p>
+     *
+     * @param usernameOrUuid the username or uuid
+     * @return the match, if found
+     */
+    public Optional<Match> find(String usernameOrUuid) {
+        UUID uuid = parseUuid(usernameOrUuid);
+        for (ServerRoster roster : this.rosters.values()) {
+            int index = uuid == null ? roster.indexOfUsername(usernameOrUuid) : roster.indexOf(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+            if (index != -1) {
+                return Optional.of(new Match(roster, index));
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Materializes the held rosters as {@link AnalyticsData} messages.
+     *
+     * @return a map of server id to message
+     */
+    public Map<String, AnalyticsData> toAnalyticsData() {
+        Map<String, AnalyticsData> map = new HashMap<>();
+        for (ServerRoster roster : this.rosters.values()) {
+            map.put(roster.getServerId(), roster.toAnalyticsData());
+        }
+        return Collections.unmodifiableMap(map);
+    }
+
+    private static UUID parseUuid(String s) {
+        if (s.length() != 36) {
+            return null;
+        }
+        try {
+            return UUID.fromString(s);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * A reference to a player within a roster
+     */
+    @Getter
+    @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+    public static final class Match {
+        private final ServerRoster roster;
+        private final int index;
+    }
+}
@@ -0,0 +1,390 @@
+/*
+ * This file is part of NetworkAnalytics, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.networkanalytics.roster;
+
+import lombok.Getter;
+
+import me.lucko.networkanalytics.channel.AnalyticsData;
+import me.lucko.networkanalytics.channel.OnlinePlayerRecord;
+
+import protocolsupport.api.ProtocolVersion;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * An immutable, columnar copy of the players online on a single server.
+ *
+ * <p>Each player is represented by an index into a set of primitive arrays,
+ * rather than by an object per player. Incoming messages are still decoded
+ * into a list of {@link OnlinePlayerRecord}s by the channel, which is only
+ * held until the roster is built from it.</p>
+ */
+public final class ServerRoster {
+
+    /**
+     * The ordinal used for unknown protocol versions
+     */
+    public static final short UNKNOWN_VERSION = -1;
+
+    private static final ProtocolVersion[] VERSIONS = ProtocolVersion.values();
+    private static final Map<String, Short> VERSION_ORDINALS;
+    static {
+        Map<String, Short> ordinals = new HashMap<>();
+        for (ProtocolVersion version : VERSIONS) {
+            ordinals.put(version.name(), (short) version.ordinal());
+        }
+        VERSION_ORDINALS = Collections.unmodifiableMap(ordinals);
+    }
+
+    /**
+     * Gets the number of known protocol versions
+     *
+     * @return the number of versions
+     */
+    public static int versionCount() {
+        return VERSIONS.length;
+    }
+
+    /**
+     * Gets the protocol version with the given ordinal
+     *
+     * @param ordinal the ordinal
+     * @return the version, or null if unknown
+     */
+    public static ProtocolVersion versionByOrdinal(int ordinal) {
+        if (ordinal < 0 || ordinal >= VERSIONS.length) {
+            return null;
+        }
+        return VERSIONS[ordinal];
+    }
+
+    /**
+     * Creates a roster from a received analytics message
+     *
+     * @param data the message
+     * @param locales the locale table
+     * @return a new roster
+     */
+    public static ServerRoster of(AnalyticsData data, LocaleTable locales) {
+        List<OnlinePlayerRecord> players = data.getPlayers();
+        int onlineCount = data.getOnlineCount();
+        if (players.size() < onlineCount) {
+            // the server only sent a sample of its players, which stands in for the full roster
+            return build(data.getServerId(), data.getTimeSent(), players, locales, onlineCount, true, null);
+        }
+
+        ServerRoster sample = null;
+        if (data.getSample() != null && data.getSample() != players) {
+            sample = build(data.getServerId(), data.getTimeSent(), data.getSample(), locales, data.getSample().size(), false, null);
+        }
+
+        return build(data.getServerId(), data.getTimeSent(), players, locales, onlineCount, false, sample);
+    }
+
+    private static ServerRoster build(String serverId, long timeSent, List<OnlinePlayerRecord> players, LocaleTable locales, int onlineCount, boolean partial, ServerRoster sample) {
+        int size = players.size();
+
+        long[] uuidMost = new long[size];
+        long[] uuidLeast = new long[size];
+        short[] versions = new short[size];
+        short[] localeIds = new short[size];
+        int[] nameOffsets = new int[size + 1];
+
+        byte[][] encodedNames = new byte[size][];
+        int nameLength = 0;
+
+        for (int i = 0; i < size; i++) {
+            OnlinePlayerRecord record = players.get(i);
+
+            UUID uuid = record.getUuid();
+            if (uuid != null) {
+                uuidMost[i] = uuid.getMostSignificantBits();
+                uuidLeast[i] = uuid.getLeastSignificantBits();
+            }
+
+            String versionName = record.getVersionName();
+            Short ordinal = versionName == null ? null : VERSION_ORDINALS.get(versionName);
+            versions[i] = ordinal == null ? UNKNOWN_VERSION : ordinal;
+
+            localeIds[i] = locales.intern(record.getLocale().orElse(null));
+
+            String username = record.getUsername();
+            byte[] encoded = username == null ? new byte[0] : username.getBytes(StandardCharsets.UTF_8);
+            encodedNames[i] = encoded;
+            nameLength += encoded.length;
+        }
+
+        byte[] names = new byte[nameLength];
+        int offset = 0;
+        for (int i = 0; i < size; i++) {
+            nameOffsets[i] = offset;
+            System.arraycopy(encodedNames[i], 0, names, offset, encodedNames[i].length);
+            offset += encodedNames[i].length;
+        }
+        nameOffsets[size] = offset;
+
+        return new ServerRoster(serverId, timeSent, locales, size, uuidMost, uuidLeast, versions, localeIds, names, nameOffsets, onlineCount, partial, sample);
+    }
+
+    @Getter
+    private final String serverId;
+    @Getter
+    private final long timeSent;
+    private final LocaleTable localeTable;
+
+    private final int size;
+    private final long[] uuidMost;
+    private final long[] uuidLeast;
+    private final short[] versions;
+    private final short[] locales;
+    private final byte[] names;
+    private final int[] nameOffsets;
+
+    // the number of players online, as reported by the server
+    @Getter
+    private final int onlineCount;
+
+    // if the roster only holds a random sample of the players online
+    @Getter
+    private final boolean partial;
+
+    // a random sample of the players online, if the server sent one alongside its full roster
+    private final ServerRoster sample;
+
+    private ServerRoster(String serverId, long timeSent, LocaleTable localeTable, int size, long[] uuidMost, long[] uuidLeast, short[] versions, short[] locales, byte[] names, int[] nameOffsets, int onlineCount, boolean partial, ServerRoster sample) {
+        this.serverId = serverId;
+        this.timeSent = timeSent;
+        this.localeTable = localeTable;
+        this.size = size;
+        this.uuidMost = uuidMost;
+        this.uuidLeast = uuidLeast;
+        this.versions = versions;
+        this.locales = locales;
+        this.names = names;
+        this.nameOffsets = nameOffsets;
+        this.onlineCount = onlineCount;
+        this.partial = partial;
+        this.sample = sample;
+    }
+
+    /**
+     * Gets the number of players held in the roster.
+     *
+     * <p>For a {@link #isPartial() partial} roster, this is the size of the sample,
+     * rather than the number of players online.</p>
+     *
+     * @return the number of players held
+     */
+    public int size() {
+        return this.size;
+    }
+
+    public long getUuidMostSignificantBits(int index) {
+        return this.uuidMost[index];
+    }
+
+    public long getUuidLeastSignificantBits(int index) {
+        return this.uuidLeast[index];
+    }
+
+    public UUID getUuid(int index) {
+        return new UUID(this.uuidMost[index], this.uuidLeast[index]);
+    }
+
+    public String getUsername(int index) {
+        int start = this.nameOffsets[index];
+        return new String(this.names, start, this.nameOffsets[index + 1] - start, StandardCharsets.UTF_8);
+    }
+
+    public int getVersionOrdinal(int index) {
+        return this.versions[index];
+    }
+
+    public ProtocolVersion getVersion(int index) {
+        return versionByOrdinal(this.versions[index]);
+    }
+
+    public int getLocaleId(int index) {
+        return this.locales[index];
+    }
+
+    public String getLocale(int index) {
+        return this.localeTable.get(this.locales[index]);
+    }
+
+    /**
+     * Gets if the username at the given index matches the given name, ignoring case.
+     *
+     * <p>Usernames are almost always ASCII, so the comparison is performed
+     * against the encoded bytes directly, falling back to decoding the name if
+     * either contains other characters.</p>
+     *
+     * @param index the index
+     * @param username the username to compare against
+     * @return true if the username matches
+     */
+    public boolean usernameEqualsIgnoreCase(int index, String username) {
+        int start = this.nameOffsets[index];
+        int length = this.nameOffsets[index + 1] - start;
+        int common = Math.min(length, username.length());
+
+        for (int i = 0; i < common; i++) {
+            int a = this.names[start + i] & 0xFF;
+            int b = username.charAt(i);
+            if (a >= 0x80 || b >= 0x80) {
+                // not ascii, fallback to a full comparison
+                return getUsername(index).equalsIgnoreCase(username);
+            }
+            if (a != b && toLowerAscii(a) != toLowerAscii(b)) {
+                return false;
+            }
+        }
+        if (length == username.length()) {
+            return true;
+        }
+
+        // non-ascii characters are encoded as several bytes, so different
+        // lengths only rule out a match if the rest of both names is ascii
+        for (int i = common; i < length; i++) {
+            if ((this.names[start + i] & 0xFF) >= 0x80) {
+                return getUsername(index).equalsIgnoreCase(username);
+            }
+        }
+        for (int i = common; i < username.length(); i++) {
+            if (username.charAt(i) >= 0x80) {
+                return getUsername(index).equalsIgnoreCase(username);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the index of a player with the given uuid
+     *
+     * @param most the most significant bits of the uuid
+     * @param least the least significant bits of the uuid
+     * @return the index, or -1 if the player isn't present
+     */
+    public int indexOf(long most, long least) {
+        for (int i = 0; i < this.size; i++) {
+            if (this.uuidMost[i] == most && this.uuidLeast[i] == least) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the index of a player with the given username
+     *
+     * @param username the username
+     * @return the index, or -1 if the player isn't present
+     */
+    public int indexOfUsername(String username) {
+        for (int i = 0; i < this.size; i++) {
+            if (usernameEqualsIgnoreCase(i, username)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public void forEach(RosterVisitor visitor) {
+        for (int i = 0; i < this.size; i++) {
+            visitor.visit(this, i);
+        }
+    }
+
+    /**
+     * Adds the number of players on each protocol version to the given array.
+     *
+     * <p>The array is indexed by version ordinal, with the final element used
+     * for unknown versions.</p>
+     *
+     * @param counts the array to add to, of length {@link #versionCount()} + 1
+     */
+    public void countVersions(int[] counts) {
+        int unknown = counts.length - 1;
+        for (int i = 0; i < this.size; i++) {
+            short version = this.versions[i];
+            counts[version < 0 || version >= unknown ? unknown : version]++;
+        }
+    }
+
+    /**
+     * Adds the number of players using each locale to the given array.
+     *
+     * <p>The array is indexed by locale id, with the final element used
+     * for unknown locales.</p>
+     *
+     * @param counts the array to add to
+     */
+    public void countLocales(int[] counts) {
+        int unknown = counts.length - 1;
+        for (int i = 0; i < this.size; i++) {
+            short locale = this.locales[i];
+            counts[locale < 0 || locale >= unknown ? unknown : locale]++;
+        }
+    }
+
+    /**
+     * Gets the random sample of players sent by the server, if present.
+     *
+     * <p>A partial roster is its own sample.</p>
+     *
+     * @return the sample
+     */
+    public Optional<ServerRoster> getSample() {
+        return this.partial ? Optional.of(this) : Optional.ofNullable(this.sample);
+    }
+
+    /**
+     * Converts this roster back to an {@link AnalyticsData} message.
+     *
+     * @return a message
+     */
+    public AnalyticsData toAnalyticsData() {
+        List<OnlinePlayerRecord> players = new ArrayList<>(this.size);
+        for (int i = 0; i < this.size; i++) {
+            players.add(new OnlinePlayerRecord(getUuid(i), getUsername(i), getVersion(i), getLocale(i)));
+        }
+        if (this.partial) {
+            return new AnalyticsData(this.serverId, this.timeSent, players, this.onlineCount, null);
+        }
+        return new AnalyticsData(this.serverId, this.timeSent, players);
+    }
+
+    private static int toLowerAscii(int c) {
+        return c >= 'A' && c <= 'Z' ? c + 32 : c;
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * This file is part of NetworkAnalytics, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.networkanalytics.roster;
+
+/**
+ * Estimates the proportion of players in each category (e.g. protocol version)
+ * from a stratified sample - one simple random sample per server.
+ *
+ * <p>Servers which send every player are added as a stratum sampled in full,
+ * contributing no sampling error.</p>
+ */
+public final class StratifiedEstimate {
+
+    // the z-score for a 95% confidence interval
+    private static final double Z_95 = 1.96;
+
+    // sum of N_h * p_h for each category
+    private final double[] totals;
+    // sum of N_h^2 * Var(p_h) for each category
+    private final double[] variances;
+    private long population = 0;
+
+    public StratifiedEstimate(int categories) {
+        this.totals = new double[categories];
+        this.variances = new double[categories];
+    }
+
+    /**
+     * Adds the sample taken from a single server
+     *
+     * @param populationSize the number of players on the server
+     * @param sampleSize the number of players sampled
+     * @param counts the number of sampled players in each category
+     */
+    public void addStratum(int populationSize, int sampleSize, int[] counts) {
+        if (populationSize <= 0 || sampleSize <= 0) {
+            return;
+        }
+
+        this.population += populationSize;
+        double n = sampleSize;
+        double bigN = populationSize;
+        double fpc = 1d - Math.min(1d, n / bigN);
+
+        for (int i = 0; i < this.totals.length && i < counts.length; i++) {
+            double p = counts[i] / n;
+            this.totals[i] += bigN * p;
+            if (sampleSize > 1) {
+                this.variances[i] += bigN * bigN * fpc * p * (1d - p) / (n - 1d);
+            }
+        }
+    }
+
+    public int categories() {
+        return this.totals.length;
+    }
+
+    public long getPopulation() {
+        return this.population;
+    }
+
+    /**
+     * Gets the estimated proportion of players in the category
+     *
+     * @param category the category
+     * @return the proportion, between 0 and 1
+     */
+    public double getProportion(int category) {
+        return this.population == 0 ? 0 : this.totals[category] / this.population;
+    }
+
+    /**
+     * Gets the estimated number of players in the category
+     *
+     * @param category the category
+     * @return the number of players
+     */
+    public int getEstimatedCount(int category) {
+        return (int) Math.round(this.totals[category]);
+    }
+
+    /**
+     * Gets the half width of the 95% confidence interval for the proportion
+     *
+     * @param category the category
+     * @return the margin of error, between 0 and 1
+     */
+    public double getMargin(int category) {
+        return this.population == 0 ? 0 : Z_95 * Math.sqrt(this.variances[category]) / this.population;
+    }
+
+}
@@ -0,0 +1,119 @@
+/*
+ * This file is part of NetworkAnalytics, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.networkanalytics.session;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A {@link PresenceStore} held in memory, for servers which aren't sharing
+ * sessions with the rest of the network.
+ *
+ * <p>Sessions are only continued if the player reconnects to this server.</p>
+ */
+public class LocalPresenceStore implements PresenceStore {
+    private final Map<UUID, Presence> presence = new ConcurrentHashMap<>();
+
+    @Override
+    public JoinResult join(UUID uuid, String serverId, long now, long graceSeconds, long staleSeconds) {
+        JoinResult[] result = new JoinResult[1];
+        this.presence.compute(uuid, (u, current) -> {
+            if (current == null) {
+                result[0] = JoinResult.newSession(now);
+                return new Presence(now, serverId, 0, now);
+            }
+
+            long end = current.end;
+            if (end == 0 && now - current.seen > staleSeconds) {
+                end = current.seen;
+            }
+
+            if (end == 0 || now - end <= graceSeconds) {
+                result[0] = new JoinResult(true, current.start, -1, -1);
+                return new Presence(current.start, serverId, 0, now);
+            }
+
+            result[0] = new JoinResult(false, now, current.start, end);
+            return new Presence(now, serverId, 0, now);
+        });
+        return result[0];
+    }
+
+    @Override
+    public void heartbeat(Collection<UUID> uuids, String serverId, long now) {
+        for (UUID uuid : uuids) {
+            this.presence.computeIfPresent(uuid, (u, current) -> {
+                if (!current.server.equals(serverId) || current.end != 0) {
+                    return current;
+                }
+                return new Presence(current.start, current.server, 0, now);
+            });
+        }
+    }
+
+    @Override
+    public LeaveResult leave(UUID uuid, String serverId, long now) {
+        LeaveResult[] result = new LeaveResult[]{LeaveResult.UNTRACKED};
+        this.presence.computeIfPresent(uuid, (u, current) -> {
+            if (!current.server.equals(serverId) || current.end != 0) {
+                result[0] = LeaveResult.MOVED;
+                return current;
+            }
+            result[0] = LeaveResult.PENDING;
+            return new Presence(current.start, current.server, now, current.seen);
+        });
+        return result[0];
+    }
+
+    @Override
+    public long finish(UUID uuid, String serverId, long leaveTime) {
+        long[] start = new long[]{-1};
+        this.presence.computeIfPresent(uuid, (u, current) -> {
+            if (!current.server.equals(serverId) || current.end != leaveTime) {
+                return current;
+            }
+            start[0] = current.start;
+            return null;
+        });
+        return start[0];
+    }
+
+    private static final class Presence {
+        private final long start;
+        private final String server;
+        private final long end;
+        private final long seen;
+
+        private Presence(long start, String server, long end, long seen) {
+            this.start = start;
+            this.server = server;
+            this.end = end;
+            this.seen = seen;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * This file is part of NetworkAnalytics, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.networkanalytics.session;
+
+import java.util.Collection;
+import java.util.UUID;
+
+/**
+ * Holds a short-lived marker for each player on the network, used to tell a
+ * server switch apart from a new visit.
+ *
+ * <p>All methods are blocking, and are called from async threads by the
+ * {@link SessionTracker}.</p>
+ */
+public interface PresenceStore {
+
+    /**
+     * Marks the player as connected to the given server.
+     *
+     * <p>If the player is still connected elsewhere, or left less than the grace
+     * period ago, their existing session is continued. A connected marker which
+     * hasn't been refreshed within the stale period belongs to a server which went
+     * down, and is treated as having ended when it was last refreshed.</p>
+     *
+     * @param uuid the players uuid
+     * @param serverId the server the player joined
+     * @param now the current time, in unix seconds
+     * @param graceSeconds the grace period
+     * @param staleSeconds the stale period
+     * @return the result
+     * @throws Exception if an error occurs
+     */
+    JoinResult join(UUID uuid, String serverId, long now, long graceSeconds, long staleSeconds) throws Exception;
+
+    /**
+     * Refreshes the markers of players connected to the given server.
+     *
+     * @param uuids the players
+     * @param serverId the server
+     * @param now the current time, in unix seconds
+     * @throws Exception if an error occurs
+     */
+    void heartbeat(Collection<UUID> uuids, String serverId, long now) throws Exception;
+
+    /**
+     * Marks the player as having left the given server.
+     *
+     * @param uuid the players uuid
+     * @param serverId the server the player left
+     * @param now the current time, in unix seconds
+     * @return the result
+     * @throws Exception if an error occurs
+     */
+    LeaveResult leave(UUID uuid, String serverId, long now) throws Exception;
+
+    /**
+     * Ends the players session, if it hasn't been continued since they left the given server.
+     *
+     * @param uuid the players uuid
+     * @param serverId the server the player left
+     * @param leaveTime the time the player left, as passed to {@link #leave(UUID, String, long)}
+     * @return the time the session started, in unix seconds, or -1 if the session was continued
+     * @throws Exception if an error occurs
+     */
+    long finish(UUID uuid, String serverId, long leaveTime) throws Exception;
+
+}
@@ -0,0 +1,159 @@
+/*
+ * This file is part of NetworkAnalytics, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.networkanalytics.session;
+
+import me.lucko.helper.redis.HelperRedis;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link PresenceStore} shared between servers, using a hash in Redis for each player.
+ *
+ * <p>Each hash holds the time the session started, the server currently holding
+ * it, the time the player left (or 0 while connected), and the time the holding
+ * server last refreshed it. The scripts run atomically, so exactly one server
+ * ends each session.</p>
+ */
+public class RedisPresenceStore implements PresenceStore {
+    private static final String KEY_PREFIX = "na-session:";
+
+    // how long a marker is kept, so a session which was never finished can
+    // still be recorded when the player next joins
+    private static final long TTL_SECONDS = TimeUnit.DAYS.toSeconds(7);
+
+    // continue the session if the player is connected elsewhere or left within the grace period,
+    // otherwise start a new one, returning the bounds of any unfinished previous session.
+    // a connected marker which has stopped being refreshed is treated as ending when last seen
+    private static final String JOIN_SCRIPT =
+            "local now = tonumber(ARGV[2]) " +
+            "local start = redis.call('hget', KEYS[1], 'start') " +
+            "local result = {0, now, -1, -1} " +
+            "if start then " +
+            "  local ended = tonumber(redis.call('hget', KEYS[1], 'end')) " +
+            "  if ended == 0 then " +
+            "    local seen = tonumber(redis.call('hget', KEYS[1], 'seen')) or tonumber(start) " +
+            "    if now - seen > tonumber(ARGV[5]) then ended = seen end " +
+            "  end " +
+            "  if ended == 0 or now - ended <= tonumber(ARGV[3]) then " +
+            "    redis.call('hmset', KEYS[1], 'server', ARGV[1], 'end', '0', 'seen', ARGV[2]) " +
+            "    redis.call('expire', KEYS[1], ARGV[4]) " +
+            "    return {1, tonumber(start), -1, -1} " +
+            "  end " +
+            "  result = {0, now, tonumber(start), ended} " +
+            "end " +
+            "redis.call('hmset', KEYS[1], 'start', ARGV[2], 'server', ARGV[1], 'end', '0', 'seen', ARGV[2]) " +
+            "redis.call('expire', KEYS[1], ARGV[4]) " +
+            "return result";
+
+    // refresh the marker, only if this server holds the session and the player is connected
+    private static final String HEARTBEAT_SCRIPT =
+            "if redis.call('hget', KEYS[1], 'server') == ARGV[1] and redis.call('hget', KEYS[1], 'end') == '0' then " +
+            "  redis.call('hset', KEYS[1], 'seen', ARGV[2]) " +
+            "  redis.call('expire', KEYS[1], ARGV[3]) " +
+            "end " +
+            "return 0";
+
+    // mark the player as having left, only if this server holds their session
+    private static final String LEAVE_SCRIPT =
+            "local server = redis.call('hget', KEYS[1], 'server') " +
+            "if not server then return 0 end " +
+            "if server ~= ARGV[1] or redis.call('hget', KEYS[1], 'end') ~= '0' then return 2 end " +
+            "redis.call('hset', KEYS[1], 'end', ARGV[2]) " +
+            "redis.call('expire', KEYS[1], ARGV[3]) " +
+            "return 1";
+
+    // end the session, only if it hasn't been continued since we marked the player as having left
+    private static final String FINISH_SCRIPT =
+            "if redis.call('hget', KEYS[1], 'server') == ARGV[1] and redis.call('hget', KEYS[1], 'end') == ARGV[2] then " +
+            "  local start = redis.call('hget', KEYS[1], 'start') " +
+            "  redis.call('del', KEYS[1]) " +
+            "  return tonumber(start) " +
+            "end " +
+            "return -1";
+
+    private final HelperRedis redis;
+
+    public RedisPresenceStore(HelperRedis redis) {
+        this.redis = redis;
+    }
+
+    @Override
+    public JoinResult join(UUID uuid, String serverId, long now, long graceSeconds, long staleSeconds) {
+        try (Jedis jedis = this.redis.getJedis()) {
+            List<?> result = (List<?>) jedis.eval(JOIN_SCRIPT, Collections.singletonList(KEY_PREFIX + uuid), Arrays.asList(
+                    serverId, String.valueOf(now), String.valueOf(graceSeconds), String.valueOf(TTL_SECONDS), String.valueOf(staleSeconds)
+            ));
+            return new JoinResult((Long) result.get(0) == 1L, (Long) result.get(1), (Long) result.get(2), (Long) result.get(3));
+        }
+    }
+
+    @Override
+    public LeaveResult leave(UUID uuid, String serverId, long now) {
+        try (Jedis jedis = this.redis.getJedis()) {
+            Long result = (Long) jedis.eval(LEAVE_SCRIPT, Collections.singletonList(KEY_PREFIX + uuid), Arrays.asList(
+                    serverId, String.valueOf(now), String.valueOf(TTL_SECONDS)
+            ));
+            switch (result.intValue()) {
+                case 1:
+                    return LeaveResult.PENDING;
+                case 2:
+                    return LeaveResult.MOVED;
+                default:
+                    return LeaveResult.UNTRACKED;
+            }
+        }
+    }
+
+    @Override
+    public void heartbeat(Collection<UUID> uuids, String serverId, long now) {
+        if (uuids.isEmpty()) {
+            return;
+        }
+        try (Jedis jedis = this.redis.getJedis()) {
+            Pipeline pipeline = jedis.pipelined();
+            List<String> args = Arrays.asList(serverId, String.valueOf(now), String.valueOf(TTL_SECONDS));
+            for (UUID uuid : uuids) {
+                pipeline.eval(HEARTBEAT_SCRIPT, Collections.singletonList(KEY_PREFIX + uuid), args);
+            }
+            pipeline.sync();
+        }
+    }
+
+    @Override
+    public long finish(UUID uuid, String serverId, long leaveTime) {
+        try (Jedis jedis = this.redis.getJedis()) {
+            return (Long) jedis.eval(FINISH_SCRIPT, Collections.singletonList(KEY_PREFIX + uuid), Arrays.asList(serverId, String.valueOf(leaveTime)));
+        }
+    }
+}
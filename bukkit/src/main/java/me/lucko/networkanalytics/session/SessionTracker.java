@@ -0,0 +1,204 @@
+/*
+ * This file is part of NetworkAnalytics, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.networkanalytics.session;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * Stitches a players connections to individual servers into network sessions.
+ *
+ * <p>When a player leaves, their session is held open for a grace period. If
+ * they join another server (or reconnect) within it, the session continues,
+ * and nothing is written. Otherwise the server they left finishes the session
+ * once the grace period has passed.</p>
+ *
+ * <p>While a player is connected, the server holding their session refreshes
+ * it periodically, so a session left behind by a server which went down isn't
+ * continued by the players next join.</p>
+ */
+public class SessionTracker {
+
+    /**
+     * How often the sessions of players connected to this server should be refreshed
+     */
+    public static final long HEARTBEAT_INTERVAL_SECONDS = 30;
+
+    // sessions not refreshed for this long are treated as having ended when last refreshed
+    private static final long STALE_SECONDS = HEARTBEAT_INTERVAL_SECONDS * 3;
+
+    private final PresenceStore store;
+    private final String serverId;
+    private final long graceSeconds;
+    private final Executor executor;
+
+    // players whose session is pending on this server, and the time they left
+    private final Map<UUID, Long> pending = new ConcurrentHashMap<>();
+
+    // players connected to this server, whose sessions are refreshed by the heartbeat
+    private final Set<UUID> connected = ConcurrentHashMap.newKeySet();
+
+    // the last operation submitted for each player, so a quick reconnect can't
+    // apply the join before the leave
+    private final Map<UUID, CompletableFuture<?>> lastOperation = new ConcurrentHashMap<>();
+
+    public SessionTracker(PresenceStore store, String serverId, long graceSeconds, Executor executor) {
+        this.store = store;
+        this.serverId = serverId;
+        this.graceSeconds = graceSeconds;
+        this.executor = executor;
+    }
+
+    /**
+     * Records a player joining this server.
+     *
+     * @param uuid the players uuid
+     * @param now the current time, in unix seconds
+     * @return a future encapsulating the result
+     */
+    public CompletableFuture<JoinResult> join(UUID uuid, long now) {
+        return submit(uuid, () -> {
+            this.connected.add(uuid);
+            try {
+                return this.store.join(uuid, this.serverId, now, this.graceSeconds, STALE_SECONDS);
+            } catch (Exception e) {
+                e.printStackTrace();
+                // treat as a new session, the same as if session tracking was disabled
+                return JoinResult.newSession(now);
+            }
+        });
+    }
+
+    /**
+     * Records a player leaving this server.
+     *
+     * <p>If the result is {@link LeaveResult#PENDING}, the session will be passed
+     * to the handler given to {@link #finishExpired(long, SessionHandler)} once the
+     * grace period has passed, unless it is continued first.</p>
+     *
+     * @param uuid the players uuid
+     * @param now the current time, in unix seconds
+     * @return a future encapsulating the result
+     */
+    public CompletableFuture<LeaveResult> leave(UUID uuid, long now) {
+        return submit(uuid, () -> {
+            this.connected.remove(uuid);
+            try {
+                LeaveResult result = this.store.leave(uuid, this.serverId, now);
+                if (result == LeaveResult.PENDING) {
+                    this.pending.put(uuid, now);
+                }
+                return result;
+            } catch (Exception e) {
+                e.printStackTrace();
+                return LeaveResult.UNTRACKED;
+            }
+        });
+    }
+
+    /**
+     * Refreshes the sessions of the players connected to this server.
+     *
+     * @param now the current time, in unix seconds
+     */
+    public void heartbeat(long now) {
+        try {
+            this.store.heartbeat(new ArrayList<>(this.connected), this.serverId, now);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Finishes the pending sessions whose grace period has passed.
+     *
+     * @param now the current time, in unix seconds
+     * @param handler the handler to pass finished sessions to
+     */
+    public void finishExpired(long now, SessionHandler handler) {
+        for (Map.Entry<UUID, Long> entry : this.pending.entrySet()) {
+            if (now - entry.getValue() > this.graceSeconds) {
+                finish(entry.getKey(), entry.getValue(), handler);
+            }
+        }
+    }
+
+    /**
+     * Finishes every pending session, regardless of the grace period.
+     *
+     * <p>Called when the server is shutting down.</p>
+     *
+     * @param handler the handler to pass finished sessions to
+     * @return a future which completes once the handler has written every session
+     */
+    public CompletableFuture<Void> finishAll(SessionHandler handler) {
+        List<CompletableFuture<?>> writes = new ArrayList<>();
+        for (Map.Entry<UUID, Long> entry : this.pending.entrySet()) {
+            writes.add(finish(entry.getKey(), entry.getValue(), handler));
+        }
+        return CompletableFuture.allOf(writes.toArray(new CompletableFuture[0]));
+    }
+
+    private <T> CompletableFuture<T> submit(UUID uuid, Supplier<T> supplier) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        this.lastOperation.compute(uuid, (u, previous) -> {
+            CompletableFuture<?> after = previous == null ? CompletableFuture.completedFuture(null) : previous;
+            after.whenCompleteAsync((r, e) -> future.complete(supplier.get()), this.executor);
+            return future;
+        });
+        future.whenComplete((r, e) -> this.lastOperation.remove(uuid, future));
+        return future;
+    }
+
+    private CompletableFuture<?> finish(UUID uuid, long leaveTime, SessionHandler handler) {
+        // the player may have left again since, in which case there's a newer entry
+        if (!this.pending.remove(uuid, leaveTime)) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        try {
+            long start = this.store.finish(uuid, this.serverId, leaveTime);
+            if (start != -1) {
+                return handler.handle(uuid, start, leaveTime);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @FunctionalInterface
+    public interface SessionHandler {
+        CompletableFuture<?> handle(UUID uuid, long start, long end);
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * This file is part of NetworkAnalytics, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.networkanalytics.snapshot;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import me.lucko.networkanalytics.channel.NetworkSummary;
+
+import protocolsupport.api.ProtocolVersion;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * An immutable view of the players online across the network.
+ *
+ * <p>Snapshots are replaced as a whole whenever new data arrives, so they can be
+ * read from any thread without further synchronization.</p>
+ */
+@Getter
+@ToString
+@AllArgsConstructor(access = AccessLevel.PACKAGE)
+public final class NetworkSnapshot {
+
+    /**
+     * The snapshot returned before any data has been received
+     */
+    public static final NetworkSnapshot EMPTY = new NetworkSnapshot(0, 0, 0, Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap(), false);
+
+    // incremented each time the contents of the snapshot change
+    private final long version;
+
+    // the time the snapshot was created, in unix seconds
+    private final long timeCreated;
+
+    private final int totalPlayers;
+    private final Map<String, Integer> serverCounts;
+
+    // keyed in the same way as the network summary
+    private final Map<String, Integer> versionCounts;
+    private final Map<String, Integer> localeCounts;
+
+    // if the version & locale counts are estimates
+    private final boolean estimated;
+
+    /**
+     * Gets the number of players on the given server
+     *
+     * @param serverId the server
+     * @return the number of players, or 0 if the server isn't known
+     */
+    public int getServerCount(String serverId) {
+        return this.serverCounts.getOrDefault(serverId, 0);
+    }
+
+    /**
+     * Gets the number of players on the given protocol version
+     *
+     * @param version the version, or null for unknown versions
+     * @return the number of players
+     */
+    public int getVersionCount(ProtocolVersion version) {
+        return this.versionCounts.getOrDefault(version == null ? NetworkSummary.UNKNOWN : version.name(), 0);
+    }
+
+    /**
+     * Gets the number of players using the given locale
+     *
+     * @param locale the locale, or null for unknown locales
+     * @return the number of players
+     */
+    public int getLocaleCount(String locale) {
+        return this.localeCounts.getOrDefault(locale == null ? NetworkSummary.UNKNOWN : locale, 0);
+    }
+
+    boolean contentEquals(int totalPlayers, Map<String, Integer> serverCounts, Map<String, Integer> versionCounts, Map<String, Integer> localeCounts, boolean estimated) {
+        return this.totalPlayers == totalPlayers &&
+                this.estimated == estimated &&
+                this.serverCounts.equals(serverCounts) &&
+                this.versionCounts.equals(versionCounts) &&
+                this.localeCounts.equals(localeCounts);
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * This file is part of NetworkAnalytics, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.networkanalytics.snapshot;
+
+import me.lucko.helper.terminable.Terminable;
+import me.lucko.networkanalytics.channel.NetworkSummary;
+import me.lucko.networkanalytics.roster.LocaleTable;
+import me.lucko.networkanalytics.roster.RosterStore;
+import me.lucko.networkanalytics.roster.ServerRoster;
+
+import protocolsupport.api.ProtocolVersion;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Builds {@link NetworkSnapshot}s as new data arrives, and publishes them to readers.
+ *
+ * <p>Updates are serialised, but readers only perform a volatile read of the
+ * current snapshot, and never block.</p>
+ */
+public class SnapshotPublisher {
+
+    private volatile NetworkSnapshot snapshot = NetworkSnapshot.EMPTY;
+    private final List<Consumer<NetworkSnapshot>> listeners = new CopyOnWriteArrayList<>();
+
+    // the counts for each roster, reused until the server sends a new one.
+    // only accessed while holding the lock
+    private final Map<String, RosterCounts> rosterCounts = new HashMap<>();
+
+    public NetworkSnapshot getSnapshot() {
+        return this.snapshot;
+    }
+
+    public long getVersion() {
+        return this.snapshot.getVersion();
+    }
+
+    /**
+     * Registers a listener to be called each time a new snapshot is published.
+     *
+     * <p>Listeners are called from the thread publishing the snapshot, which is
+     * usually async, and should return quickly.</p>
+     *
+     * @param listener the listener
+     * @return a terminable which unregisters the listener
+     */
+    public Terminable addListener(Consumer<NetworkSnapshot> listener) {
+        this.listeners.add(listener);
+        return () -> this.listeners.remove(listener);
+    }
+
+    /**
+     * Publishes a snapshot built from the rosters currently held in the store.
+     *
+     * <p>Rosters are only counted once, when they're first seen, so the cost of an update
+     * is proportional to the number of servers rather than the number of players.
+     * The counts for partial rosters are estimated by scaling up their sample.</p>
+     *
+     * @param rosterStore the store
+     */
+    public synchronized void publish(RosterStore rosterStore) {
+        LocaleTable localeTable = rosterStore.getLocaleTable();
+        double[] versions = new double[ServerRoster.versionCount() + 1];
+        int localeCount = localeTable.size();
+        double[] locales = new double[localeCount + 1];
+        Map<String, Integer> serverCounts = new HashMap<>();
+        int totalPlayers = 0;
+        boolean estimated = false;
+
+        Map<String, RosterCounts> previous = new HashMap<>(this.rosterCounts);
+        this.rosterCounts.clear();
+
+        for (ServerRoster roster : rosterStore.getRosters()) {
+            RosterCounts counts = previous.get(roster.getServerId());
+            if (counts == null || counts.roster != roster) {
+                counts = new RosterCounts(roster, localeCount);
+            }
+            this.rosterCounts.put(roster.getServerId(), counts);
+
+            serverCounts.put(roster.getServerId(), roster.getOnlineCount());
+            totalPlayers += roster.getOnlineCount();
+            estimated |= roster.isPartial();
+
+            // scale the sample up to the number of players online. 1 for full rosters
+            double scale = roster.isPartial() && roster.size() != 0 ? (double) roster.getOnlineCount() / roster.size() : 1;
+            addCounts(versions, counts.versions, scale);
+            addCounts(locales, counts.locales, scale);
+        }
+
+        Map<String, Integer> versionCounts = new HashMap<>();
+        for (int i = 0; i < versions.length; i++) {
+            int count = (int) Math.round(versions[i]);
+            if (count != 0) {
+                // the final element holds unknown versions
+                ProtocolVersion version = i == versions.length - 1 ? null : ServerRoster.versionByOrdinal(i);
+                versionCounts.merge(version == null ? NetworkSummary.UNKNOWN : version.name(), count, Integer::sum);
+            }
+        }
+
+        Map<String, Integer> localeCounts = new HashMap<>();
+        for (int i = 0; i < locales.length; i++) {
+            int count = (int) Math.round(locales[i]);
+            if (count != 0) {
+                // the final element holds unknown locales
+                String locale = i == locales.length - 1 ? null : localeTable.get(i);
+                localeCounts.merge(locale == null ? NetworkSummary.UNKNOWN : locale, count, Integer::sum);
+            }
+        }
+
+        update(totalPlayers, serverCounts, versionCounts, localeCounts, estimated);
+    }
+
+    /**
+     * Publishes a snapshot built from a summary received from the aggregator.
+     *
+     * <p>Used by servers which don't receive the rosters themselves.</p>
+     *
+     * @param summary the summary
+     */
+    public synchronized void publish(NetworkSummary summary) {
+        update(summary.getTotalPlayers(),
+                copy(summary.getServerCounts()),
+                copy(summary.getVersionCounts()),
+                copy(summary.getLocaleCounts()),
+                summary.isSampled()
+        );
+    }
+
+    private void update(int totalPlayers, Map<String, Integer> serverCounts, Map<String, Integer> versionCounts, Map<String, Integer> localeCounts, boolean estimated) {
+        NetworkSnapshot current = this.snapshot;
+
+        // only bump the version if something has actually changed, so readers can skip redundant work
+        if (current.getVersion() != 0 && current.contentEquals(totalPlayers, serverCounts, versionCounts, localeCounts, estimated)) {
+            return;
+        }
+
+        NetworkSnapshot snapshot = new NetworkSnapshot(
+                current.getVersion() + 1,
+                System.currentTimeMillis() / 1000L,
+                totalPlayers,
+                Collections.unmodifiableMap(serverCounts),
+                Collections.unmodifiableMap(versionCounts),
+                Collections.unmodifiableMap(localeCounts),
+                estimated
+        );
+        this.snapshot = snapshot;
+
+        for (Consumer<NetworkSnapshot> listener : this.listeners) {
+            try {
+                listener.accept(snapshot);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private static Map<String, Integer> copy(Map<String, Integer> map) {
+        return map == null ? new HashMap<>() : new HashMap<>(map);
+    }
+
+    private static void addCounts(double[] totals, int[] counts, double scale) {
+        // the locale table may have grown since the counts were taken, so the
+        // unknown element isn't necessarily in the same position
+        int unknown = counts.length - 1;
+        for (int i = 0; i < unknown; i++) {
+            totals[i] += counts[i] * scale;
+        }
+        totals[totals.length - 1] += counts[unknown] * scale;
+    }
+
+    private static final class RosterCounts {
+        private final ServerRoster roster;
+        private final int[] versions;
+        private final int[] locales;
+
+        RosterCounts(ServerRoster roster, int localeCount) {
+            this.roster = roster;
+            this.versions = new int[ServerRoster.versionCount() + 1];
+            this.locales = new int[localeCount + 1];
+            roster.countVersions(this.versions);
+            roster.countLocales(this.locales);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * This file is part of NetworkAnalytics, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.networkanalytics.data;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+
+public class UsernameTrieTest {
+
+    @Test
+    public void testSearch() {
+        UsernameTrie trie = new UsernameTrie(100);
+        trie.add("Notch");
+        trie.add("notch_fan");
+        trie.add("jeb_");
+        trie.add("Dinnerbone");
+        trie.add("nOTCHY");
+
+        assertEquals(Arrays.asList("Notch", "notch_fan", "nOTCHY"), trie.search("NOT", 10));
+        assertEquals(Arrays.asList("Notch"), trie.search("notch", 1));
+        assertEquals(Collections.singletonList("jeb_"), trie.search("j", 10));
+        assertEquals(Collections.emptyList(), trie.search("grumm", 10));
+        assertEquals(5, trie.search("", 10).size());
+        assertEquals(2, trie.search("", 2).size());
+    }
+
+    @Test
+    public void testLatestCaseIsKept() {
+        UsernameTrie trie = new UsernameTrie(100);
+        trie.add("notch");
+        trie.add("Notch");
+
+        assertEquals(1, trie.size());
+        assertEquals(Collections.singletonList("Notch"), trie.search("no", 10));
+    }
+
+    @Test
+    public void testLeastRecentlySeenIsEvicted() {
+        UsernameTrie trie = new UsernameTrie(3);
+        trie.add("Notch");
+        trie.add("Notch2");
+        trie.add("jeb_");
+
+        // seen again, so no longer the eldest
+        trie.add("Notch");
+        trie.add("Dinnerbone");
+
+        assertEquals(3, trie.size());
+        assertEquals(Collections.singletonList("Notch"), trie.search("notch", 10));
+        assertEquals(Collections.singletonList("jeb_"), trie.search("jeb", 10));
+        assertEquals(Collections.emptyList(), trie.search("notch2", 10));
+    }
+
+    @Test
+    public void testEvictionKeepsLongerNames() {
+        UsernameTrie trie = new UsernameTrie(2);
+        trie.add("Notch");
+        trie.add("Notch2");
+        trie.add("jeb_");
+
+        assertEquals(Collections.singletonList("Notch2"), trie.search("notch", 10));
+        assertEquals(Collections.singletonList("jeb_"), trie.search("j", 10));
+    }
+}
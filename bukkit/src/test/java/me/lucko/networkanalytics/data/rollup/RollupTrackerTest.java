@@ -0,0 +1,218 @@
+/*
+ * This file is part of NetworkAnalytics, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.networkanalytics.data.rollup;
+
+import me.lucko.networkanalytics.data.storage.MemoryStorage;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RollupTrackerTest {
+
+    private static final long DAY = 17500;
+    private static final String SERVER = "lobby";
+
+    private final AtomicLong clock = new AtomicLong(DAY);
+    private TestStorage storage;
+
+    @Before
+    public void setup() {
+        this.storage = new TestStorage();
+    }
+
+    private RollupTracker tracker() {
+        return new RollupTracker(this.storage, SERVER, this.clock::get);
+    }
+
+    private DailyRollup stored(long day) {
+        return this.storage.getDailyRollups(day, day).getOrDefault(SERVER, new DailyRollup());
+    }
+
+    private static void assertRollup(DailyRollup rollup, long newPlayers, long uniqueJoins, long connections, long minutesPlayed) {
+        assertEquals("new players", newPlayers, rollup.getNewPlayers());
+        assertEquals("unique joins", uniqueJoins, rollup.getUniqueJoins());
+        assertEquals("connections", connections, rollup.getConnections());
+        assertEquals("minutes played", minutesPlayed, rollup.getMinutesPlayed());
+    }
+
+    @Test
+    public void testFlush() throws Exception {
+        RollupTracker tracker = tracker();
+        UUID player = UUID.randomUUID();
+        tracker.onLogin(player, 1);
+        tracker.onLogin(player, 2);
+        tracker.onLogin(UUID.randomUUID(), 7);
+        tracker.onPlayTime(15);
+        tracker.flush();
+
+        assertRollup(stored(DAY), 1, 2, 3, 15);
+        assertFalse(this.storage.sealed.contains(DAY));
+
+        // nothing new, so nothing more is added
+        tracker.flush();
+        assertRollup(stored(DAY), 1, 2, 3, 15);
+    }
+
+    @Test
+    public void testUniqueJoinsSurviveRestart() throws Exception {
+        UUID player = UUID.randomUUID();
+        RollupTracker tracker = tracker();
+        tracker.onLogin(player, 1);
+        tracker.flush();
+
+        RollupTracker restarted = tracker();
+        restarted.init();
+        restarted.onLogin(player, 2);
+        restarted.flush();
+
+        assertRollup(stored(DAY), 1, 1, 2, 0);
+    }
+
+    @Test
+    public void testRollover() throws Exception {
+        RollupTracker tracker = tracker();
+        UUID player = UUID.randomUUID();
+        tracker.onLogin(player, 1);
+        tracker.onPlayTime(30);
+
+        this.clock.set(DAY + 1);
+        tracker.onLogin(player, 2);
+        tracker.onPlayTime(5);
+        tracker.flush();
+
+        // the previous day is written & sealed, and the player counts as unique again
+        assertRollup(stored(DAY), 1, 1, 1, 30);
+        assertTrue(this.storage.sealed.contains(DAY));
+        assertRollup(stored(DAY + 1), 0, 1, 1, 5);
+        assertFalse(this.storage.sealed.contains(DAY + 1));
+    }
+
+    @Test
+    public void testEmptyDayIsSealed() throws Exception {
+        RollupTracker tracker = tracker();
+        this.clock.set(DAY + 1);
+        tracker.onPlayTime(1);
+        tracker.flush();
+
+        assertTrue(this.storage.sealed.contains(DAY));
+        assertRollup(stored(DAY + 1), 0, 0, 0, 1);
+    }
+
+    @Test
+    public void testFailedFlushIsRetried() throws Exception {
+        RollupTracker tracker = tracker();
+        tracker.onLogin(UUID.randomUUID(), 1);
+        tracker.onPlayTime(10);
+
+        this.storage.failing = true;
+        assertFlushFails(tracker);
+
+        tracker.onPlayTime(5);
+        this.storage.failing = false;
+        tracker.flush();
+
+        assertRollup(stored(DAY), 1, 1, 1, 15);
+    }
+
+    @Test
+    public void testFailedSealIsRetried() throws Exception {
+        RollupTracker tracker = tracker();
+        tracker.onLogin(UUID.randomUUID(), 1);
+        tracker.onPlayTime(10);
+        this.clock.set(DAY + 1);
+
+        this.storage.failing = true;
+        assertFlushFails(tracker);
+        assertFalse(this.storage.sealed.contains(DAY));
+
+        // the previous day's counts are kept, and not moved onto the new day
+        tracker.onPlayTime(3);
+        this.storage.failing = false;
+        tracker.flush();
+
+        assertRollup(stored(DAY), 1, 1, 1, 10);
+        assertTrue(this.storage.sealed.contains(DAY));
+        assertRollup(stored(DAY + 1), 0, 0, 0, 3);
+    }
+
+    @Test
+    public void testDayEndsDuringFailedFlush() throws Exception {
+        RollupTracker tracker = tracker();
+        tracker.onLogin(UUID.randomUUID(), 1);
+
+        // the write for the current day fails after the day has changed
+        this.storage.failing = true;
+        this.storage.onWrite = () -> this.clock.set(DAY + 1);
+        assertFlushFails(tracker);
+
+        this.storage.failing = false;
+        this.storage.onWrite = null;
+        tracker.flush();
+
+        assertRollup(stored(DAY), 1, 1, 1, 0);
+        assertTrue(this.storage.sealed.contains(DAY));
+        assertRollup(stored(DAY + 1), 0, 0, 0, 0);
+    }
+
+    private static void assertFlushFails(RollupTracker tracker) {
+        try {
+            tracker.flush();
+            fail("flush should have failed");
+        } catch (Exception e) {
+            // expected
+        }
+    }
+
+    private static final class TestStorage extends MemoryStorage {
+        private final Set<Long> sealed = new HashSet<>();
+        private boolean failing = false;
+        private Runnable onWrite = null;
+
+        @Override
+        public void addDailyRollup(long day, String serverId, DailyRollup delta, boolean seal) {
+            if (this.onWrite != null) {
+                this.onWrite.run();
+            }
+            if (this.failing) {
+                throw new RuntimeException("storage is down");
+            }
+            super.addDailyRollup(day, serverId, delta, seal);
+            if (seal) {
+                this.sealed.add(day);
+            }
+        }
+    }
+}
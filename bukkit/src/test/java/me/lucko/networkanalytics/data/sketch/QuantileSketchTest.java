@@ -0,0 +1,119 @@
+/*
+ * This file is part of NetworkAnalytics, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.networkanalytics.data.sketch;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class QuantileSketchTest {
+
+    @Test
+    public void testSerializeRoundTrip() {
+        QuantileSketch sketch = new QuantileSketch();
+        sketch.add(0);
+        sketch.add(1);
+        sketch.add(250, 3);
+        sketch.add(1_000_000);
+        sketch.remove(5000);
+
+        QuantileSketch copy = QuantileSketch.deserialize(sketch.serialize());
+        assertArrayEquals(sketch.serialize(), copy.serialize());
+        assertEquals(sketch.getCount(), copy.getCount());
+        assertEquals(sketch.getQuantile(0.5), copy.getQuantile(0.5), 0);
+        assertEquals(sketch.getQuantile(0.99), copy.getQuantile(0.99), 0);
+    }
+
+    @Test
+    public void testNegativeCountsRoundTrip() {
+        // a delta sketch holds negative counts, which are zigzag encoded
+        QuantileSketch delta = new QuantileSketch();
+        delta.remove(0);
+        delta.add(60, -(Long.MAX_VALUE / 2));
+        delta.add(120);
+
+        QuantileSketch base = new QuantileSketch();
+        base.merge(QuantileSketch.deserialize(delta.serialize()));
+        base.add(0);
+        base.add(60, Long.MAX_VALUE / 2);
+        base.remove(120);
+        assertTrue(base.isEmpty());
+    }
+
+    @Test
+    public void testEmptyRoundTrip() {
+        QuantileSketch copy = QuantileSketch.deserialize(new QuantileSketch().serialize());
+        assertTrue(copy.isEmpty());
+        assertEquals(0, copy.getQuantile(0.5), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTruncatedData() {
+        QuantileSketch sketch = new QuantileSketch();
+        sketch.add(100);
+        byte[] data = sketch.serialize();
+        QuantileSketch.deserialize(Arrays.copyOf(data, data.length - 1));
+    }
+
+    @Test
+    public void testRelativeError() {
+        Random random = new Random(1);
+        QuantileSketch sketch = new QuantileSketch();
+        double[] values = new double[100_000];
+        for (int i = 0; i < values.length; i++) {
+            // long tailed, like play time
+            values[i] = Math.exp(random.nextGaussian() * 2 + 5);
+            sketch.add(values[i]);
+        }
+        Arrays.sort(values);
+
+        for (double q : new double[]{0.01, 0.25, 0.5, 0.9, 0.99, 0.999}) {
+            double expected = values[(int) (q * (values.length - 1))];
+            double actual = sketch.getQuantile(q);
+            double error = Math.abs(actual - expected) / expected;
+            assertTrue("q" + q + " relative error " + error, error <= sketch.getRelativeAccuracy());
+        }
+    }
+
+    @Test
+    public void testMergeMatchesSingleSketch() {
+        QuantileSketch a = new QuantileSketch();
+        QuantileSketch b = new QuantileSketch();
+        QuantileSketch all = new QuantileSketch();
+        for (int i = 1; i <= 1000; i++) {
+            (i % 2 == 0 ? a : b).add(i);
+            all.add(i);
+        }
+
+        a.merge(b);
+        assertArrayEquals(all.serialize(), a.serialize());
+    }
+}
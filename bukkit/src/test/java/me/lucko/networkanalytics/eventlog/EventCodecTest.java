@@ -0,0 +1,165 @@
+/*
+ * This file is part of NetworkAnalytics, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.networkanalytics.eventlog;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class EventCodecTest {
+
+    private static final long BASE_TIME = 1_500_000_000_000L;
+    private static final UUID PLAYER = UUID.fromString("069a79f4-44e9-4726-a5be-fca90e38aaf5");
+
+    private static byte[] concat(byte[]... records) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] record : records) {
+            out.write(record, 0, record.length);
+        }
+        return out.toByteArray();
+    }
+
+    private static List<LoggedEvent> decodeAll(byte[] data) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        List<LoggedEvent> events = new ArrayList<>();
+        LoggedEvent event;
+        while ((event = EventCodec.decode(in, BASE_TIME, "lobby")) != null) {
+            events.add(event);
+        }
+        return events;
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        byte[] data = concat(
+                EventCodec.encode(EventType.LOGIN, 0, PLAYER, "Notch", 0),
+                EventCodec.encode(EventType.VERSION, 150, PLAYER, null, 340),
+                EventCodec.encode(EventType.QUIT, 3_600_000, PLAYER, null, 3600),
+                EventCodec.encode(EventType.LOGIN, -20, PLAYER, "\u00dcn\u00efc\u00f6d\u00e9", 0),
+                EventCodec.encode(EventType.VERSION, 1, PLAYER, null, -1)
+        );
+
+        List<LoggedEvent> events = decodeAll(data);
+        assertEquals(5, events.size());
+
+        LoggedEvent login = events.get(0);
+        assertEquals(EventType.LOGIN, login.getType());
+        assertEquals(BASE_TIME, login.getTime());
+        assertEquals("lobby", login.getServerId());
+        assertEquals(PLAYER, login.getUuid());
+        assertEquals("Notch", login.getUsername());
+
+        LoggedEvent version = events.get(1);
+        assertEquals(EventType.VERSION, version.getType());
+        assertEquals(BASE_TIME + 150, version.getTime());
+        assertEquals(340, version.getProtocolId());
+
+        LoggedEvent quit = events.get(2);
+        assertEquals(EventType.QUIT, quit.getType());
+        assertEquals(BASE_TIME + 3_600_000, quit.getTime());
+        assertEquals(3600, quit.getSessionSeconds());
+
+        // clock adjustments can put an event before the base time
+        assertEquals(BASE_TIME - 20, events.get(3).getTime());
+        assertEquals("\u00dcn\u00efc\u00f6d\u00e9", events.get(3).getUsername());
+        assertEquals(-1, events.get(4).getProtocolId());
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        assertEquals(0, decodeAll(new byte[0]).size());
+    }
+
+    @Test
+    public void testTruncatedRecordEndsSegment() throws IOException {
+        byte[] first = EventCodec.encode(EventType.LOGIN, 0, PLAYER, "Notch", 0);
+        byte[] second = EventCodec.encode(EventType.QUIT, 10, PLAYER, null, 10);
+
+        // cut the second record off at every possible point
+        for (int i = 0; i < second.length; i++) {
+            byte[] data = concat(first, Arrays.copyOf(second, i));
+            List<LoggedEvent> events = decodeAll(data);
+            assertEquals("truncated at " + i, 1, events.size());
+            assertEquals("Notch", events.get(0).getUsername());
+        }
+    }
+
+    @Test
+    public void testCorruptRecordEndsSegment() throws IOException {
+        byte[] first = EventCodec.encode(EventType.LOGIN, 0, PLAYER, "Notch", 0);
+        byte[] second = EventCodec.encode(EventType.VERSION, 10, PLAYER, null, 340);
+        byte[] third = EventCodec.encode(EventType.QUIT, 20, PLAYER, null, 20);
+
+        // flip a bit in the body of the second record, which fails the crc
+        byte[] corrupt = second.clone();
+        corrupt[3] ^= 0x10;
+
+        List<LoggedEvent> events = decodeAll(concat(first, corrupt, third));
+        assertEquals(1, events.size());
+        assertEquals(EventType.LOGIN, events.get(0).getType());
+
+        // and in the checksum itself
+        corrupt = second.clone();
+        corrupt[corrupt.length - 1] ^= 0x01;
+        assertEquals(1, decodeAll(concat(first, corrupt, third)).size());
+    }
+
+    @Test
+    public void testMalformedLengthEndsSegment() throws IOException {
+        byte[] first = EventCodec.encode(EventType.LOGIN, 0, PLAYER, "Notch", 0);
+
+        // a varint which never terminates
+        byte[] endless = new byte[16];
+        Arrays.fill(endless, (byte) 0xFF);
+        assertEquals(1, decodeAll(concat(first, endless, first)).size());
+
+        // a length longer than any valid record
+        byte[] huge = {(byte) 0x80, (byte) 0x80, 0x01};
+        assertEquals(1, decodeAll(concat(first, huge, first)).size());
+
+        // a zero length
+        assertEquals(1, decodeAll(concat(first, new byte[]{0}, first)).size());
+    }
+
+    @Test
+    public void testEndOfData() throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(EventCodec.encode(EventType.LOGIN, 0, PLAYER, "Notch", 0)));
+        assertEquals(EventType.LOGIN, EventCodec.decode(in, BASE_TIME, "lobby").getType());
+        assertNull(EventCodec.decode(in, BASE_TIME, "lobby"));
+        assertNull(EventType.byId(0));
+        assertNull(EventType.byId(99));
+    }
+}
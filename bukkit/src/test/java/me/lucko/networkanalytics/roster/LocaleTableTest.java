@@ -0,0 +1,72 @@
+/*
+ * This file is part of NetworkAnalytics, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.networkanalytics.roster;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class LocaleTableTest {
+
+    @Test
+    public void testIntern() {
+        LocaleTable table = new LocaleTable();
+        short en = table.intern("en_us");
+        short de = table.intern("de_de");
+
+        assertEquals(0, en);
+        assertEquals(1, de);
+        assertEquals(en, table.intern("en_us"));
+        assertEquals("en_us", table.get(en));
+        assertEquals("de_de", table.get(de));
+        assertEquals(2, table.size());
+    }
+
+    @Test
+    public void testUnknown() {
+        LocaleTable table = new LocaleTable();
+        assertEquals(LocaleTable.UNKNOWN, table.intern(null));
+        assertNull(table.get(LocaleTable.UNKNOWN));
+        assertNull(table.get(5));
+        assertEquals(0, table.size());
+    }
+
+    @Test
+    public void testCapacity() {
+        LocaleTable table = new LocaleTable();
+        for (int i = 0; i < 1024; i++) {
+            assertEquals(i, table.intern("locale_" + i));
+        }
+
+        // full, so new locales are unknown, but existing ones still resolve
+        assertEquals(LocaleTable.UNKNOWN, table.intern("locale_1024"));
+        assertEquals(LocaleTable.UNKNOWN, table.intern("another"));
+        assertEquals(1023, table.intern("locale_1023"));
+        assertEquals("locale_1023", table.get(1023));
+        assertEquals(1024, table.size());
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * This file is part of NetworkAnalytics, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.networkanalytics.roster;
+
+import me.lucko.networkanalytics.channel.AnalyticsData;
+import me.lucko.networkanalytics.channel.OnlinePlayerRecord;
+
+import org.junit.Test;
+
+import protocolsupport.api.ProtocolVersion;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ServerRosterTest {
+
+    private static final UUID NOTCH = UUID.fromString("069a79f4-44e9-4726-a5be-fca90e38aaf5");
+    private static final UUID JEB = UUID.fromString("853c80ef-3c37-49fd-aa49-938b674adae6");
+    private static final UUID OTHER = UUID.fromString("00000000-0000-0000-0000-000000000001");
+
+    private static AnalyticsData data(OnlinePlayerRecord... players) {
+        return new AnalyticsData("lobby", 1000L, new ArrayList<>(Arrays.asList(players)));
+    }
+
+    @Test
+    public void testEncoding() {
+        LocaleTable locales = new LocaleTable();
+        ServerRoster roster = ServerRoster.of(data(
+                new OnlinePlayerRecord(NOTCH, "Notch", ProtocolVersion.MINECRAFT_1_12, "en_us"),
+                new OnlinePlayerRecord(JEB, "jeb_", ProtocolVersion.MINECRAFT_1_8, "sv_se"),
+                OnlinePlayerRecord.ofVersionName(OTHER, "\u00dcn\u00efc\u00f6d\u00e9", "NOT_A_VERSION", null)
+        ), locales);
+
+        assertEquals("lobby", roster.getServerId());
+        assertEquals(1000L, roster.getTimeSent());
+        assertEquals(3, roster.size());
+        assertEquals(3, roster.getOnlineCount());
+        assertFalse(roster.isPartial());
+
+        assertEquals(NOTCH, roster.getUuid(0));
+        assertEquals("Notch", roster.getUsername(0));
+        assertEquals(ProtocolVersion.MINECRAFT_1_12, roster.getVersion(0));
+        assertEquals("en_us", roster.getLocale(0));
+
+        assertEquals(JEB, roster.getUuid(1));
+        assertEquals("jeb_", roster.getUsername(1));
+        assertEquals(ProtocolVersion.MINECRAFT_1_8, roster.getVersion(1));
+        assertEquals("sv_se", roster.getLocale(1));
+
+        // multi-byte names, unknown versions and missing locales survive the encoding
+        assertEquals(OTHER, roster.getUuid(2));
+        assertEquals("\u00dcn\u00efc\u00f6d\u00e9", roster.getUsername(2));
+        assertEquals(ServerRoster.UNKNOWN_VERSION, roster.getVersionOrdinal(2));
+        assertNull(roster.getVersion(2));
+        assertEquals(LocaleTable.UNKNOWN, roster.getLocaleId(2));
+        assertNull(roster.getLocale(2));
+    }
+
+    @Test
+    public void testEmpty() {
+        ServerRoster roster = ServerRoster.of(data(), new LocaleTable());
+        assertEquals(0, roster.size());
+        assertEquals(-1, roster.indexOfUsername("Notch"));
+        assertTrue(roster.toAnalyticsData().getPlayers().isEmpty());
+    }
+
+    @Test
+    public void testLookups() {
+        ServerRoster roster = ServerRoster.of(data(
+                new OnlinePlayerRecord(NOTCH, "Notch", ProtocolVersion.MINECRAFT_1_12, "en_us"),
+                new OnlinePlayerRecord(JEB, "jeb_", ProtocolVersion.MINECRAFT_1_8, "sv_se")
+        ), new LocaleTable());
+
+        assertEquals(1, roster.indexOf(JEB.getMostSignificantBits(), JEB.getLeastSignificantBits()));
+        assertEquals(-1, roster.indexOf(OTHER.getMostSignificantBits(), OTHER.getLeastSignificantBits()));
+
+        assertEquals(0, roster.indexOfUsername("notch"));
+        assertEquals(1, roster.indexOfUsername("JEB_"));
+        assertEquals(-1, roster.indexOfUsername("Notc"));
+        assertEquals(-1, roster.indexOfUsername("Notch_"));
+        assertTrue(roster.usernameEqualsIgnoreCase(0, "NOTCH"));
+        assertFalse(roster.usernameEqualsIgnoreCase(0, "jeb_"));
+    }
+
+    @Test
+    public void testNonAsciiLookups() {
+        ServerRoster roster = ServerRoster.of(data(
+                new OnlinePlayerRecord(NOTCH, "\u00dcn\u00efc\u00f6d\u00e9", ProtocolVersion.MINECRAFT_1_12, "en_us"),
+                new OnlinePlayerRecord(JEB, "k\u00e9", ProtocolVersion.MINECRAFT_1_12, "en_us")
+        ), new LocaleTable());
+
+        // the encoded names are longer than the strings
+        assertTrue(roster.usernameEqualsIgnoreCase(0, "\u00fcN\u00cfC\u00d6D\u00c9"));
+        assertEquals(0, roster.indexOfUsername("\u00fcn\u00efc\u00f6d\u00e9"));
+        assertFalse(roster.usernameEqualsIgnoreCase(0, "\u00dcn\u00efc\u00f6d"));
+        assertFalse(roster.usernameEqualsIgnoreCase(0, "Unicode"));
+
+        // ascii prefix, then a multi-byte character
+        assertTrue(roster.usernameEqualsIgnoreCase(1, "K\u00c9"));
+        assertFalse(roster.usernameEqualsIgnoreCase(1, "ke"));
+        assertFalse(roster.usernameEqualsIgnoreCase(1, "k"));
+
+        // non-ascii characters which case fold to ascii
+        assertTrue(roster.usernameEqualsIgnoreCase(1, "\u212a\u00e9"));
+    }
+
+    @Test
+    public void testCounts() {
+        LocaleTable locales = new LocaleTable();
+        ServerRoster roster = ServerRoster.of(data(
+                new OnlinePlayerRecord(NOTCH, "Notch", ProtocolVersion.MINECRAFT_1_12, "en_us"),
+                new OnlinePlayerRecord(JEB, "jeb_", ProtocolVersion.MINECRAFT_1_12, "en_us"),
+                new OnlinePlayerRecord(OTHER, "Other", null, "sv_se")
+        ), locales);
+
+        int[] versions = new int[ServerRoster.versionCount() + 1];
+        roster.countVersions(versions);
+        assertEquals(2, versions[ProtocolVersion.MINECRAFT_1_12.ordinal()]);
+        assertEquals(1, versions[versions.length - 1]);
+
+        int[] localeCounts = new int[locales.size() + 1];
+        roster.countLocales(localeCounts);
+        assertEquals(2, localeCounts[locales.intern("en_us")]);
+        assertEquals(1, localeCounts[locales.intern("sv_se")]);
+        assertEquals(0, localeCounts[localeCounts.length - 1]);
+    }
+
+    @Test
+    public void testLocalesOverCapacity() {
+        LocaleTable locales = new LocaleTable();
+        for (int i = 0; i < 1024; i++) {
+            locales.intern("locale_" + i);
+        }
+
+        ServerRoster roster = ServerRoster.of(data(
+                new OnlinePlayerRecord(NOTCH, "Notch", ProtocolVersion.MINECRAFT_1_12, "locale_0"),
+                new OnlinePlayerRecord(JEB, "jeb_", ProtocolVersion.MINECRAFT_1_12, "made_up")
+        ), locales);
+
+        assertEquals("locale_0", roster.getLocale(0));
+        assertEquals(LocaleTable.UNKNOWN, roster.getLocaleId(1));
+
+        int[] counts = new int[locales.size() + 1];
+        roster.countLocales(counts);
+        assertEquals(1, counts[0]);
+        assertEquals(1, counts[counts.length - 1]);
+    }
+
+    @Test
+    public void testPartial() {
+        List<OnlinePlayerRecord> sample = new ArrayList<>();
+        sample.add(new OnlinePlayerRecord(NOTCH, "Notch", ProtocolVersion.MINECRAFT_1_12, "en_us"));
+        sample.add(new OnlinePlayerRecord(JEB, "jeb_", ProtocolVersion.MINECRAFT_1_8, "sv_se"));
+
+        // a sampling server sends the sample in place of its players, with the real count
+        ServerRoster roster = ServerRoster.of(new AnalyticsData("hub", 1000L, sample, 500, null), new LocaleTable());
+        assertTrue(roster.isPartial());
+        assertEquals(2, roster.size());
+        assertEquals(500, roster.getOnlineCount());
+        assertSame(roster, roster.getSample().get());
+
+        // and keeps that shape when converted back
+        AnalyticsData data = roster.toAnalyticsData();
+        assertEquals(2, data.getPlayers().size());
+        assertEquals(500, data.getOnlineCount());
+        assertNull(data.getSample());
+    }
+
+    @Test
+    public void testSampleOnlyMessage() {
+        List<OnlinePlayerRecord> sample = new ArrayList<>();
+        sample.add(new OnlinePlayerRecord(NOTCH, "Notch", ProtocolVersion.MINECRAFT_1_12, "en_us"));
+
+        // messages with no player list fall back to the sample
+        AnalyticsData data = new AnalyticsData("hub", 1000L, null, 40, sample);
+        assertEquals(1, data.getPlayers().size());
+
+        ServerRoster roster = ServerRoster.of(data, new LocaleTable());
+        assertTrue(roster.isPartial());
+        assertEquals(40, roster.getOnlineCount());
+        assertEquals(NOTCH, roster.getUuid(0));
+    }
+
+    @Test
+    public void testSampleCoversEveryone() {
+        List<OnlinePlayerRecord> players = new ArrayList<>();
+        players.add(new OnlinePlayerRecord(NOTCH, "Notch", ProtocolVersion.MINECRAFT_1_12, "en_us"));
+
+        // sampling is enabled, but there are fewer players online than the sample size
+        ServerRoster roster = ServerRoster.of(new AnalyticsData("hub", 1000L, players, 1, null), new LocaleTable());
+        assertFalse(roster.isPartial());
+        assertEquals(1, roster.getOnlineCount());
+        assertFalse(roster.getSample().isPresent());
+    }
+
+    @Test
+    public void testNullPlayers() {
+        AnalyticsData data = new AnalyticsData("hub", 1000L, null);
+        assertTrue(data.getPlayers().isEmpty());
+        assertEquals(0, data.getOnlineCount());
+        assertEquals(0, ServerRoster.of(data, new LocaleTable()).size());
+    }
+
+    @Test
+    public void testToAnalyticsData() {
+        ServerRoster roster = ServerRoster.of(data(
+                new OnlinePlayerRecord(NOTCH, "Notch", ProtocolVersion.MINECRAFT_1_12, "en_us"),
+                new OnlinePlayerRecord(JEB, "jeb_", null, null)
+        ), new LocaleTable());
+
+        List<OnlinePlayerRecord> players = roster.toAnalyticsData().getPlayers();
+        assertEquals(2, players.size());
+        assertEquals(NOTCH, players.get(0).getUuid());
+        assertEquals("Notch", players.get(0).getUsername());
+        assertEquals(ProtocolVersion.MINECRAFT_1_12, players.get(0).getVersion().get());
+        assertEquals("en_us", players.get(0).getLocale().get());
+        assertEquals("jeb_", players.get(1).getUsername());
+        assertFalse(players.get(1).getVersion().isPresent());
+        assertFalse(players.get(1).getLocale().isPresent());
+    }
+}
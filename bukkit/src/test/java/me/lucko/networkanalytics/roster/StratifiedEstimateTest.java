@@ -0,0 +1,138 @@
+/*
+ * This file is part of NetworkAnalytics, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.networkanalytics.roster;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class StratifiedEstimateTest {
+
+    @Test
+    public void testCensusHasNoMargin() {
+        // a server which sent every player is sampled in full
+        StratifiedEstimate estimate = new StratifiedEstimate(2);
+        estimate.addStratum(100, 100, new int[]{30, 70});
+
+        assertEquals(100, estimate.getPopulation());
+        assertEquals(0.3, estimate.getProportion(0), 1e-9);
+        assertEquals(30, estimate.getEstimatedCount(0));
+        assertEquals(0, estimate.getMargin(0), 1e-9);
+        assertEquals(0, estimate.getMargin(1), 1e-9);
+    }
+
+    @Test
+    public void testFinitePopulationCorrection() {
+        StratifiedEstimate estimate = new StratifiedEstimate(2);
+        estimate.addStratum(1000, 100, new int[]{30, 70});
+
+        // 1.96 * sqrt((1 - n/N) * p(1-p) / (n-1))
+        double expected = 1.96 * Math.sqrt(0.9 * 0.3 * 0.7 / 99);
+        assertEquals(0.3, estimate.getProportion(0), 1e-9);
+        assertEquals(300, estimate.getEstimatedCount(0));
+        assertEquals(expected, estimate.getMargin(0), 1e-9);
+        assertEquals(expected, estimate.getMargin(1), 1e-9);
+
+        // the same sample from a much larger population has a wider margin
+        StratifiedEstimate large = new StratifiedEstimate(2);
+        large.addStratum(1_000_000, 100, new int[]{30, 70});
+        assertTrue(large.getMargin(0) > estimate.getMargin(0));
+    }
+
+    @Test
+    public void testStrataAreWeighted() {
+        StratifiedEstimate estimate = new StratifiedEstimate(2);
+        estimate.addStratum(900, 100, new int[]{10, 90});
+        estimate.addStratum(100, 100, new int[]{100, 0});
+
+        // 900 * 0.1 + 100 * 1.0 out of 1000
+        assertEquals(1000, estimate.getPopulation());
+        assertEquals(0.19, estimate.getProportion(0), 1e-9);
+        assertEquals(190, estimate.getEstimatedCount(0));
+
+        // only the sampled stratum contributes variance
+        double expected = 1.96 * Math.sqrt(900d * 900d * (1 - 100d / 900d) * 0.1 * 0.9 / 99) / 1000;
+        assertEquals(expected, estimate.getMargin(0), 1e-9);
+    }
+
+    @Test
+    public void testEmptyStrataIgnored() {
+        StratifiedEstimate estimate = new StratifiedEstimate(1);
+        estimate.addStratum(0, 0, new int[]{0});
+        estimate.addStratum(50, 0, new int[]{0});
+
+        assertEquals(0, estimate.getPopulation());
+        assertEquals(0, estimate.getProportion(0), 0);
+        assertEquals(0, estimate.getMargin(0), 0);
+    }
+
+    @Test
+    public void testCoverage() {
+        // the 95% interval should contain the true proportion in roughly 95% of trials
+        Random random = new Random(7);
+        int[] populations = {5000, 2000, 800, 300};
+        double[] rates = {0.2, 0.5, 0.05, 0.35};
+        int sampleSize = 200;
+
+        int trials = 2000;
+        int covered = 0;
+        for (int t = 0; t < trials; t++) {
+            StratifiedEstimate estimate = new StratifiedEstimate(2);
+            long truth = 0;
+            long population = 0;
+            for (int s = 0; s < populations.length; s++) {
+                boolean[] players = new boolean[populations[s]];
+                for (int i = 0; i < players.length; i++) {
+                    players[i] = random.nextDouble() < rates[s];
+                    truth += players[i] ? 1 : 0;
+                }
+                population += players.length;
+
+                // sample without replacement, using a partial shuffle
+                int[] counts = new int[2];
+                for (int i = 0; i < sampleSize; i++) {
+                    int j = i + random.nextInt(players.length - i);
+                    boolean tmp = players[i];
+                    players[i] = players[j];
+                    players[j] = tmp;
+                    counts[players[i] ? 0 : 1]++;
+                }
+                estimate.addStratum(players.length, sampleSize, counts);
+            }
+
+            double actual = (double) truth / population;
+            if (Math.abs(estimate.getProportion(0) - actual) <= estimate.getMargin(0)) {
+                covered++;
+            }
+        }
+
+        double coverage = (double) covered / trials;
+        assertTrue("coverage " + coverage, coverage > 0.93 && coverage < 0.97);
+    }
+}
@@ -0,0 +1,291 @@
+/*
+ * This file is part of NetworkAnalytics, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.networkanalytics.session;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SessionTrackerTest {
+
+    private static final long GRACE = 60;
+    private static final UUID PLAYER = UUID.fromString("069a79f4-44e9-4726-a5be-fca90e38aaf5");
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    private final List<long[]> finished = Collections.synchronizedList(new ArrayList<>());
+
+    @After
+    public void shutdown() {
+        this.executor.shutdownNow();
+    }
+
+    private SessionTracker tracker(PresenceStore store, String serverId) {
+        return new SessionTracker(store, serverId, GRACE, this.executor);
+    }
+
+    private CompletableFuture<?> record(UUID uuid, long start, long end) {
+        this.finished.add(new long[]{start, end});
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private static <T> T get(CompletableFuture<T> future) throws Exception {
+        return future.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testNewSession() throws Exception {
+        SessionTracker tracker = tracker(new LocalPresenceStore(), "lobby");
+        JoinResult result = get(tracker.join(PLAYER, 100));
+
+        assertFalse(result.isContinued());
+        assertEquals(100, result.getStart());
+        assertFalse(result.hasPrevious());
+    }
+
+    @Test
+    public void testReconnectWithinGrace() throws Exception {
+        SessionTracker tracker = tracker(new LocalPresenceStore(), "lobby");
+        get(tracker.join(PLAYER, 100));
+        assertEquals(LeaveResult.PENDING, get(tracker.leave(PLAYER, 200)));
+
+        JoinResult result = get(tracker.join(PLAYER, 200 + GRACE));
+        assertTrue(result.isContinued());
+        assertEquals(100, result.getStart());
+
+        // the continued session isn't finished when the original grace period ends
+        tracker.finishExpired(1000, this::record);
+        assertTrue(this.finished.isEmpty());
+    }
+
+    @Test
+    public void testGracePeriodExpires() throws Exception {
+        SessionTracker tracker = tracker(new LocalPresenceStore(), "lobby");
+        get(tracker.join(PLAYER, 100));
+        get(tracker.leave(PLAYER, 200));
+
+        tracker.finishExpired(200 + GRACE, this::record);
+        assertTrue(this.finished.isEmpty());
+
+        tracker.finishExpired(200 + GRACE + 1, this::record);
+        assertEquals(1, this.finished.size());
+        assertEquals(100, this.finished.get(0)[0]);
+        assertEquals(200, this.finished.get(0)[1]);
+
+        // only finished once
+        tracker.finishExpired(1000, this::record);
+        assertEquals(1, this.finished.size());
+
+        JoinResult result = get(tracker.join(PLAYER, 1000));
+        assertFalse(result.isContinued());
+        assertFalse(result.hasPrevious());
+    }
+
+    @Test
+    public void testLateRejoinStartsNewSession() throws Exception {
+        SessionTracker tracker = tracker(new LocalPresenceStore(), "lobby");
+        get(tracker.join(PLAYER, 100));
+        get(tracker.leave(PLAYER, 200));
+
+        // the server hasn't finished the session yet, so the join reports it
+        JoinResult result = get(tracker.join(PLAYER, 200 + GRACE + 1));
+        assertFalse(result.isContinued());
+        assertEquals(200 + GRACE + 1, result.getStart());
+        assertEquals(100, result.getPreviousStart());
+        assertEquals(200, result.getPreviousEnd());
+
+        // and it isn't written a second time
+        tracker.finishExpired(1000, this::record);
+        assertTrue(this.finished.isEmpty());
+    }
+
+    @Test
+    public void testServerSwitch() throws Exception {
+        PresenceStore store = new LocalPresenceStore();
+        SessionTracker lobby = tracker(store, "lobby");
+        SessionTracker survival = tracker(store, "survival");
+
+        get(lobby.join(PLAYER, 100));
+
+        // the proxy connects the player to the new server before the old one sees them leave
+        JoinResult result = get(survival.join(PLAYER, 150));
+        assertTrue(result.isContinued());
+        assertEquals(100, result.getStart());
+        assertEquals(LeaveResult.MOVED, get(lobby.leave(PLAYER, 151)));
+
+        assertEquals(LeaveResult.PENDING, get(survival.leave(PLAYER, 500)));
+        lobby.finishExpired(1000, this::record);
+        assertTrue(this.finished.isEmpty());
+
+        survival.finishExpired(1000, this::record);
+        assertEquals(1, this.finished.size());
+        assertEquals(100, this.finished.get(0)[0]);
+        assertEquals(500, this.finished.get(0)[1]);
+    }
+
+    @Test
+    public void testHeartbeatKeepsSessionFresh() throws Exception {
+        PresenceStore store = new LocalPresenceStore();
+        SessionTracker lobby = tracker(store, "lobby");
+        SessionTracker survival = tracker(store, "survival");
+
+        get(lobby.join(PLAYER, 100));
+        for (long now = 130; now <= 400; now += SessionTracker.HEARTBEAT_INTERVAL_SECONDS) {
+            lobby.heartbeat(now);
+        }
+
+        JoinResult result = get(survival.join(PLAYER, 420));
+        assertTrue(result.isContinued());
+        assertEquals(100, result.getStart());
+    }
+
+    @Test
+    public void testStaleSessionExpires() throws Exception {
+        PresenceStore store = new LocalPresenceStore();
+        SessionTracker lobby = tracker(store, "lobby");
+        SessionTracker survival = tracker(store, "survival");
+
+        get(lobby.join(PLAYER, 100));
+        lobby.heartbeat(130);
+        lobby.heartbeat(160);
+
+        // lobby goes down without the player leaving. three missed heartbeats later,
+        // the session is treated as having ended when last refreshed
+        JoinResult result = get(survival.join(PLAYER, 160 + 3 * SessionTracker.HEARTBEAT_INTERVAL_SECONDS + 1));
+        assertFalse(result.isContinued());
+        assertTrue(result.hasPrevious());
+        assertEquals(100, result.getPreviousStart());
+        assertEquals(160, result.getPreviousEnd());
+    }
+
+    @Test
+    public void testStaleSessionWithinGrace() throws Exception {
+        PresenceStore store = new LocalPresenceStore();
+        SessionTracker lobby = tracker(store, "lobby");
+        SessionTracker survival = tracker(store, "survival");
+
+        get(lobby.join(PLAYER, 100));
+
+        // stale, but the player rejoined within the grace period of its last refresh
+        JoinResult result = get(survival.join(PLAYER, 100 + GRACE));
+        assertTrue(result.isContinued());
+    }
+
+    @Test
+    public void testHeartbeatIgnoresOtherServers() throws Exception {
+        PresenceStore store = new LocalPresenceStore();
+        SessionTracker lobby = tracker(store, "lobby");
+        SessionTracker survival = tracker(store, "survival");
+
+        get(lobby.join(PLAYER, 100));
+        get(survival.join(PLAYER, 110));
+        get(lobby.leave(PLAYER, 111));
+
+        // the lobby no longer holds the session, so can't keep it alive
+        lobby.heartbeat(300);
+        JoinResult result = get(lobby.join(PLAYER, 400));
+        assertFalse(result.isContinued());
+        assertEquals(100, result.getPreviousStart());
+        assertEquals(110, result.getPreviousEnd());
+    }
+
+    @Test
+    public void testFinishAll() throws Exception {
+        SessionTracker tracker = tracker(new LocalPresenceStore(), "lobby");
+        UUID other = UUID.randomUUID();
+        get(tracker.join(PLAYER, 100));
+        get(tracker.join(other, 110));
+        get(tracker.leave(PLAYER, 200));
+        get(tracker.leave(other, 210));
+
+        CompletableFuture<Object> write = new CompletableFuture<>();
+        CompletableFuture<Void> all = tracker.finishAll((uuid, start, end) -> {
+            record(uuid, start, end);
+            return write;
+        });
+
+        // waits for the handler to finish writing
+        assertEquals(2, this.finished.size());
+        assertFalse(all.isDone());
+        write.complete(null);
+        get(all);
+    }
+
+    @Test
+    public void testOperationsApplyInOrder() throws Exception {
+        RecordingStore store = new RecordingStore();
+        SessionTracker tracker = tracker(store, "lobby");
+
+        // quick reconnects, submitted without waiting
+        List<CompletableFuture<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            futures.add(tracker.join(PLAYER, 100 + i * 2));
+            futures.add(tracker.leave(PLAYER, 101 + i * 2));
+        }
+        for (CompletableFuture<?> future : futures) {
+            get(future);
+        }
+
+        assertEquals(2000, store.operations.size());
+        for (int i = 0; i < store.operations.size(); i++) {
+            assertEquals(100 + i, (long) store.operations.get(i));
+        }
+        for (int i = 1; i < futures.size(); i += 2) {
+            assertEquals(LeaveResult.PENDING, futures.get(i).join());
+        }
+        for (int i = 2; i < futures.size(); i += 2) {
+            assertTrue(((JoinResult) futures.get(i).join()).isContinued());
+        }
+    }
+
+    // records the time of each join & leave, in the order they're applied
+    private static final class RecordingStore extends LocalPresenceStore {
+        private final List<Long> operations = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public JoinResult join(UUID uuid, String serverId, long now, long graceSeconds, long staleSeconds) {
+            this.operations.add(now);
+            return super.join(uuid, serverId, now, graceSeconds, staleSeconds);
+        }
+
+        @Override
+        public LeaveResult leave(UUID uuid, String serverId, long now) {
+            this.operations.add(now);
+            return super.leave(uuid, serverId, now);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * This file is part of NetworkAnalytics, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.networkanalytics.proxy;
+
+import com.google.gson.Gson;
+
+import me.lucko.networkanalytics.channel.AnalyticsData;
+
+import net.md_5.bungee.api.plugin.Plugin;
+import net.md_5.bungee.config.Configuration;
+import net.md_5.bungee.config.ConfigurationProvider;
+import net.md_5.bungee.config.YamlConfiguration;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+import redis.clients.jedis.Protocol;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes a single roster for every player connected to the proxy, in place
+ * of each backend server sending its own.
+ */
+public class AnalyticsProxyPlugin extends Plugin {
+
+    // the channel the bukkit plugin receives rosters on
+    private static final String CHANNEL = "na-data";
+
+    private final Gson gson = new Gson();
+    private ProxyRoster roster;
+
+    private JedisPool jedisPool;
+    private String serverId;
+
+    @Override
+    public void onEnable() {
+        Configuration config;
+        try {
+            config = loadConfig();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+
+        this.serverId = config.getString("server-id", "proxy");
+        this.roster = new ProxyRoster(getLogger());
+
+        String password = config.getString("redis.password", "");
+        this.jedisPool = new JedisPool(new JedisPoolConfig(),
+                config.getString("redis.address", "localhost"),
+                config.getInt("redis.port", Protocol.DEFAULT_PORT),
+                Protocol.DEFAULT_TIMEOUT,
+                password.isEmpty() ? null : password
+        );
+
+        getProxy().getPluginManager().registerListener(this, new ProxyListener(this.roster));
+
+        // send at the same rate as the backend servers, so the rosters never expire
+        long interval = config.getLong("interval-millis", 4500);
+        getProxy().getScheduler().schedule(this, this::publish, 3500L, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void onDisable() {
+        if (this.jedisPool != null) {
+            this.jedisPool.close();
+        }
+    }
+
+    private void publish() {
+        AnalyticsData data = this.roster.toAnalyticsData(this.serverId);
+        String message = this.gson.toJson(data);
+
+        try (Jedis jedis = this.jedisPool.getResource()) {
+            jedis.publish(CHANNEL, message);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private Configuration loadConfig() throws IOException {
+        File file = new File(getDataFolder(), "config.yml");
+        if (!file.exists()) {
+            getDataFolder().mkdirs();
+            try (InputStream in = getResourceAsStream("config.yml")) {
+                Files.copy(in, file.toPath());
+            }
+        }
+        return ConfigurationProvider.getProvider(YamlConfiguration.class).load(file);
+    }
+}
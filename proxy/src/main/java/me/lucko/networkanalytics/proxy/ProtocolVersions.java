@@ -0,0 +1,74 @@
+/*
+ * This file is part of NetworkAnalytics, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.networkanalytics.proxy;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Maps the protocol numbers seen by the proxy to the names of the equivalent
+ * ProtocolSupport versions, which are used on the wire.
+ *
+ * <p>ProtocolSupport isn't available on the proxy, so the table is maintained
+ * by hand. Unmapped protocols are sent as unknown, and logged by the
+ * {@link ProxyRoster} the first time they're seen.</p>
+ */
+public final class ProtocolVersions {
+
+    private static final Map<Integer, String> NAMES;
+    static {
+        Map<Integer, String> names = new HashMap<>();
+        names.put(340, "MINECRAFT_1_12_2");
+        names.put(338, "MINECRAFT_1_12_1");
+        names.put(335, "MINECRAFT_1_12");
+        names.put(316, "MINECRAFT_1_11_1");
+        names.put(315, "MINECRAFT_1_11");
+        names.put(210, "MINECRAFT_1_10");
+        names.put(110, "MINECRAFT_1_9_4");
+        names.put(109, "MINECRAFT_1_9_2");
+        names.put(108, "MINECRAFT_1_9_1");
+        names.put(107, "MINECRAFT_1_9");
+        names.put(47, "MINECRAFT_1_8");
+        names.put(5, "MINECRAFT_1_7_10");
+        names.put(4, "MINECRAFT_1_7_5");
+        NAMES = Collections.unmodifiableMap(names);
+    }
+
+    /**
+     * Gets the name of the protocol version with the given id
+     *
+     * @param protocol the protocol id
+     * @return the version name, or null if unknown
+     */
+    public static String getName(int protocol) {
+        return NAMES.get(protocol);
+    }
+
+    private ProtocolVersions() {
+
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * This file is part of NetworkAnalytics, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.networkanalytics.proxy;
+
+import me.lucko.networkanalytics.channel.AnalyticsData;
+import me.lucko.networkanalytics.channel.OnlinePlayerRecord;
+
+import net.md_5.bungee.api.connection.ProxiedPlayer;
+
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * Tracks the players connected to the proxy.
+ *
+ * <p>Each player is recorded once when they connect to the network, and is
+ * unaffected by any switches between backend servers.</p>
+ */
+public class ProxyRoster {
+
+    // keyed by connection rather than uuid, so a stale disconnect can't remove a newer login
+    private final Map<ProxiedPlayer, OnlinePlayerRecord> players = new ConcurrentHashMap<>();
+
+    private final Logger logger;
+    // protocol ids missing from ProtocolVersions, so each is only logged once
+    private final Set<Integer> unmapped = ConcurrentHashMap.newKeySet();
+
+    public ProxyRoster(Logger logger) {
+        this.logger = logger;
+    }
+
+    public void add(ProxiedPlayer player) {
+        this.players.put(player, createRecord(player));
+    }
+
+    public void update(ProxiedPlayer player) {
+        this.players.computeIfPresent(player, (p, record) -> createRecord(p));
+    }
+
+    public void remove(ProxiedPlayer player) {
+        this.players.remove(player);
+    }
+
+    public int size() {
+        return this.players.size();
+    }
+
+    /**
+     * Forms an analytics message containing every player currently connected.
+     *
+     * @param serverId the id to send the roster under
+     * @return a message
+     */
+    public AnalyticsData toAnalyticsData(String serverId) {
+        return new AnalyticsData(serverId, System.currentTimeMillis() / 1000L, new ArrayList<>(this.players.values()));
+    }
+
+    private OnlinePlayerRecord createRecord(ProxiedPlayer player) {
+        int protocol = player.getPendingConnection().getVersion();
+        String version = ProtocolVersions.getName(protocol);
+        if (version == null && this.unmapped.add(protocol)) {
+            this.logger.warning("Unknown protocol version " + protocol + " (player " + player.getName() + "), players using it will be recorded as an unknown version.");
+        }
+
+        // match the format sent by the backend servers, e.g. "en_us"
+        Locale locale = player.getLocale();
+        String localeName = locale == null ? "undisclosed" : locale.toString().toLowerCase(Locale.ROOT);
+
+        return OnlinePlayerRecord.ofVersionName(player.getUniqueId(), player.getName(), version, localeName);
+    }
+}